@@ -1,12 +1,38 @@
 package org.sciborgs1155.lib;
 
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 /**
+ * A {@link TimedRobot} that runs the {@link CommandScheduler} and profiles every loop.
+ *
+ * <p>The {@link LoopProfiler} times phoenix signal refreshes, each subsystem created with {@link
+ * #profiled(Supplier)}, trigger polling, each command's execute, and each callback
+ * added with {@link #addPeriodic(String, Runnable, double)} or {@link #schedulePeriodic(String,
+ * Runnable, double, double)}.
+ *
  * @see https://github.com/wpilibsuite/allwpilib/pull/5939
  */
 public class CommandRobot extends TimedRobot {
+  protected final LoopProfiler profiler;
+  protected final PeriodicScheduler periodicTasks;
+
+  private final LoopProfiler.Stage signals;
+  private final LoopProfiler.Stage triggers;
+  private final Runnable scheduler;
+  private final Map<Command, LoopProfiler.Stage> commandStages = new WeakHashMap<>();
+  private final List<Subsystem> markers = new ArrayList<>();
+  private boolean started = false;
+  // the scheduler can't remove button loop bindings or callbacks, so they check this instead
+  private volatile boolean closed = false;
 
   protected CommandRobot() {
     this(kDefaultPeriod);
@@ -14,11 +40,121 @@ public class CommandRobot extends TimedRobot {
 
   protected CommandRobot(double period) {
     super(period);
+    profiler = new LoopProfiler("Profiler", period);
+    periodicTasks = new PeriodicScheduler("Periodic Tasks", period);
+    signals = profiler.stage("Signals");
+    triggers = profiler.stage("Triggers");
+    scheduler =
+        profiler.wrap("CommandScheduler.run()", () -> CommandScheduler.getInstance().run());
+
+    // bound before any trigger, so trigger polling is timed from here
+    CommandScheduler.getInstance().getDefaultButtonLoop().bind(whileOpen(profiler::mark));
+    // each lap runs from the previous command's execute, so it also contains that command's
+    // isFinished (and end, if it finished); the first lap runs from the end of trigger polling
+    CommandScheduler.getInstance()
+        .onCommandExecute(
+            command -> {
+              if (!closed) {
+                profiler.lap(stage(command));
+              }
+            });
+  }
+
+  private Runnable whileOpen(Runnable callback) {
+    return () -> {
+      if (!closed) {
+        callback.run();
+      }
+    };
+  }
+
+  private LoopProfiler.Stage stage(Command command) {
+    LoopProfiler.Stage stage = commandStages.get(command);
+    if (stage == null) {
+      stage = profiler.stage(command.getName() + ".execute()");
+      commandStages.put(command, stage);
+    }
+    return stage;
+  }
+
+  /**
+   * Adds a callback to run at a specific period, timed as its own stage of the loop.
+   *
+   * @param name The name to profile the callback under.
+   * @param callback The callback to run.
+   * @param period The period at which to run the callback, in seconds.
+   */
+  public void addPeriodic(String name, Runnable callback, double period) {
+    addPeriodic(profiler.wrap(name, callback), period);
+  }
+
+  /**
+   * Adds a callback to run every few ticks, staggered against every other callback scheduled this
+   * way so that they don't all land on the same tick.
+   *
+   * <p>Unlike {@link #addPeriodic(String, Runnable, double)}, the callback runs at the end of the
+   * main loop, on the tick within its period that best spreads out the budgets of every scheduled
+   * callback. Runs that take longer than the budget are reported as deadline misses.
+   *
+   * @param name The name to profile the callback under.
+   * @param callback The callback to run.
+   * @param period The period to run the callback at, in seconds. This is rounded to a whole number
+   *     of loop periods.
+   * @param budget The time each run of the callback is expected to fit in, in seconds.
+   */
+  public void schedulePeriodic(String name, Runnable callback, double period, double budget) {
+    periodicTasks.add(name, profiler.wrap(name, callback), period, budget);
+  }
+
+  /**
+   * Creates a subsystem whose periodic method is timed as its own stage of the loop.
+   *
+   * <p>Subsystems run in the order they are registered, so this registers marker subsystems right
+   * before and after the subsystem registers itself on creation, without touching any other
+   * subsystem. The factory must register the subsystem, as {@link
+   * edu.wpi.first.wpilibj2.command.SubsystemBase} does.
+   *
+   * @param factory Creates the subsystem.
+   * @return The subsystem created.
+   */
+  protected <T extends Subsystem> T profiled(Supplier<T> factory) {
+    marker(profiler::mark);
+    T subsystem = factory.get();
+    LoopProfiler.Stage stage = profiler.stage(subsystem.getName() + ".periodic()");
+    marker(() -> profiler.lap(stage));
+    return subsystem;
+  }
+
+  private void marker(Runnable periodic) {
+    Runnable callback = whileOpen(periodic);
+    Subsystem marker =
+        new Subsystem() {
+          @Override
+          public void periodic() {
+            callback.run();
+          }
+        };
+    CommandScheduler.getInstance().registerSubsystem(marker);
+    markers.add(marker);
   }
 
   @Override
   public void robotPeriodic() {
-    CommandScheduler.getInstance().run();
+    if (!started) {
+      // bound after every trigger created in the constructor, so it ends trigger polling
+      CommandScheduler.getInstance()
+          .getDefaultButtonLoop()
+          .bind(whileOpen(() -> profiler.lap(triggers)));
+      profiler.logTo(DataLogManager.getLog());
+      started = true;
+    }
+
+    profiler.beginTick();
+    // one batched refresh of every phoenix signal before anything reads them
+    TalonUtils.refreshSignals();
+    profiler.lap(signals);
+    scheduler.run();
+    periodicTasks.run();
   }
 
   @Override
@@ -40,4 +176,13 @@ public class CommandRobot extends TimedRobot {
   public void testInit() {
     CommandScheduler.getInstance().cancelAll();
   }
+
+  /** Stops the robot, and stops profiling the scheduler. */
+  @Override
+  public void close() {
+    super.close();
+    closed = true;
+    CommandScheduler.getInstance().unregisterSubsystem(markers.toArray(Subsystem[]::new));
+    markers.clear();
+  }
 }
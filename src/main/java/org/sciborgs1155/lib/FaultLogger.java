@@ -5,22 +5,38 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.reduxrobotics.sensors.canandgyro.Canandgyro;
 import com.revrobotics.REVLibError;
 import com.revrobotics.spark.SparkBase;
+import com.revrobotics.spark.SparkBase.Faults;
 import com.studica.frc.AHRS;
 import edu.wpi.first.hal.PowerDistributionFaults;
+import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.networktables.NetworkTable;
-import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.StringArrayPublisher;
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
 import edu.wpi.first.wpilibj.PowerDistribution;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import org.photonvision.PhotonCamera;
 
@@ -32,6 +48,16 @@ import org.photonvision.PhotonCamera;
  * spark.set(0.5);
  * FaultLogger.check(spark); // checks that the previous set call did not encounter an error.
  * </pre>
+ *
+ * <p>Once {@link #start()} is called, registered fault sources are polled on a background thread
+ * at the rate of their {@link Tier}. {@link #update()} should still be called periodically, at
+ * least as often as the fastest tier, and merges the latest results. Sources of devices the main
+ * loop also uses are polled by {@link #update()} itself, since reading a spark from two threads
+ * mixes up its last error, and talon signals are refreshed by the main thread. Until {@link
+ * #start()} is called, {@link #update()} polls every source itself.
+ *
+ * <p>Faults and fault sources belong to the current {@link RobotContext}, so robots simulated side
+ * by side don't see each other's faults.
  */
 public final class FaultLogger {
   /** An individual fault, containing necessary information. */
@@ -52,6 +78,110 @@ public final class FaultLogger {
     ERROR,
   }
 
+  /** How often a fault source is polled once the background monitor is started. */
+  public static enum Tier {
+    /** CAN and connectivity faults, which should be noticed quickly. */
+    FAST(0.5),
+    /** Temperature and firmware faults, which change slowly. */
+    SLOW(5);
+
+    /** The polling period, in seconds. */
+    public final double period;
+
+    Tier(double period) {
+      this.period = period;
+    }
+  }
+
+  /**
+   * A device-level source of faults. Each poll takes a single snapshot of the device's faults and
+   * decodes it into a bitmask, where bit {@code i} being set means {@code faults()[i]} is active.
+   */
+  public static final class FaultSource {
+    private final Fault[] faults;
+    private final Tier tier;
+    private final boolean mainThread;
+    private final LongSupplier snapshot;
+
+    /**
+     * Creates a new fault source.
+     *
+     * @param faults Every fault the device can report, indexed by bit. At most 64.
+     * @param tier How often to poll the device.
+     * @param mainThread Whether to poll the device from the main thread, because the main loop
+     *     also uses it and polling it elsewhere would race with that.
+     * @param snapshot Polls the device once, returning a bitmask of active faults. Unless polled
+     *     from the main thread, this is called from the background monitor thread once it is
+     *     started.
+     */
+    public FaultSource(Fault[] faults, Tier tier, boolean mainThread, LongSupplier snapshot) {
+      if (faults.length > Long.SIZE) {
+        throw new IllegalArgumentException("a fault source can have at most 64 faults");
+      }
+      this.faults = faults;
+      this.tier = tier;
+      this.mainThread = mainThread;
+      this.snapshot = snapshot;
+    }
+
+    /**
+     * Creates a new fault source, polled from the background monitor thread once it is started.
+     *
+     * @param faults Every fault the device can report, indexed by bit. At most 64.
+     * @param tier How often to poll the device.
+     * @param snapshot Polls the device once, returning a bitmask of active faults.
+     */
+    public FaultSource(Fault[] faults, Tier tier, LongSupplier snapshot) {
+      this(faults, tier, false, snapshot);
+    }
+
+    /**
+     * Creates a new fault source, polled at the {@link Tier#FAST} rate.
+     *
+     * @param faults Every fault the device can report, indexed by bit. At most 64.
+     * @param snapshot Polls the device once, returning a bitmask of active faults.
+     */
+    public FaultSource(Fault[] faults, LongSupplier snapshot) {
+      this(faults, Tier.FAST, snapshot);
+    }
+
+    /**
+     * Returns how often this source is polled.
+     *
+     * @return The tier of this source.
+     */
+    public Tier tier() {
+      return tier;
+    }
+
+    /**
+     * Returns whether this source is polled from the main thread.
+     *
+     * @return Whether this source is polled from the main thread.
+     */
+    public boolean mainThread() {
+      return mainThread;
+    }
+
+    /**
+     * Returns every fault this source can report, indexed by bit.
+     *
+     * @return The faults of this source.
+     */
+    public Fault[] faults() {
+      return faults;
+    }
+
+    /**
+     * Polls the device once.
+     *
+     * @return A bitmask of active faults.
+     */
+    public long poll() {
+      return snapshot.getAsLong();
+    }
+  }
+
   /** A class to represent an alerts widget on NetworkTables */
   public static class Alerts {
     private final StringArrayPublisher errors;
@@ -66,44 +196,325 @@ public final class FaultLogger {
       infos = table.getStringArrayTopic("infos").publish();
     }
 
-    public void set(Set<Fault> faults) {
-      errors.set(filteredStrings(faults, FaultType.ERROR));
-      warnings.set(filteredStrings(faults, FaultType.WARNING));
-      infos.set(filteredStrings(faults, FaultType.INFO));
+    // the faults last published, to skip publishing when nothing has changed
+    private final BitSet published = new BitSet();
+    private boolean initialized = false;
+
+    /**
+     * Publishes a set of interned faults, if it differs from the last published set.
+     *
+     * @param faults The indices of the faults to publish.
+     * @param interned Every interned fault, indexed by interned index.
+     */
+    public void set(BitSet faults, List<Fault> interned) {
+      if (initialized && faults.equals(published)) {
+        return;
+      }
+      errors.set(filteredStrings(faults, interned, FaultType.ERROR));
+      warnings.set(filteredStrings(faults, interned, FaultType.WARNING));
+      infos.set(filteredStrings(faults, interned, FaultType.INFO));
+      published.clear();
+      published.or(faults);
+      initialized = true;
     }
   }
 
-  // DATA
-  private static final List<Supplier<Optional<Fault>>> faultReporters = new ArrayList<>();
-  private static final Set<Fault> activeFaults = new HashSet<>();
-  private static final Set<Fault> totalFaults = new HashSet<>();
+  /**
+   * A registered fault source, with the interned indices of its faults and of the fault raised
+   * while polling it throws.
+   */
+  private static record Registration(FaultSource source, int[] indices, int failure) {}
 
-  // NETWORK TABLES
-  private static final NetworkTable base = NetworkTableInstance.getDefault().getTable("Faults");
-  private static final Alerts activeAlerts = new Alerts(base, "Active Faults");
-  private static final Alerts totalAlerts = new Alerts(base, "Total Faults");
+  // Minimum time between repeated DriverStation reports of the same fault, in seconds
+  private static final double REPORT_COOLDOWN = 10;
 
-  /** Polls registered fallibles. This method should be called periodically. */
-  public static void update() {
-    faultReporters.forEach(r -> r.get().ifPresent(fault -> report(fault)));
+  /**
+   * The faults and fault sources of one robot, owned by its {@link RobotContext}. Every static
+   * method of {@link FaultLogger} acts on the state of the current context.
+   */
+  public static final class State {
+    // DATA
+    private final List<Supplier<Optional<Fault>>> faultReporters = new ArrayList<>();
+    // read by the monitor thread, so registration must not modify it in place
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    // every fault ever reported or registered, indexed by interned index
+    private final List<Fault> interned = new ArrayList<>();
+    private final Map<Fault, Integer> indices = new HashMap<>();
+
+    // faults reported from any thread, interned and activated by the main thread
+    private final Queue<Fault> reported = new ConcurrentLinkedQueue<>();
+
+    private final BitSet activeFaults = new BitSet();
+    private final BitSet totalFaults = new BitSet();
+    private final BitSet previousFaults = new BitSet();
+    private double[] lastReported = new double[0];
+
+    // latest active faults polled for each tier, replaced (never modified) by the monitor thread
+    private final AtomicReferenceArray<BitSet> snapshots =
+        new AtomicReferenceArray<>(Tier.values().length);
+    // latest active faults of sources polled from the main thread, and when each tier was polled
+    private final BitSet[] mainSnapshots = new BitSet[Tier.values().length];
+    private final double[] lastMainPoll = new double[Tier.values().length];
+
+    private ScheduledExecutorService monitor;
+
+    // NETWORK TABLES
+    private final Alerts activeAlerts;
+    private final Alerts totalAlerts;
+    private final DoublePublisher updateTime;
+
+    /**
+     * Creates empty fault state, published under a table.
+     *
+     * @param base The table to publish alerts to.
+     */
+    State(NetworkTable base) {
+      activeAlerts = new Alerts(base, "Active Faults");
+      totalAlerts = new Alerts(base, "Total Faults");
+      updateTime = base.getDoubleTopic("Update Time (ms)").publish();
+      clearSnapshots();
+    }
+
+    private void clearSnapshots() {
+      for (int i = 0; i < snapshots.length(); i++) {
+        snapshots.set(i, new BitSet());
+        mainSnapshots[i] = new BitSet();
+        lastMainPoll[i] = Double.NEGATIVE_INFINITY;
+      }
+    }
+
+    private void start(RobotContext context) {
+      if (monitor != null) {
+        return;
+      }
+      monitor =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                Thread thread = new Thread(() -> context.run(r), "FaultMonitor");
+                thread.setDaemon(true);
+                return thread;
+              });
+      for (Tier tier : Tier.values()) {
+        monitor.scheduleAtFixedRate(
+            () -> snapshots.set(tier.ordinal(), poll(tier, false)),
+            0,
+            (long) (tier.period * 1000),
+            TimeUnit.MILLISECONDS);
+      }
+    }
+
+    private void stop() {
+      if (monitor != null) {
+        monitor.shutdownNow();
+        monitor = null;
+      }
+    }
+
+    private void update() {
+      long start = System.nanoTime();
+
+      faultReporters.forEach(r -> r.get().ifPresent(fault -> report(intern(fault))));
+      drainReported();
+      double now = System.nanoTime() / 1e9;
+      for (Tier tier : Tier.values()) {
+        int i = tier.ordinal();
+        if (monitor == null) {
+          snapshots.set(i, poll(tier, false));
+        }
+        // devices the main loop also uses are polled here, at their tier's period
+        if (monitor == null || now - lastMainPoll[i] >= tier.period) {
+          mainSnapshots[i] = poll(tier, true);
+          lastMainPoll[i] = now;
+        }
+        activeFaults.or(snapshots.get(i));
+        activeFaults.or(mainSnapshots[i]);
+      }
+
+      // only faults that just became active are sent to the driver station
+      for (int i = activeFaults.nextSetBit(0); i >= 0; i = activeFaults.nextSetBit(i + 1)) {
+        if (!previousFaults.get(i)) {
+          reportToDriverStation(i, now);
+        }
+      }
+      previousFaults.clear();
+      previousFaults.or(activeFaults);
+
+      totalFaults.or(activeFaults);
+
+      activeAlerts.set(activeFaults, interned);
+      totalAlerts.set(totalFaults, interned);
+
+      activeFaults.clear();
+
+      updateTime.set((System.nanoTime() - start) / 1e6);
+    }
+
+    private void clear() {
+      totalFaults.clear();
+      activeFaults.clear();
+      previousFaults.clear();
+      clearSnapshots();
+    }
+
+    private void unregisterAll() {
+      faultReporters.clear();
+      registrations.clear();
+    }
+
+    /**
+     * Reports an interned fault. It is sent to the driver station on the next {@link #update()},
+     * if it was not already active.
+     *
+     * @param index The interned index of the fault.
+     */
+    private void report(int index) {
+      activeFaults.set(index);
+    }
+
+    /** Interns and activates every fault reported since the last drain. Main thread only. */
+    private void drainReported() {
+      for (Fault fault = reported.poll(); fault != null; fault = reported.poll()) {
+        report(intern(fault));
+      }
+    }
+
+    /**
+     * Sends a fault to the driver station, unless it was already sent within the last {@link
+     * #REPORT_COOLDOWN} seconds. This is done on the monitor thread if it is running.
+     *
+     * @param index The interned index of the fault.
+     * @param now The current time, in seconds.
+     */
+    private void reportToDriverStation(int index, double now) {
+      if (index >= lastReported.length) {
+        int length = lastReported.length;
+        lastReported = Arrays.copyOf(lastReported, interned.size());
+        Arrays.fill(lastReported, length, lastReported.length, Double.NEGATIVE_INFINITY);
+      }
+      if (now - lastReported[index] < REPORT_COOLDOWN) {
+        return;
+      }
+      lastReported[index] = now;
+
+      Fault fault = interned.get(index);
+      Runnable report =
+          switch (fault.type) {
+            case ERROR -> () -> DriverStation.reportError(fault.toString(), false);
+            case WARNING -> () -> DriverStation.reportWarning(fault.toString(), false);
+            case INFO -> () -> System.out.println(fault.toString());
+          };
+      if (monitor != null) {
+        monitor.execute(report);
+      } else {
+        report.run();
+      }
+    }
+
+    /**
+     * Polls every registered fault source of a tier.
+     *
+     * @param tier The tier to poll.
+     * @param mainThread Whether to poll the sources polled from the main thread, or the others.
+     * @return A new set of the interned indices of active faults.
+     */
+    private BitSet poll(Tier tier, boolean mainThread) {
+      BitSet active = new BitSet();
+      for (Registration registration : registrations) {
+        if (registration.source().tier() != tier
+            || registration.source().mainThread() != mainThread) {
+          continue;
+        }
+        try {
+          long bits = registration.source().poll();
+          for (; bits != 0; bits &= bits - 1) {
+            active.set(registration.indices()[Long.numberOfTrailingZeros(bits)]);
+          }
+        } catch (RuntimeException e) {
+          // a single broken device must not stop the monitor, but is reported until it recovers
+          active.set(registration.failure());
+        }
+      }
+      return active;
+    }
+
+    private void register(FaultSource source) {
+      int[] sourceFaults = new int[source.faults().length];
+      for (int i = 0; i < sourceFaults.length; i++) {
+        sourceFaults[i] = intern(source.faults()[i]);
+      }
+      String name = source.faults().length > 0 ? source.faults()[0].name() : "Fault Source";
+      int failure = intern(new Fault(name, "failed to poll faults", FaultType.ERROR));
+      registrations.add(new Registration(source, sourceFaults, failure));
+    }
 
-    totalFaults.addAll(activeFaults);
+    /**
+     * Returns the interned index of a fault, interning it if it is new.
+     *
+     * @param fault The fault.
+     * @return The index of the fault.
+     */
+    private int intern(Fault fault) {
+      return indices.computeIfAbsent(
+          fault,
+          f -> {
+            interned.add(f);
+            return interned.size() - 1;
+          });
+    }
 
-    activeAlerts.set(activeFaults);
-    totalAlerts.set(totalFaults);
+    /**
+     * Returns the faults in a set of interned indices.
+     *
+     * @param set The indices of the faults.
+     * @return A new set of the faults.
+     */
+    private Set<Fault> faults(BitSet set) {
+      Set<Fault> faults = new HashSet<>();
+      set.stream().forEach(i -> faults.add(interned.get(i)));
+      return faults;
+    }
+  }
 
-    activeFaults.clear();
+  private FaultLogger() {}
+
+  /** Returns the fault state of the current robot. */
+  private static State state() {
+    return RobotContext.current().faults();
+  }
+
+  /**
+   * Starts polling registered fault sources on a background thread, at the rate of each source's
+   * {@link Tier}. DriverStation reports are also sent from this thread. Sources of devices the main
+   * loop also uses, such as sparks and talons, are still polled by {@link #update()}, at the rate
+   * of their tier.
+   */
+  public static void start() {
+    RobotContext context = RobotContext.current();
+    context.faults().start(context);
+  }
+
+  /** Stops the background monitor, if it was started. */
+  public static void stop() {
+    state().stop();
+  }
+
+  /**
+   * Merges the latest polled faults with faults reported since the last update, and publishes
+   * them. This method should be called every loop.
+   */
+  public static void update() {
+    state().update();
   }
 
   /** Clears total faults. */
   public static void clear() {
-    totalFaults.clear();
-    activeFaults.clear();
+    state().clear();
   }
 
   /** Clears fault suppliers. */
   public static void unregisterAll() {
-    faultReporters.clear();
+    state().unregisterAll();
   }
 
   /**
@@ -112,7 +523,9 @@ public final class FaultLogger {
    * @return The set of all current faults.
    */
   public static Set<Fault> activeFaults() {
-    return activeFaults;
+    State state = state();
+    state.drainReported();
+    return state.faults(state.activeFaults);
   }
 
   /**
@@ -121,21 +534,19 @@ public final class FaultLogger {
    * @return The set of all total faults.
    */
   public static Set<Fault> totalFaults() {
-    return totalFaults;
+    State state = state();
+    state.drainReported();
+    return state.faults(state.totalFaults);
   }
 
   /**
-   * Reports a fault.
+   * Reports a fault. This is safe to call from any thread, such as a control notifier; the fault
+   * is activated on the main thread, by the next {@link #update()}.
    *
    * @param fault The fault to report.
    */
   public static void report(Fault fault) {
-    activeFaults.add(fault);
-    switch (fault.type) {
-      case ERROR -> DriverStation.reportError(fault.toString(), false);
-      case WARNING -> DriverStation.reportWarning(fault.toString(), false);
-      case INFO -> System.out.println(fault.toString());
-    }
+    state().reported.add(fault);
   }
 
   /**
@@ -155,7 +566,16 @@ public final class FaultLogger {
    * @param supplier A supplier of an optional fault.
    */
   public static void register(Supplier<Optional<Fault>> supplier) {
-    faultReporters.add(supplier);
+    state().faultReporters.add(supplier);
+  }
+
+  /**
+   * Registers a new device-level fault source.
+   *
+   * @param source The fault source.
+   */
+  public static void register(FaultSource source) {
+    state().register(source);
   }
 
   /**
@@ -168,10 +588,9 @@ public final class FaultLogger {
   public static void register(
       BooleanSupplier condition, String name, String description, FaultType type) {
     register(
-        () ->
-            condition.getAsBoolean()
-                ? Optional.of(new Fault(name, description, type))
-                : Optional.empty());
+        new FaultSource(
+            new Fault[] {new Fault(name, description, type)},
+            () -> bit(condition.getAsBoolean(), 0)));
   }
 
   /**
@@ -180,44 +599,46 @@ public final class FaultLogger {
    * @param spark The Spark Max or Spark Flex to manage.
    */
   public static void register(SparkBase spark) {
+    String name = SparkUtils.name(spark);
+    Fault[] faults = {
+      new Fault(name, "other strange error", FaultType.ERROR),
+      new Fault(name, "motor type error", FaultType.ERROR),
+      new Fault(name, "sensor error", FaultType.ERROR),
+      new Fault(name, "CAN error", FaultType.ERROR),
+      new Fault(name, "gate driver error", FaultType.ERROR),
+      new Fault(name, "escEeprom? error", FaultType.ERROR)
+    };
     register(
-        () -> spark.getFaults().other,
-        SparkUtils.name(spark),
-        "other strange error",
-        FaultType.ERROR);
-    register(
-        () -> spark.getFaults().motorType,
-        SparkUtils.name(spark),
-        "motor type error",
-        FaultType.ERROR);
-    register(
-        () -> spark.getFaults().sensor, SparkUtils.name(spark), "sensor error", FaultType.ERROR);
-    register(() -> spark.getFaults().can, SparkUtils.name(spark), "CAN error", FaultType.ERROR);
-    register(
-        () -> spark.getFaults().temperature,
-        SparkUtils.name(spark),
-        "temperature error",
-        FaultType.ERROR);
-    register(
-        () -> spark.getFaults().gateDriver,
-        SparkUtils.name(spark),
-        "gate driver error",
-        FaultType.ERROR);
-    register(
-        () -> spark.getFaults().escEeprom,
-        SparkUtils.name(spark),
-        "escEeprom? error",
-        FaultType.ERROR);
-    register(
-        () -> spark.getFaults().firmware,
-        SparkUtils.name(spark),
-        "firmware error",
-        FaultType.ERROR);
+        new FaultSource(
+            faults,
+            Tier.FAST,
+            true,
+            () -> {
+              Faults f = spark.getFaults();
+              return bit(f.other, 0)
+                  | bit(f.motorType, 1)
+                  | bit(f.sensor, 2)
+                  | bit(f.can, 3)
+                  | bit(f.gateDriver, 4)
+                  | bit(f.escEeprom, 5);
+            }));
+
+    Fault[] slowFaults = {
+      new Fault(name, "temperature error", FaultType.ERROR),
+      new Fault(name, "firmware error", FaultType.ERROR),
+      new Fault(name, "motor above 100°C", FaultType.WARNING)
+    };
     register(
-        () -> spark.getMotorTemperature() > 100,
-        SparkUtils.name(spark),
-        "motor above 100°C",
-        FaultType.WARNING);
+        new FaultSource(
+            slowFaults,
+            Tier.SLOW,
+            true,
+            () -> {
+              Faults f = spark.getFaults();
+              return bit(f.temperature, 0)
+                  | bit(f.firmware, 1)
+                  | bit(spark.getMotorTemperature() > 100, 2);
+            }));
   }
 
   /**
@@ -248,42 +669,30 @@ public final class FaultLogger {
    * @param canandgyro The Redux Boron CANandGyro to manage.
    */
   public static void register(Canandgyro canandgyro) {
-    register(() -> !canandgyro.isConnected(), "CANandGyro", "disconnected", FaultType.ERROR);
-    register(
-        () -> canandgyro.getActiveFaults().accelerationSaturation(),
-        "CANandGyro",
-        "acceleration saturated",
-        FaultType.WARNING);
-    register(
-        () -> canandgyro.getActiveFaults().angularVelocitySaturation(),
-        "CANandGyro",
-        "angular velocity saturated",
-        FaultType.WARNING);
+    Fault[] faults = {
+      new Fault("CANandGyro", "disconnected", FaultType.ERROR),
+      new Fault("CANandGyro", "acceleration saturated", FaultType.WARNING),
+      new Fault("CANandGyro", "angular velocity saturated", FaultType.WARNING),
+      new Fault("CANandGyro", "calibrating", FaultType.WARNING),
+      new Fault("CANandGyro", "general CAN error", FaultType.ERROR),
+      new Fault("CANandGyro", "CAN ID conflict", FaultType.ERROR),
+      new Fault("CANandGyro", "temperature error", FaultType.ERROR),
+      new Fault("CANandGyro", "power cycling", FaultType.WARNING)
+    };
     register(
-        () -> canandgyro.getActiveFaults().calibrating(),
-        "CANandGyro",
-        "calibrating",
-        FaultType.WARNING);
-    register(
-        () -> canandgyro.getActiveFaults().canGeneralError(),
-        "CANandGyro",
-        "general CAN error",
-        FaultType.ERROR);
-    register(
-        () -> canandgyro.getActiveFaults().canIDConflict(),
-        "CANandGyro",
-        "CAN ID conflict",
-        FaultType.ERROR);
-    register(
-        () -> canandgyro.getActiveFaults().outOfTemperatureRange(),
-        "CANandGyro",
-        "temperature error",
-        FaultType.ERROR);
-    register(
-        () -> canandgyro.getActiveFaults().powerCycle(),
-        "CANandGyro",
-        "power cycling",
-        FaultType.WARNING);
+        new FaultSource(
+            faults,
+            () -> {
+              var f = canandgyro.getActiveFaults();
+              return bit(!canandgyro.isConnected(), 0)
+                  | bit(f.accelerationSaturation(), 1)
+                  | bit(f.angularVelocitySaturation(), 2)
+                  | bit(f.calibrating(), 3)
+                  | bit(f.canGeneralError(), 4)
+                  | bit(f.canIDConflict(), 5)
+                  | bit(f.outOfTemperatureRange(), 6)
+                  | bit(f.powerCycle(), 7);
+            }));
   }
 
   /**
@@ -292,21 +701,46 @@ public final class FaultLogger {
    * @param powerDistribution The power distribution to manage.
    */
   public static void register(PowerDistribution powerDistribution) {
-    var fields = PowerDistributionFaults.class.getFields();
-    for (Field fault : fields) {
-      register(
-          () -> {
-            try {
-              if (fault.getBoolean(powerDistribution.getFaults())) {
-                return Optional.of(
-                    new Fault("Power Distribution", fault.getName(), FaultType.ERROR));
-              }
-            } catch (Exception e) {
-            }
-            return Optional.empty();
-          });
+    // resolve every fault field once, instead of reflecting on every poll
+    List<Fault> faults = new ArrayList<>();
+    List<MethodHandle> getters = new ArrayList<>();
+    for (Field field : PowerDistributionFaults.class.getFields()) {
+      if (field.getType() != boolean.class) {
+        continue;
+      }
+      try {
+        getters.add(MethodHandles.publicLookup().unreflectGetter(field));
+        faults.add(new Fault("Power Distribution", field.getName(), FaultType.ERROR));
+      } catch (IllegalAccessException e) {
+        DataLogManager.log("Can't read power distribution fault " + field.getName() + ": " + e);
+      }
     }
-    ;
+    MethodHandle[] fields = getters.toArray(MethodHandle[]::new);
+    // each field that fails to read is only reported once, rather than on every poll
+    boolean[] failed = new boolean[fields.length];
+
+    register(
+        new FaultSource(
+            faults.toArray(Fault[]::new),
+            () -> {
+              PowerDistributionFaults snapshot = powerDistribution.getFaults();
+              long active = 0;
+              for (int i = 0; i < fields.length; i++) {
+                try {
+                  active |= bit((boolean) fields[i].invokeExact(snapshot), i);
+                } catch (Throwable e) {
+                  if (!failed[i]) {
+                    failed[i] = true;
+                    DataLogManager.log(
+                        "Can't read power distribution fault "
+                            + faults.get(i).description()
+                            + ": "
+                            + e);
+                  }
+                }
+              }
+              return active;
+            }));
   }
 
   /**
@@ -328,21 +762,35 @@ public final class FaultLogger {
    * @param talon The talon to manage.
    */
   public static void register(TalonFX talon) {
-    int id = talon.getDeviceID();
+    String name = "Talon ID: " + talon.getDeviceID();
+    List<Fault> faults = new ArrayList<>();
+    List<StatusSignal<Boolean>> signals = new ArrayList<>();
+    List<Fault> slowFaults = new ArrayList<>();
+    List<StatusSignal<Boolean>> slowSignals = new ArrayList<>();
+    // fault signals are refreshed with every other talon signal in TalonUtils.refreshSignals()
     BiConsumer<StatusSignal<Boolean>, String> regFault =
-        (f, d) -> register(() -> f.getValue(), "Talon ID: " + id, d, FaultType.ERROR);
+        (f, d) -> {
+          TalonUtils.registerSignals(f);
+          signals.add(f);
+          faults.add(new Fault(name, d, FaultType.ERROR));
+        };
+    // temperature and licensing faults change slowly
+    BiConsumer<StatusSignal<Boolean>, String> regSlowFault =
+        (f, d) -> {
+          TalonUtils.registerSignals(f);
+          slowSignals.add(f);
+          slowFaults.add(new Fault(name, d, FaultType.ERROR));
+        };
 
     // TODO: Remove all the unnecessary faults.
     regFault.accept(talon.getFault_Hardware(), "Hardware fault occurred");
-    regFault.accept(talon.getFault_ProcTemp(), "Processor temperature exceeded limit");
-    regFault.accept(talon.getFault_Hardware(), "Hardware fault occurred");
-    regFault.accept(talon.getFault_ProcTemp(), "Processor temperature exceeded limit");
-    regFault.accept(talon.getFault_DeviceTemp(), "Device temperature exceeded limit");
+    regSlowFault.accept(talon.getFault_ProcTemp(), "Processor temperature exceeded limit");
+    regSlowFault.accept(talon.getFault_DeviceTemp(), "Device temperature exceeded limit");
     regFault.accept(
         talon.getFault_Undervoltage(), "Device supply voltage dropped to near brownout levels");
     regFault.accept(
         talon.getFault_BootDuringEnable(), "Device boot while detecting the enable signal");
-    regFault.accept(
+    regSlowFault.accept(
         talon.getFault_UnlicensedFeatureInUse(),
         "An unlicensed feature is in use, device may not behave as expected.");
     regFault.accept(
@@ -377,9 +825,34 @@ public final class FaultLogger {
         "The remote sensor used for fusion has fallen out of sync to the local sensor.");
     regFault.accept(talon.getFault_StatorCurrLimit(), "Stator current limit occured.");
     regFault.accept(talon.getFault_SupplyCurrLimit(), "Supply current limit occured.");
-    regFault.accept(
+    regSlowFault.accept(
         talon.getFault_UsingFusedCANcoderWhileUnlicensed(),
         "Using Fused CANcoder feature while unlicensed. Device has fallen back to remote CANcoder.");
+
+    // the signals are refreshed by the main thread, so they are only read there
+    register(
+        new FaultSource(faults.toArray(Fault[]::new), Tier.FAST, true, signalMask(signals)));
+    register(
+        new FaultSource(
+            slowFaults.toArray(Fault[]::new), Tier.SLOW, true, signalMask(slowSignals)));
+  }
+
+  /**
+   * Returns a snapshot of boolean status signals as a bitmask, using their last refreshed values.
+   *
+   * @param signals The signals, indexed by bit.
+   * @return A supplier of the bitmask.
+   */
+  private static LongSupplier signalMask(List<StatusSignal<Boolean>> signals) {
+    @SuppressWarnings("unchecked")
+    StatusSignal<Boolean>[] faultSignals = signals.toArray(StatusSignal[]::new);
+    return () -> {
+      long active = 0;
+      for (int i = 0; i < faultSignals.length; i++) {
+        active |= bit(faultSignals[i].getValue(), i);
+      }
+      return active;
+    };
   }
 
   /**
@@ -412,14 +885,29 @@ public final class FaultLogger {
     return true;
   }
 
+  /**
+   * Returns a bitmask with a single bit set if a condition is true.
+   *
+   * @param condition The condition.
+   * @param index The index of the bit.
+   * @return The bitmask.
+   */
+  private static long bit(boolean condition, int index) {
+    return condition ? 1L << index : 0;
+  }
+
   /**
    * Returns an array of descriptions of all faults that match the specified type.
    *
+   * @param faults The indices of the faults to filter.
+   * @param interned Every interned fault, indexed by interned index.
    * @param type The type to filter for.
    * @return An array of description strings.
    */
-  private static String[] filteredStrings(Set<Fault> faults, FaultType type) {
+  private static String[] filteredStrings(
+      BitSet faults, List<Fault> interned, FaultType type) {
     return faults.stream()
+        .mapToObj(interned::get)
         .filter(a -> a.type() == type)
         .map(Fault::toString)
         .toArray(String[]::new);
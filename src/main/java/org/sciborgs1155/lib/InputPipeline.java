@@ -0,0 +1,212 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.math.MathUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A chain of {@link InputStream}-style stages that can be compiled into a single fused operator.
+ *
+ * <p>Chaining {@link InputStream#map(DoubleUnaryOperator)} nests one lambda per stage, which leaves
+ * the JIT with a deep, megamorphic call chain. A compiled pipeline instead runs every stage in one
+ * loop over a flat array of op codes, folding adjacent constant scales together.
+ *
+ * <pre>{@code
+ * InputStream.of(driver::getRightX)
+ *     .map(InputPipeline.create().negate().clamp(1).deadband(0.15, 1).signedPow(2));
+ * }</pre>
+ */
+public final class InputPipeline {
+  private static final int SCALE = 0;
+  private static final int SCALE_BY = 1;
+  private static final int ADD = 2;
+  private static final int ADD_BY = 3;
+  private static final int CLAMP = 4;
+  private static final int DEADBAND = 5;
+  private static final int POW = 6;
+  private static final int SIGNED_POW = 7;
+  private static final int SIGNED_SQUARE = 8;
+  private static final int MAP = 9;
+
+  private record Stage(int op, double a, double b, DoubleSupplier supplier, DoubleUnaryOperator f) {
+    Stage(int op, double a, double b) {
+      this(op, a, b, null, null);
+    }
+  }
+
+  private final List<Stage> stages = new ArrayList<>();
+
+  private InputPipeline() {}
+
+  /**
+   * Creates an empty pipeline, which returns its input unchanged.
+   *
+   * @return A new pipeline.
+   */
+  public static InputPipeline create() {
+    return new InputPipeline();
+  }
+
+  /**
+   * Scales by a factor.
+   *
+   * @param factor A scaling factor.
+   * @return This pipeline.
+   */
+  public InputPipeline scale(double factor) {
+    stages.add(new Stage(SCALE, factor, 0));
+    return this;
+  }
+
+  /**
+   * Scales by a factor.
+   *
+   * @param factor A supplier of scaling factors.
+   * @return This pipeline.
+   */
+  public InputPipeline scale(DoubleSupplier factor) {
+    stages.add(new Stage(SCALE_BY, 0, 0, factor, null));
+    return this;
+  }
+
+  /**
+   * Negates.
+   *
+   * @return This pipeline.
+   */
+  public InputPipeline negate() {
+    return scale(-1);
+  }
+
+  /**
+   * Offsets by a value.
+   *
+   * @param offset An offset.
+   * @return This pipeline.
+   */
+  public InputPipeline add(double offset) {
+    stages.add(new Stage(ADD, offset, 0));
+    return this;
+  }
+
+  /**
+   * Offsets by a value.
+   *
+   * @param offset A supplier of offsets.
+   * @return This pipeline.
+   */
+  public InputPipeline add(DoubleSupplier offset) {
+    stages.add(new Stage(ADD_BY, 0, 0, offset, null));
+    return this;
+  }
+
+  /**
+   * Clamps by a maximum bound.
+   *
+   * @param magnitude The upper bound to clamp with.
+   * @return This pipeline.
+   */
+  public InputPipeline clamp(double magnitude) {
+    stages.add(new Stage(CLAMP, magnitude, 0));
+    return this;
+  }
+
+  /**
+   * Deadbands by a minimum bound and scales from 0 to a maximum bound.
+   *
+   * @param deadband The lower bound to deadband with.
+   * @param max The maximum value to scale with.
+   * @return This pipeline.
+   */
+  public InputPipeline deadband(double deadband, double max) {
+    stages.add(new Stage(DEADBAND, deadband, max));
+    return this;
+  }
+
+  /**
+   * Raises to an exponent.
+   *
+   * @param exponent The exponent to raise to.
+   * @return This pipeline.
+   */
+  public InputPipeline pow(double exponent) {
+    stages.add(new Stage(POW, exponent, 0));
+    return this;
+  }
+
+  /**
+   * Raises to an exponent and keeps the original sign.
+   *
+   * @param exponent The exponent to raise to.
+   * @return This pipeline.
+   */
+  public InputPipeline signedPow(double exponent) {
+    stages.add(new Stage(exponent == 2 ? SIGNED_SQUARE : SIGNED_POW, exponent, 0));
+    return this;
+  }
+
+  /**
+   * Applies an arbitrary operator. Prefer the specialized stages where possible.
+   *
+   * @param operator A function that takes in a double input and returns a double output.
+   * @return This pipeline.
+   */
+  public InputPipeline map(DoubleUnaryOperator operator) {
+    stages.add(new Stage(MAP, 0, 0, null, operator));
+    return this;
+  }
+
+  /**
+   * Compiles the stages added so far into a single operator. Later changes to this pipeline do not
+   * affect the compiled operator.
+   *
+   * @return A fused operator equivalent to applying every stage in order.
+   */
+  public DoubleUnaryOperator compile() {
+    // fold runs of constant scales into one multiply
+    List<Stage> folded = new ArrayList<>();
+    for (Stage stage : stages) {
+      int last = folded.size() - 1;
+      if (stage.op() == SCALE && last >= 0 && folded.get(last).op() == SCALE) {
+        folded.set(last, new Stage(SCALE, folded.get(last).a() * stage.a(), 0));
+      } else {
+        folded.add(stage);
+      }
+    }
+
+    int n = folded.size();
+    int[] ops = new int[n];
+    double[] as = new double[n];
+    double[] bs = new double[n];
+    DoubleSupplier[] suppliers = new DoubleSupplier[n];
+    DoubleUnaryOperator[] operators = new DoubleUnaryOperator[n];
+    for (int i = 0; i < n; i++) {
+      Stage stage = folded.get(i);
+      ops[i] = stage.op();
+      as[i] = stage.a();
+      bs[i] = stage.b();
+      suppliers[i] = stage.supplier();
+      operators[i] = stage.f();
+    }
+
+    return x -> {
+      for (int i = 0; i < ops.length; i++) {
+        switch (ops[i]) {
+          case SCALE -> x *= as[i];
+          case SCALE_BY -> x *= suppliers[i].getAsDouble();
+          case ADD -> x += as[i];
+          case ADD_BY -> x += suppliers[i].getAsDouble();
+          case CLAMP -> x = MathUtil.clamp(x, -as[i], as[i]);
+          case DEADBAND -> x = MathUtil.applyDeadband(x, as[i], bs[i]);
+          case POW -> x = Math.pow(x, as[i]);
+          case SIGNED_POW -> x = Math.copySign(Math.pow(x, as[i]), x);
+          case SIGNED_SQUARE -> x *= Math.abs(x);
+          default -> x = operators[i].applyAsDouble(x);
+        }
+      }
+      return x;
+    };
+  }
+}
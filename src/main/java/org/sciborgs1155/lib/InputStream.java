@@ -52,6 +52,16 @@ public interface InputStream extends DoubleSupplier {
     return () -> operator.applyAsDouble(getAsDouble());
   }
 
+  /**
+   * Maps the stream outputs by every stage of a pipeline, fused into a single operator.
+   *
+   * @param pipeline The pipeline to compile and apply.
+   * @return A mapped stream.
+   */
+  public default InputStream map(InputPipeline pipeline) {
+    return map(pipeline.compile());
+  }
+
   /**
    * Scales the stream outputs by a factor.
    *
@@ -163,6 +173,31 @@ public interface InputStream extends DoubleSupplier {
     return map(x -> limiter.calculate(x));
   }
 
+  /**
+   * Caches the stream outputs for one {@link edu.wpi.first.wpilibj2.command.CommandScheduler}
+   * cycle.
+   *
+   * <p>The returned stream polls this stream at most once per scheduler run, no matter how many
+   * streams are derived from it, so every consumer sees the same sample and any logging upstream
+   * only fires once per tick.
+   *
+   * @param cycles The counter of scheduler runs to cache for.
+   * @return A memoized stream.
+   * @see SchedulerCycle
+   */
+  public default InputStream memoize(SchedulerCycle cycles) {
+    double[] value = new double[1];
+    long[] cycle = {-1};
+    return () -> {
+      long current = cycles.current();
+      if (cycle[0] != current) {
+        value[0] = getAsDouble();
+        cycle[0] = current;
+      }
+      return value[0];
+    };
+  }
+
   /**
    * Logs the output of this stream to networktables every time it is polled.
    *
@@ -0,0 +1,316 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.util.datalog.StringLogEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Times the stages of each robot loop, such as subsystem periodics, command executes, and periodic
+ * callbacks.
+ *
+ * <p>Every stage keeps a rolling window of its most recent durations as primitives. Once per
+ * publish period, the p50, p99, and max of each window are published to NetworkTables and, if
+ * set, a {@link DataLog}. Whenever the stages of a tick take longer than the loop budget in
+ * total, an overrun event listing that tick's longest stages is published. Only time spent in
+ * stages counts towards a tick, so callbacks that run between ticks don't stretch it over the time
+ * spent waiting for the next loop.
+ *
+ * <p>This class is not thread safe, and should only be used from the main robot thread.
+ */
+public final class LoopProfiler {
+  /** The number of samples kept for each stage. */
+  public static final int WINDOW = 256;
+
+  /** The number of ticks between publishing statistics. */
+  public static final int PUBLISH_PERIOD = 50;
+
+  /** The number of stages listed in an overrun event. */
+  private static final int OVERRUN_STAGES = 5;
+
+  /** A single timed stage of the loop. */
+  public final class Stage {
+    private final String name;
+    private final long[] samples = new long[WINDOW];
+    private int count = 0;
+    private int next = 0;
+
+    private long lastDuration = 0;
+    private long lastTick = -1;
+
+    private final DoublePublisher p50;
+    private final DoublePublisher p99;
+    private final DoublePublisher max;
+    private DoubleLogEntry[] logEntries;
+
+    private Stage(String name) {
+      this.name = name;
+      NetworkTable table = nt.getSubTable(name);
+      p50 = table.getDoubleTopic("p50 (ms)").publish();
+      p99 = table.getDoubleTopic("p99 (ms)").publish();
+      max = table.getDoubleTopic("max (ms)").publish();
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return The stage's name.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Records one run of this stage that just finished.
+     *
+     * @param nanos The duration of the run, in nanoseconds.
+     */
+    public void record(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+
+      // a stage may run several times in one tick, such as two commands with the same name
+      lastDuration = lastTick == tick ? lastDuration + nanos : nanos;
+      lastTick = tick;
+      // stages nested in another stage are already part of its duration
+      if (depth == 0) {
+        busy += nanos;
+      }
+    }
+
+    /**
+     * Returns a percentile of the durations in the window.
+     *
+     * @param percentile The percentile, from 0 to 1.
+     * @return The duration at that percentile, in milliseconds, or 0 if there are no samples.
+     */
+    public double percentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      sortWindow();
+      return toMillis(scratch[percentileIndex(percentile, count)]);
+    }
+
+    private void sortWindow() {
+      System.arraycopy(samples, 0, scratch, 0, count);
+      Arrays.sort(scratch, 0, count);
+    }
+
+    private void publish(long timestamp) {
+      if (count == 0) {
+        return;
+      }
+      sortWindow();
+      double[] values = {
+        toMillis(scratch[percentileIndex(0.5, count)]),
+        toMillis(scratch[percentileIndex(0.99, count)]),
+        toMillis(scratch[count - 1])
+      };
+      p50.set(values[0]);
+      p99.set(values[1]);
+      max.set(values[2]);
+
+      if (log != null) {
+        if (logEntries == null) {
+          logEntries =
+              new DoubleLogEntry[] {
+                new DoubleLogEntry(log, path + "/" + name + "/p50 (ms)"),
+                new DoubleLogEntry(log, path + "/" + name + "/p99 (ms)"),
+                new DoubleLogEntry(log, path + "/" + name + "/max (ms)")
+              };
+        }
+        for (int i = 0; i < values.length; i++) {
+          logEntries[i].append(values[i], timestamp);
+        }
+      }
+    }
+  }
+
+  private final String path;
+  private final long budget;
+  private final LongSupplier clock;
+  private final NetworkTable nt;
+
+  private final Map<String, Stage> stages = new HashMap<>();
+  private final List<Stage> ordered = new ArrayList<>();
+  private final long[] scratch = new long[WINDOW];
+
+  private final StringPublisher overrunPublisher;
+  private final DoublePublisher tickPublisher;
+  private DataLog log;
+  private StringLogEntry overrunLog;
+
+  private long tick = 0;
+  // the total duration of the outermost stages of this tick
+  private long busy = 0;
+  // the number of wrapped callbacks currently running
+  private int depth = 0;
+  private long mark = 0;
+  private long overruns = 0;
+
+  /**
+   * Creates a profiler that times with {@link System#nanoTime()}.
+   *
+   * @param path The NetworkTables path to publish under.
+   * @param budget The time each tick should fit in, in seconds.
+   */
+  public LoopProfiler(String path, double budget) {
+    this(path, budget, System::nanoTime);
+  }
+
+  /**
+   * Creates a profiler.
+   *
+   * @param path The NetworkTables path to publish under.
+   * @param budget The time each tick should fit in, in seconds.
+   * @param clock A monotonic clock, in nanoseconds.
+   */
+  public LoopProfiler(String path, double budget, LongSupplier clock) {
+    this.path = path;
+    this.budget = (long) (budget * 1e9);
+    this.clock = clock;
+    nt = NetworkTableInstance.getDefault().getTable(path);
+    overrunPublisher = nt.getStringTopic("Last Overrun").publish();
+    tickPublisher = nt.getDoubleTopic("Tick (ms)").publish();
+  }
+
+  /**
+   * Also publishes statistics and overrun events to a data log.
+   *
+   * @param log The data log to append to.
+   */
+  public void logTo(DataLog log) {
+    this.log = log;
+    overrunLog = new StringLogEntry(log, path + "/Overruns");
+  }
+
+  /**
+   * Returns the stage with a name, creating it if it does not exist.
+   *
+   * @param name The name of the stage.
+   * @return The stage.
+   */
+  public Stage stage(String name) {
+    Stage stage = stages.get(name);
+    if (stage == null) {
+      stage = new Stage(name);
+      stages.put(name, stage);
+      ordered.add(stage);
+    }
+    return stage;
+  }
+
+  /**
+   * Wraps a callback so that each run of it is timed as a stage.
+   *
+   * @param name The name of the stage.
+   * @param callback The callback to time.
+   * @return A timed callback.
+   */
+  public Runnable wrap(String name, Runnable callback) {
+    Stage stage = stage(name);
+    return () -> {
+      long start = clock.getAsLong();
+      depth++;
+      try {
+        callback.run();
+      } finally {
+        depth--;
+      }
+      stage.record(clock.getAsLong() - start);
+    };
+  }
+
+  /** Marks the start of a stage that will be ended by {@link #lap(Stage)}. */
+  public void mark() {
+    mark = clock.getAsLong();
+  }
+
+  /**
+   * Records the time since the last mark or lap as a run of a stage, and starts the next one.
+   *
+   * @param stage The stage that just finished.
+   */
+  public void lap(Stage stage) {
+    long now = clock.getAsLong();
+    stage.record(now - mark);
+    mark = now;
+  }
+
+  /**
+   * Finishes the previous tick and starts a new one. This should be called at the start of each
+   * loop. Stages that run after it, until it is called again, count towards the new tick.
+   */
+  public void beginTick() {
+    long now = clock.getAsLong();
+    if (tick > 0) {
+      tickPublisher.set(toMillis(busy));
+      if (busy > budget) {
+        reportOverrun(busy);
+      }
+    }
+
+    if (tick % PUBLISH_PERIOD == 0) {
+      long timestamp = now / 1000;
+      for (int i = 0; i < ordered.size(); i++) {
+        ordered.get(i).publish(timestamp);
+      }
+    }
+
+    tick++;
+    busy = 0;
+    mark = now;
+  }
+
+  /**
+   * Returns the number of ticks that took longer than the budget.
+   *
+   * @return The number of overruns.
+   */
+  public long overruns() {
+    return overruns;
+  }
+
+  private void reportOverrun(long duration) {
+    overruns++;
+    List<Stage> ran = new ArrayList<>();
+    for (Stage stage : ordered) {
+      if (stage.lastTick == tick) {
+        ran.add(stage);
+      }
+    }
+    ran.sort(Comparator.comparingLong((Stage s) -> s.lastDuration).reversed());
+
+    StringBuilder event =
+        new StringBuilder(String.format("Tick took %.2f ms:", toMillis(duration)));
+    for (int i = 0; i < Math.min(OVERRUN_STAGES, ran.size()); i++) {
+      Stage stage = ran.get(i);
+      event.append(String.format(" %s %.2f ms;", stage.name, toMillis(stage.lastDuration)));
+    }
+
+    overrunPublisher.set(event.toString());
+    if (overrunLog != null) {
+      overrunLog.append(event.toString());
+    }
+  }
+
+  private static int percentileIndex(double percentile, int count) {
+    return Math.max(0, (int) Math.ceil(percentile * count) - 1);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1e6;
+  }
+}
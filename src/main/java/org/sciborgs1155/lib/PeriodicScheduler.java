@@ -0,0 +1,252 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs periodic callbacks at multiples of the robot loop period, staggering them across ticks so
+ * that the time spent per tick stays flat.
+ *
+ * <p>Every task declares a period and a time budget. Each task runs on a fixed phase within its
+ * period. Phases are chosen greedily, largest budget first, to minimize the worst-case budget that
+ * lands on a single tick. Two tasks with the same period and small enough budgets therefore never
+ * run on the same tick.
+ *
+ * <p>The cost of every run is measured, and runs that exceed their budget are counted as deadline
+ * misses. Both are published to NetworkTables.
+ *
+ * <p>This class is not thread safe, and {@link #run()} should be called exactly once per loop.
+ */
+public final class PeriodicScheduler {
+  // the longest schedule to balance over, in ticks
+  private static final int MAX_HYPERPERIOD = 1000;
+
+  /** A periodic callback. */
+  public final class Task {
+    private final String name;
+    private final Runnable callback;
+    private final int periodTicks;
+    private final long budget;
+    private int phase = 0;
+
+    private long runs = 0;
+    private long misses = 0;
+    private long lastCost = 0;
+    private long maxCost = 0;
+
+    private final DoublePublisher costPublisher;
+    private final IntegerPublisher missPublisher;
+
+    private Task(String name, Runnable callback, int periodTicks, long budget) {
+      this.name = name;
+      this.callback = callback;
+      this.periodTicks = periodTicks;
+      this.budget = budget;
+      NetworkTable table = nt.getSubTable(name);
+      costPublisher = table.getDoubleTopic("cost (ms)").publish();
+      missPublisher = table.getIntegerTopic("deadline misses").publish();
+    }
+
+    /**
+     * Returns the name of the task.
+     *
+     * @return The task's name.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Returns the number of ticks between runs of the task.
+     *
+     * @return The period, in ticks.
+     */
+    public int periodTicks() {
+      return periodTicks;
+    }
+
+    /**
+     * Returns the tick within each period that the task runs on.
+     *
+     * @return The phase, from 0 to the period in ticks.
+     */
+    public int phase() {
+      return phase;
+    }
+
+    /**
+     * Returns the number of times the task has run.
+     *
+     * @return The number of runs.
+     */
+    public long runs() {
+      return runs;
+    }
+
+    /**
+     * Returns the number of runs that took longer than the task's budget.
+     *
+     * @return The number of deadline misses.
+     */
+    public long misses() {
+      return misses;
+    }
+
+    /**
+     * Returns the duration of the most recent run.
+     *
+     * @return The last cost, in milliseconds.
+     */
+    public double lastCost() {
+      return lastCost / 1e6;
+    }
+
+    /**
+     * Returns the duration of the longest run.
+     *
+     * @return The max cost, in milliseconds.
+     */
+    public double maxCost() {
+      return maxCost / 1e6;
+    }
+
+    private void run() {
+      long start = clock.getAsLong();
+      callback.run();
+      long cost = clock.getAsLong() - start;
+
+      runs++;
+      lastCost = cost;
+      maxCost = Math.max(maxCost, cost);
+      costPublisher.set(cost / 1e6);
+      if (cost > budget) {
+        misses++;
+        missPublisher.set(misses);
+      }
+    }
+  }
+
+  private final double basePeriod;
+  private final LongSupplier clock;
+  private final NetworkTable nt;
+  private final List<Task> tasks = new ArrayList<>();
+
+  private long tick = 0;
+
+  /**
+   * Creates a scheduler that times with {@link System#nanoTime()}.
+   *
+   * @param path The NetworkTables path to publish under.
+   * @param basePeriod The period of the loop that calls {@link #run()}, in seconds.
+   */
+  public PeriodicScheduler(String path, double basePeriod) {
+    this(path, basePeriod, System::nanoTime);
+  }
+
+  /**
+   * Creates a scheduler.
+   *
+   * @param path The NetworkTables path to publish under.
+   * @param basePeriod The period of the loop that calls {@link #run()}, in seconds.
+   * @param clock A monotonic clock, in nanoseconds.
+   */
+  public PeriodicScheduler(String path, double basePeriod, LongSupplier clock) {
+    this.basePeriod = basePeriod;
+    this.clock = clock;
+    nt = NetworkTableInstance.getDefault().getTable(path);
+  }
+
+  /**
+   * Adds a task, and rebalances the phases of every task.
+   *
+   * @param name The name of the task.
+   * @param callback The callback to run.
+   * @param period The period to run the callback at, in seconds. This is rounded to a whole number
+   *     of loop periods.
+   * @param budget The time each run of the callback is expected to fit in, in seconds.
+   * @return The task.
+   */
+  public Task add(String name, Runnable callback, double period, double budget) {
+    int periodTicks = Math.max(1, (int) Math.round(period / basePeriod));
+    Task task = new Task(name, callback, periodTicks, (long) (budget * 1e9));
+    tasks.add(task);
+    assignPhases();
+    return task;
+  }
+
+  /**
+   * Returns every task, in the order they were added.
+   *
+   * @return An unmodifiable view of the tasks.
+   */
+  public List<Task> tasks() {
+    return Collections.unmodifiableList(tasks);
+  }
+
+  /** Runs every task that is due this tick. */
+  public void run() {
+    for (int i = 0; i < tasks.size(); i++) {
+      Task task = tasks.get(i);
+      if (tick % task.periodTicks == task.phase) {
+        task.run();
+      }
+    }
+    tick++;
+  }
+
+  /** Greedily assigns each task the phase that minimizes the worst per-tick budget. */
+  private void assignPhases() {
+    long hyperperiod = 1;
+    for (Task task : tasks) {
+      hyperperiod = lcm(hyperperiod, task.periodTicks);
+      if (hyperperiod > MAX_HYPERPERIOD) {
+        break;
+      }
+    }
+    int length = (int) Math.min(hyperperiod, MAX_HYPERPERIOD);
+    long[] load = new long[length];
+
+    List<Task> ordered = new ArrayList<>(tasks);
+    ordered.sort(
+        Comparator.comparingLong((Task t) -> t.budget)
+            .reversed()
+            .thenComparingInt(t -> t.periodTicks));
+
+    for (Task task : ordered) {
+      int best = 0;
+      long bestPeak = Long.MAX_VALUE;
+      for (int phase = 0; phase < task.periodTicks; phase++) {
+        long peak = 0;
+        for (int t = phase; t < length; t += task.periodTicks) {
+          peak = Math.max(peak, load[t]);
+        }
+        if (peak < bestPeak) {
+          bestPeak = peak;
+          best = phase;
+        }
+      }
+      task.phase = best;
+      for (int t = best; t < length; t += task.periodTicks) {
+        load[t] += task.budget;
+      }
+    }
+  }
+
+  private static long lcm(long a, long b) {
+    long x = a;
+    long y = b;
+    while (y != 0) {
+      long r = x % y;
+      x = y;
+      y = r;
+    }
+    return a / x * b;
+  }
+}
@@ -0,0 +1,170 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * State that belongs to one robot, rather than to the whole JVM.
+ *
+ * <p>Registries like {@link FaultLogger}, {@link TalonUtils}, and {@link SparkUtils} keep their
+ * state in the current context, so that several robots can be simulated side by side in one JVM
+ * without seeing each other's devices, or each other's clocks. Every thread has a current context,
+ * which is inherited by threads it starts (including {@link edu.wpi.first.wpilibj.Notifier}s) and
+ * is the shared default context otherwise. Work on pooled threads should be wrapped in {@link
+ * #run(Runnable)}.
+ *
+ * <pre>
+ * RobotContext context = new RobotContext("sim 1");
+ * context.run(() -> {
+ *   Drive drive = Drive.create(); // registers its devices with this context
+ *   ...
+ * });
+ * </pre>
+ */
+public final class RobotContext {
+  private static final RobotContext DEFAULT = new RobotContext("");
+
+  private static final InheritableThreadLocal<RobotContext> CURRENT =
+      new InheritableThreadLocal<>() {
+        @Override
+        protected RobotContext initialValue() {
+          return DEFAULT;
+        }
+      };
+
+  private final String name;
+  private final FaultLogger.State faults;
+  private final TalonUtils.State talons = new TalonUtils.State();
+  private final List<Runnable> sparkCheckers = new ArrayList<>();
+  private final Map<Object, Object> locals = new ConcurrentHashMap<>();
+  private volatile DoubleSupplier clock = Timer::getFPGATimestamp;
+
+  /**
+   * Creates a new, empty context.
+   *
+   * @param name The name of the context. Anything it publishes to NetworkTables is published under
+   *     a table of this name, unless it is empty.
+   */
+  public RobotContext(String name) {
+    this.name = name;
+    faults = new FaultLogger.State(table("Faults"));
+  }
+
+  /**
+   * Returns the context of the current thread.
+   *
+   * @return The current context.
+   */
+  public static RobotContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Returns the context shared by every thread that hasn't entered another one.
+   *
+   * @return The default context.
+   */
+  public static RobotContext defaultContext() {
+    return DEFAULT;
+  }
+
+  /**
+   * Runs an action with this as the current context, restoring the previous context after.
+   *
+   * @param action The action to run.
+   */
+  public void run(Runnable action) {
+    call(
+        () -> {
+          action.run();
+          return null;
+        });
+  }
+
+  /**
+   * Computes a value with this as the current context, restoring the previous context after.
+   *
+   * @param action The computation to run.
+   * @return The result of the computation.
+   */
+  public <T> T call(Supplier<T> action) {
+    RobotContext previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return action.get();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Returns a value kept by this context for some key, creating it the first time.
+   *
+   * @param key The key of the value, typically a private constant of the class that owns it.
+   * @param initial Creates the value, if this context doesn't have one yet.
+   * @return The value.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T local(Object key, Supplier<T> initial) {
+    return (T) locals.computeIfAbsent(key, k -> initial.get());
+  }
+
+  /**
+   * Returns the time on this context's clock, which is the FPGA timestamp unless it has been
+   * replaced.
+   *
+   * @return The time, in seconds.
+   */
+  public double time() {
+    return clock.getAsDouble();
+  }
+
+  /**
+   * Replaces this context's clock. Simulated robots that run faster than real time, side by side,
+   * can't share the FPGA timestamp, so each keeps its own time instead.
+   *
+   * @param clock A supplier for the time, in seconds. Must be thread safe.
+   */
+  public void setClock(DoubleSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the name of this context.
+   *
+   * @return The name, which is empty for the default context.
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns a NetworkTables table owned by this context.
+   *
+   * @param key The name of the table.
+   * @return The table, nested under this context's name if it has one.
+   */
+  public NetworkTable table(String key) {
+    NetworkTableInstance nt = NetworkTableInstance.getDefault();
+    return name.isEmpty() ? nt.getTable(key) : nt.getTable(name).getSubTable(key);
+  }
+
+  FaultLogger.State faults() {
+    return faults;
+  }
+
+  TalonUtils.State talons() {
+    return talons;
+  }
+
+  List<Runnable> sparkCheckers() {
+    return sparkCheckers;
+  }
+}
@@ -0,0 +1,43 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.wpilibj.event.EventLoop;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Counts runs of the {@link CommandScheduler}, so that values can be cached for exactly one
+ * scheduler cycle.
+ *
+ * <p>Each counter is advanced by its own binding on the scheduler's default button loop, which is
+ * polled during every {@link CommandScheduler#run()} after subsystem periodics and before any
+ * command executes. Clearing the button loop stops every counter bound before it, so a counter
+ * should be created along with whatever it caches, after the loop was last cleared.
+ */
+public final class SchedulerCycle {
+  private long cycle = 0;
+
+  /**
+   * Starts counting runs of the scheduler. This must not be called while the scheduler is polling
+   * its button loop.
+   */
+  public SchedulerCycle() {
+    this(CommandScheduler.getInstance().getDefaultButtonLoop());
+  }
+
+  /**
+   * Starts counting polls of an event loop. This must not be called while the loop is polled.
+   *
+   * @param loop The loop to count polls of.
+   */
+  public SchedulerCycle(EventLoop loop) {
+    loop.bind(() -> cycle++);
+  }
+
+  /**
+   * Returns the number of cycles counted so far.
+   *
+   * @return The current cycle.
+   */
+  public long current() {
+    return cycle;
+  }
+}
@@ -0,0 +1,122 @@
+package org.sciborgs1155.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free queue for handing objects from exactly one producer thread to exactly one
+ * consumer thread.
+ *
+ * <p>Neither side ever blocks. If the queue is full, {@link #offer(Object)} drops the element and
+ * counts it in {@link #dropped()}.
+ *
+ * @param <T> The type of element.
+ */
+public class SingleProducerQueue<T> {
+  private final Object[] buffer;
+
+  // written only by the producer
+  private final AtomicLong head = new AtomicLong();
+  // written only by the consumer
+  private final AtomicLong tail = new AtomicLong();
+
+  private volatile long dropped = 0;
+
+  /**
+   * Creates a new, empty queue.
+   *
+   * @param capacity The maximum number of elements that can be waiting in the queue.
+   */
+  public SingleProducerQueue(int capacity) {
+    buffer = new Object[capacity];
+  }
+
+  /**
+   * Adds an element to the queue. Must only be called from the producer thread.
+   *
+   * @param element The element to add.
+   * @return Whether the element was added, or dropped because the queue was full.
+   */
+  public boolean offer(T element) {
+    long h = head.get();
+    if (h - tail.get() >= buffer.length) {
+      dropped++;
+      return false;
+    }
+    buffer[(int) (h % buffer.length)] = element;
+    // publishes the element to the consumer
+    head.lazySet(h + 1);
+    return true;
+  }
+
+  /**
+   * Adds an element to the queue, only creating it if there is room. This lets the producer reuse
+   * objects for elements without touching any that are still queued. Must only be called from the
+   * producer thread.
+   *
+   * @param factory Creates the element to add.
+   * @return Whether the element was added, or dropped because the queue was full.
+   */
+  public boolean offerWith(Supplier<? extends T> factory) {
+    long h = head.get();
+    if (h - tail.get() >= buffer.length) {
+      dropped++;
+      return false;
+    }
+    buffer[(int) (h % buffer.length)] = factory.get();
+    // publishes the element to the consumer
+    head.lazySet(h + 1);
+    return true;
+  }
+
+  /**
+   * Removes the oldest element from the queue. Must only be called from the consumer thread.
+   *
+   * @return The oldest element, or null if the queue is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long t = tail.get();
+    if (t == head.get()) {
+      return null;
+    }
+    int i = (int) (t % buffer.length);
+    T element = (T) buffer[i];
+    buffer[i] = null;
+    // frees the slot for the producer
+    tail.lazySet(t + 1);
+    return element;
+  }
+
+  /**
+   * Passes every element currently in the queue, oldest first, to a consumer. Must only be called
+   * from the consumer thread.
+   *
+   * @param consumer The consumer to receive elements.
+   * @return The number of elements drained.
+   */
+  @SuppressWarnings("unchecked")
+  public int drain(Consumer<? super T> consumer) {
+    long t = tail.get();
+    long h = head.get();
+    for (long i = t; i < h; i++) {
+      int index = (int) (i % buffer.length);
+      T element = (T) buffer[index];
+      buffer[index] = null;
+      consumer.accept(element);
+    }
+    // frees the drained slots for the producer
+    tail.lazySet(h);
+    return (int) (h - t);
+  }
+
+  /**
+   * Returns the number of elements that were dropped because the queue was full.
+   *
+   * @return The number of dropped elements.
+   */
+  public long dropped() {
+    return dropped;
+  }
+}
@@ -0,0 +1,81 @@
+package org.sciborgs1155.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free slot holding the latest value of a fixed number of doubles, written by exactly one
+ * thread and read by any number of threads.
+ *
+ * <p>This is a sequence lock: the writer never blocks, and a reader retries only if it raced a
+ * write, so a reader always sees every double from the same write.
+ */
+public class SingleWriterSlot {
+  private final AtomicLongArray values;
+
+  // odd while a write is in progress
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Creates a new slot, holding zeros.
+   *
+   * @param size The number of doubles in the slot.
+   */
+  public SingleWriterSlot(int size) {
+    values = new AtomicLongArray(size);
+  }
+
+  /**
+   * Returns the number of doubles in the slot.
+   *
+   * @return The size of the slot.
+   */
+  public int size() {
+    return values.length();
+  }
+
+  /**
+   * Replaces the contents of the slot. Must only be called from the writer thread.
+   *
+   * @param data The doubles to write, with the same length as the slot.
+   */
+  public void write(double[] data) {
+    long s = sequence.get();
+    sequence.set(s + 1);
+    for (int i = 0; i < data.length; i++) {
+      values.set(i, Double.doubleToRawLongBits(data[i]));
+    }
+    sequence.set(s + 2);
+  }
+
+  /**
+   * Reads a consistent copy of the slot.
+   *
+   * @param out An array to copy the slot into, with the same length as the slot.
+   * @return The number of writes made before the copied one was read, which increases by one with
+   *     every write.
+   */
+  public long read(double[] out) {
+    while (true) {
+      long before = sequence.get();
+      if ((before & 1) == 0) {
+        for (int i = 0; i < out.length; i++) {
+          out[i] = Double.longBitsToDouble(values.get(i));
+        }
+        if (sequence.get() == before) {
+          return before / 2;
+        }
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Returns the number of completed writes.
+   *
+   * @return The version of the slot's contents.
+   */
+  public long version() {
+    return sequence.get() / 2;
+  }
+}
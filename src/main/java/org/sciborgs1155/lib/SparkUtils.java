@@ -2,21 +2,20 @@ package org.sciborgs1155.lib;
 
 import com.revrobotics.spark.SparkBase;
 import com.revrobotics.spark.config.SignalsConfig;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 /** Utility class for configuration of Spark motor controllers */
 public class SparkUtils {
-  private static final List<Runnable> runnables = new ArrayList<>();
+  // checkers are kept by the current RobotContext
 
   public static void addChecker(Runnable runnable) {
-    runnables.add(runnable);
+    RobotContext.current().sparkCheckers().add(runnable);
   }
 
   public static List<Runnable> getRunnables() {
-    return runnables;
+    return RobotContext.current().sparkCheckers();
   }
 
   // REV's docs have the size of a signed value of 65535ms for the max period
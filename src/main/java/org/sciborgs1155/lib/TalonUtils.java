@@ -1,15 +1,38 @@
 package org.sciborgs1155.lib;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.Orchestra;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.configs.AudioConfigs;
 import com.ctre.phoenix6.hardware.TalonFX;
 import edu.wpi.first.wpilibj.DriverStation;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class TalonUtils {
-  private static final Orchestra orchestra = new Orchestra();
-  private static final ArrayList<TalonFX> talons = new ArrayList<>(4);
-  private static boolean fileLoaded = false;
+  /** The talons and signals of one robot, owned by its {@link RobotContext}. */
+  public static final class State {
+    private Orchestra orchestra;
+    private final ArrayList<TalonFX> talons = new ArrayList<>(4);
+    private boolean fileLoaded = false;
+
+    // every signal from every talon, refreshed together once per tick
+    private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+
+    State() {}
+
+    private Orchestra orchestra() {
+      if (orchestra == null) {
+        orchestra = new Orchestra();
+      }
+      return orchestra;
+    }
+  }
+
+  /** Returns the talons and signals of the current robot. */
+  private static State state() {
+    return RobotContext.current().talons();
+  }
 
   /**
    * Adds motor to the orchestra.
@@ -17,7 +40,35 @@ public class TalonUtils {
    * @param talon The motor to add.
    */
   public static void addMotor(TalonFX talon) {
-    talons.add(talon);
+    state().talons.add(talon);
+  }
+
+  /**
+   * Registers status signals to be refreshed by {@link #refreshSignals()}. Signals should be
+   * registered once, when their device is configured.
+   *
+   * @param newSignals The signals to refresh every tick.
+   */
+  public static void registerSignals(BaseStatusSignal... newSignals) {
+    State state = state();
+    BaseStatusSignal[] signals = state.signals;
+    BaseStatusSignal[] all = Arrays.copyOf(signals, signals.length + newSignals.length);
+    System.arraycopy(newSignals, 0, all, signals.length, newSignals.length);
+    state.signals = all;
+  }
+
+  /**
+   * Refreshes every registered signal with a single batched call, so that values and timestamps
+   * line up across devices. This should be called once per tick, before any signals are read.
+   *
+   * @return The status of the refresh.
+   */
+  public static StatusCode refreshSignals() {
+    BaseStatusSignal[] signals = state().signals;
+    if (signals.length == 0) {
+      return StatusCode.OK;
+    }
+    return BaseStatusSignal.refreshAll(signals);
   }
 
   /**
@@ -31,9 +82,10 @@ public class TalonUtils {
    */
   public static boolean configureOrchestra(String fileName) {
     AudioConfigs audioCfg = new AudioConfigs().withAllowMusicDurDisable(true);
-    for (TalonFX talon : talons) {
+    State state = state();
+    for (TalonFX talon : state.talons) {
       talon.getConfigurator().apply(audioCfg);
-      orchestra.addInstrument(talon);
+      state.orchestra().addInstrument(talon);
     }
     return loadOrchestraFile(fileName);
   }
@@ -45,12 +97,13 @@ public class TalonUtils {
    * @return Whether loading the file was successful.
    */
   public static boolean loadOrchestraFile(String fileName) {
-    fileLoaded = orchestra.loadMusic(fileName).isOK();
-    if (!fileLoaded) {
+    State state = state();
+    state.fileLoaded = state.orchestra().loadMusic(fileName).isOK();
+    if (!state.fileLoaded) {
       fileNotFound();
     }
 
-    return fileLoaded;
+    return state.fileLoaded;
   }
 
   /**
@@ -59,8 +112,9 @@ public class TalonUtils {
    * @return Whether the operation was successful.
    */
   public static boolean play() {
-    if (fileLoaded) {
-      return orchestra.play().isOK();
+    State state = state();
+    if (state.fileLoaded) {
+      return state.orchestra().play().isOK();
     }
     fileNotFound();
     return false;
@@ -72,8 +126,9 @@ public class TalonUtils {
    * @return Whether the operation was successful.
    */
   public static boolean stop() {
-    if (fileLoaded) {
-      return orchestra.stop().isOK();
+    State state = state();
+    if (state.fileLoaded) {
+      return state.orchestra().stop().isOK();
     }
     fileNotFound();
     return false;
@@ -85,15 +140,16 @@ public class TalonUtils {
    * @return Whether the operation was successful.
    */
   public static boolean pause() {
-    if (fileLoaded) {
-      return orchestra.pause().isOK();
+    State state = state();
+    if (state.fileLoaded) {
+      return state.orchestra().pause().isOK();
     }
     fileNotFound();
     return false;
   }
 
   private static void fileNotFound() {
-    fileLoaded = false;
+    state().fileLoaded = false;
     DriverStation.reportError(
         "CHRP file not loaded. Check that it is in the deploy directory & includes file extension.",
         true);
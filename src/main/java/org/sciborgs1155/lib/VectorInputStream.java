@@ -0,0 +1,249 @@
+package org.sciborgs1155.lib;
+
+import edu.wpi.first.math.MathSharedStore;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import java.util.function.DoubleSupplier;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A two dimensional {@link InputStream}, such as the x and y axes of a joystick.
+ *
+ * <p>Both components are sampled together into a caller-provided array, so a vector stream never
+ * allocates once built. Magnitude operations like {@link #deadband(double, double)} act on the
+ * length of the vector and preserve its direction.
+ */
+@FunctionalInterface
+public interface VectorInputStream {
+  /**
+   * Creates a vector stream from two scalar streams. Each is polled exactly once per sample.
+   *
+   * @param x The x component.
+   * @param y The y component.
+   * @return A new vector stream.
+   */
+  public static VectorInputStream of(DoubleSupplier x, DoubleSupplier y) {
+    return out -> {
+      out[0] = x.getAsDouble();
+      out[1] = y.getAsDouble();
+    };
+  }
+
+  /**
+   * Samples the stream.
+   *
+   * @param out A length 2 array to write the x and y components into.
+   */
+  void sample(double[] out);
+
+  /**
+   * Returns a scalar stream of the x component. Each poll samples the whole vector.
+   *
+   * @return The x component.
+   */
+  public default InputStream x() {
+    double[] buffer = new double[2];
+    return () -> {
+      sample(buffer);
+      return buffer[0];
+    };
+  }
+
+  /**
+   * Returns a scalar stream of the y component. Each poll samples the whole vector.
+   *
+   * @return The y component.
+   */
+  public default InputStream y() {
+    double[] buffer = new double[2];
+    return () -> {
+      sample(buffer);
+      return buffer[1];
+    };
+  }
+
+  /**
+   * Returns a scalar stream of the vector's length. Each poll samples the whole vector.
+   *
+   * @return The magnitude.
+   */
+  public default InputStream magnitude() {
+    double[] buffer = new double[2];
+    return () -> {
+      sample(buffer);
+      return Math.hypot(buffer[0], buffer[1]);
+    };
+  }
+
+  /**
+   * Maps the length of the stream outputs by an operator, keeping their direction.
+   *
+   * @param operator A function that takes in a non-negative length and returns a new length.
+   * @return A mapped stream.
+   */
+  public default VectorInputStream mapMagnitude(DoubleUnaryOperator operator) {
+    return out -> {
+      sample(out);
+      double magnitude = Math.hypot(out[0], out[1]);
+      if (magnitude < 1e-9) {
+        out[0] = 0;
+        out[1] = 0;
+        return;
+      }
+      double k = operator.applyAsDouble(magnitude) / magnitude;
+      out[0] *= k;
+      out[1] *= k;
+    };
+  }
+
+  /**
+   * Maps the length of the stream outputs by every stage of a pipeline, keeping their direction.
+   * Prefer this over chaining magnitude operations, since the length is only computed once.
+   *
+   * @param pipeline The pipeline to compile and apply.
+   * @return A mapped stream.
+   */
+  public default VectorInputStream mapMagnitude(InputPipeline pipeline) {
+    return mapMagnitude(pipeline.compile());
+  }
+
+  /**
+   * Scales both components of the stream outputs by a factor.
+   *
+   * @param factor A supplier of scaling factors.
+   * @return A scaled stream.
+   */
+  public default VectorInputStream scale(DoubleSupplier factor) {
+    return out -> {
+      sample(out);
+      double k = factor.getAsDouble();
+      out[0] *= k;
+      out[1] *= k;
+    };
+  }
+
+  /**
+   * Scales both components of the stream outputs by a factor.
+   *
+   * @param factor A scaling factor.
+   * @return A scaled stream.
+   */
+  public default VectorInputStream scale(double factor) {
+    return scale(() -> factor);
+  }
+
+  /**
+   * Negates the stream outputs.
+   *
+   * @return A stream scaled by -1.
+   */
+  public default VectorInputStream negate() {
+    return scale(-1);
+  }
+
+  /**
+   * Raises the length of the stream outputs to an exponent, keeping their direction.
+   *
+   * @param exponent The exponent to raise them to.
+   * @return An exponentiated stream.
+   */
+  public default VectorInputStream signedPow(double exponent) {
+    return mapMagnitude(r -> Math.pow(r, exponent));
+  }
+
+  /**
+   * Radially deadbands the stream outputs by a minimum length and scales their length from 0 to a
+   * maximum bound, keeping their direction.
+   *
+   * @param deadband The lower bound to deadband with.
+   * @param max The maximum value to scale with.
+   * @return A deadbanded stream.
+   */
+  public default VectorInputStream deadband(double deadband, double max) {
+    return mapMagnitude(r -> MathUtil.applyDeadband(r, deadband, max));
+  }
+
+  /**
+   * Clamps the length of the stream outputs by a maximum bound, keeping their direction.
+   *
+   * @param magnitude The upper bound to clamp with.
+   * @return A clamped stream.
+   */
+  public default VectorInputStream clamp(double magnitude) {
+    return mapMagnitude(r -> Math.min(r, magnitude));
+  }
+
+  /**
+   * Limits the rate of change of the stream outputs as a vector, so that the limit holds in every
+   * direction rather than per axis.
+   *
+   * <p>Like {@link edu.wpi.first.math.filter.SlewRateLimiter}, the output starts from zero. Nothing
+   * is sampled until the returned stream is, and the first sample starts the clock, so the output
+   * only moves off zero once time passes between samples.
+   *
+   * @param rate The maximum rate of change of the vector, in units / s.
+   * @return A rate limited stream.
+   */
+  public default VectorInputStream rateLimit(double rate) {
+    double[] previous = new double[2];
+    double[] lastTime = {Double.NaN};
+    return out -> {
+      sample(out);
+      double now = MathSharedStore.getTimestamp();
+      double maxStep = Double.isNaN(lastTime[0]) ? 0 : rate * (now - lastTime[0]);
+      lastTime[0] = now;
+
+      double dx = out[0] - previous[0];
+      double dy = out[1] - previous[1];
+      double step = Math.hypot(dx, dy);
+      if (step > maxStep) {
+        double k = maxStep / step;
+        out[0] = previous[0] + dx * k;
+        out[1] = previous[1] + dy * k;
+      }
+      previous[0] = out[0];
+      previous[1] = out[1];
+    };
+  }
+
+  /**
+   * Caches the stream outputs for one {@link edu.wpi.first.wpilibj2.command.CommandScheduler}
+   * cycle.
+   *
+   * @param cycles The counter of scheduler runs to cache for.
+   * @return A memoized stream.
+   * @see InputStream#memoize(SchedulerCycle)
+   */
+  public default VectorInputStream memoize(SchedulerCycle cycles) {
+    double[] value = new double[2];
+    long[] cycle = {-1};
+    return out -> {
+      long current = cycles.current();
+      if (cycle[0] != current) {
+        sample(value);
+        cycle[0] = current;
+      }
+      out[0] = value[0];
+      out[1] = value[1];
+    };
+  }
+
+  /**
+   * Logs the components of this stream to networktables every time it is sampled, under "x" and
+   * "y" subkeys.
+   *
+   * @param key The NetworkTables key to publish to.
+   * @return A stream with the same output as this one.
+   */
+  public default VectorInputStream log(String key) {
+    var nt = NetworkTableInstance.getDefault();
+    DoublePublisher x = nt.getDoubleTopic(key + "/x").publish();
+    DoublePublisher y = nt.getDoubleTopic(key + "/y").publish();
+    return out -> {
+      sample(out);
+      x.set(out[0]);
+      y.set(out[1]);
+    };
+  }
+}
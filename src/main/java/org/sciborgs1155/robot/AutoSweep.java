@@ -0,0 +1,673 @@
+package org.sciborgs1155.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.sciborgs1155.robot.Constants.PERIOD;
+import static org.sciborgs1155.robot.vision.VisionConstants.CAMERAS;
+import static org.sciborgs1155.robot.vision.VisionConstants.SINGLE_TAG_STD_DEVS;
+import static org.sciborgs1155.robot.vision.VisionConstants.TAG_LAYOUT;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.IdealStartingState;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectoryState;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.sciborgs1155.lib.RobotContext;
+import org.sciborgs1155.robot.commands.Autos;
+import org.sciborgs1155.robot.drive.Drive;
+import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
+import org.sciborgs1155.robot.drive.NoGyro;
+import org.sciborgs1155.robot.drive.SimModule;
+import org.sciborgs1155.robot.vision.Vision.CameraConfig;
+import org.sciborgs1155.robot.vision.Vision.PoseEstimate;
+import org.sciborgs1155.robot.vision.VisibilityMap;
+
+/**
+ * Runs autos thousands of times headless, each time on a robot that differs from the model its
+ * controllers were tuned with, and reports how far from their goals they end up and how long they
+ * take to get there.
+ *
+ * <p>Every run randomizes the gain error and friction of each module, how much the wheels slip,
+ * how fast the gyro drifts, the mean and spread of camera latency, and the calibration error of
+ * each camera. Runs are seeded by their index, and workers reset their robot completely between
+ * runs, so a sweep with the same seed gives the same results however many workers it runs on.
+ *
+ * <p>Runs are spread over a pool of workers. Each worker has its own {@link Drive}, in its own
+ * {@link RobotContext} with its own clock, so that workers never share state and each robot runs
+ * as fast as its thread allows. The command scheduler and PathPlanner's commands are shared by the
+ * whole JVM, so they aren't used: instead, an auto's file is read for its paths and waits, and each
+ * path is followed with the same {@link PPHolonomicDriveController} that {@link Autos} configures,
+ * which is reset at the start of each path and stops the robot at its end, as PathPlanner's path
+ * following command does. Named commands are skipped, since this robot registers none, and
+ * PathPlanner runs nothing for them. Once the auto ends, its end state is held until the robot
+ * settles or the run is cut off. Rendering cameras would dominate the run time, so each camera
+ * instead sees the true pose, through its calibration error and noise, whenever the {@link
+ * VisibilityMap} says it can see a tag.
+ */
+public final class AutoSweep {
+  // Range of the multiplier on the voltage each drive motor applies, around 1
+  private static final double GAIN_ERROR = 0.1;
+  // Largest voltage lost to friction in each drive motor
+  private static final double MAX_FRICTION = 0.5;
+  // Largest fraction of wheel travel lost to slip
+  private static final double MAX_SLIP = 0.05;
+  // Standard deviation of the gyro's drift, in radians per second
+  private static final double GYRO_DRIFT = 0.005;
+  // Ranges of each camera's mean latency and of its standard deviation, in seconds
+  private static final double MIN_LATENCY = 0.01;
+  private static final double MAX_LATENCY = 0.06;
+  private static final double MAX_LATENCY_STD_DEV = 0.015;
+  // Standard deviations of the error in each camera's mounting, in meters and radians
+  private static final double MOUNT_ERROR = 0.02;
+  private static final double MOUNT_ANGLE_ERROR = 0.02;
+  // Standard deviations of each frame's pose noise, before scaling by the camera's calibration
+  private static final double FRAME_NOISE = 0.03;
+  private static final double FRAME_ANGLE_NOISE = 0.02;
+  private static final double CAMERA_FPS = 45;
+
+  // How long a robot may take to settle at the end of its auto before the run is cut off
+  private static final double SETTLE_TIMEOUT = 2;
+  // Simulated time at which every run starts, so that history lookups never go negative
+  private static final double START_TIME = 1;
+
+  /** The name of the example routine, swept when no autos are deployed. */
+  public static final String EXAMPLE = "example";
+
+  /**
+   * An auto's paths, as trajectories to be followed one after another, with the robot stopped for a
+   * while before and after each.
+   *
+   * @param name The name of the auto.
+   * @param trajectories The trajectory of each path, in order.
+   * @param waits The time waited before each path, in seconds, followed by the time waited after
+   *     the last.
+   */
+  public static record Routine(
+      String name, List<PathPlannerTrajectory> trajectories, List<Double> waits) {
+    /**
+     * Loads an auto from the deploy directory and generates the trajectories of its paths.
+     *
+     * @param name The name of the auto.
+     * @return The routine.
+     */
+    public static Routine load(String name) {
+      try {
+        File file =
+            new File(Filesystem.getDeployDirectory(), "pathplanner/autos/" + name + ".auto");
+        JsonNode auto = new ObjectMapper().readTree(file);
+        List<PathPlannerPath> paths = new ArrayList<>();
+        List<Double> waits = new ArrayList<>(List.of(0.0));
+        collect(auto.get("command"), auto.path("choreoAuto").asBoolean(), true, paths, waits);
+        return of(name, paths, waits);
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Failed to load auto " + name, e);
+      }
+    }
+
+    /** Adds the paths and waits of a command in an auto file, in the order they run. */
+    private static void collect(
+        JsonNode command,
+        boolean choreo,
+        boolean sequential,
+        List<PathPlannerPath> paths,
+        List<Double> waits)
+        throws Exception {
+      JsonNode data = command.get("data");
+      switch (command.get("type").asText()) {
+        case "path" -> {
+          String path = data.get("pathName").asText();
+          paths.add(
+              choreo
+                  ? PathPlannerPath.fromChoreoTrajectory(path)
+                  : PathPlannerPath.fromPathFile(path));
+          waits.add(0.0);
+        }
+        case "wait" -> {
+          // a wait in a parallel group runs alongside the group's paths
+          if (sequential) {
+            int last = waits.size() - 1;
+            waits.set(last, waits.get(last) + data.get("waitTime").asDouble());
+          }
+        }
+        case "named" -> {}
+        default -> {
+          boolean group = command.get("type").asText().equals("sequential");
+          for (JsonNode child : data.path("commands")) {
+            collect(child, choreo, sequential && group, paths, waits);
+          }
+        }
+      }
+    }
+
+    /**
+     * Generates the trajectories of a list of paths, followed back to back, each starting from
+     * where the last ended.
+     *
+     * @param name The name of the routine.
+     * @param paths The paths to follow.
+     * @return The routine.
+     */
+    public static Routine of(String name, List<PathPlannerPath> paths) {
+      return of(name, paths, Collections.nCopies(paths.size() + 1, 0.0));
+    }
+
+    /**
+     * Generates the trajectories of a list of paths, each starting from where the last ended.
+     *
+     * @param name The name of the routine.
+     * @param paths The paths to follow.
+     * @param waits The time waited before each path, in seconds, followed by the time waited after
+     *     the last.
+     * @return The routine.
+     */
+    public static Routine of(String name, List<PathPlannerPath> paths, List<Double> waits) {
+      if (waits.size() != paths.size() + 1) {
+        throw new IllegalArgumentException("Auto " + name + " needs a wait around each path");
+      }
+      List<PathPlannerTrajectory> trajectories = new ArrayList<>();
+      ChassisSpeeds speeds = new ChassisSpeeds();
+      Rotation2d rotation =
+          paths.isEmpty() || paths.get(0).getIdealStartingState() == null
+              ? Rotation2d.kZero
+              : paths.get(0).getIdealStartingState().rotation();
+      for (int i = 0; i < paths.size(); i++) {
+        // the robot comes to a stop while it waits
+        if (waits.get(i) > 0) {
+          speeds = new ChassisSpeeds();
+        }
+        PathPlannerTrajectory trajectory =
+            paths.get(i).generateTrajectory(speeds, rotation, Autos.CONFIG);
+        PathPlannerTrajectoryState end = trajectory.getEndState();
+        rotation = end.pose.getRotation();
+        speeds = ChassisSpeeds.fromFieldRelativeSpeeds(end.fieldSpeeds, rotation);
+        trajectories.add(trajectory);
+      }
+      if (trajectories.isEmpty()) {
+        throw new IllegalArgumentException("Auto " + name + " has no paths");
+      }
+      return new Routine(name, List.copyOf(trajectories), List.copyOf(waits));
+    }
+
+    /** A short S-curve across the middle of the field, turning a quarter turn on the way. */
+    public static Routine example() {
+      var start = new Pose2d(3, 2, Rotation2d.kZero);
+      var end = new Pose2d(7, 4, Rotation2d.kZero);
+      PathPlannerPath path =
+          new PathPlannerPath(
+              PathPlannerPath.waypointsFromPoses(start, end),
+              Autos.PATHFINDING_CONSTRAINTS,
+              new IdealStartingState(0, Rotation2d.kZero),
+              new GoalEndState(0, Rotation2d.kCCW_90deg));
+      return of(EXAMPLE, List.of(path));
+    }
+
+    /** Returns the time it takes to follow every path and wait every wait, in seconds. */
+    public double totalTime() {
+      double total = 0;
+      for (double wait : waits) {
+        total += wait;
+      }
+      for (PathPlannerTrajectory trajectory : trajectories) {
+        total += trajectory.getTotalTimeSeconds();
+      }
+      return total;
+    }
+
+    /**
+     * Returns the path being followed at a time since the start.
+     *
+     * @param time The time since the start, in seconds.
+     * @return The index of the path, or -1 if the robot is waiting or the routine is over.
+     */
+    public int pathAt(double time) {
+      for (int i = 0; i < trajectories.size(); i++) {
+        time -= waits.get(i);
+        if (time < 0) {
+          return -1;
+        }
+        if (time <= trajectories.get(i).getTotalTimeSeconds()) {
+          return i;
+        }
+        time -= trajectories.get(i).getTotalTimeSeconds();
+      }
+      return -1;
+    }
+
+    /** Returns the time since the start at which a path starts being followed, in seconds. */
+    public double startOf(int path) {
+      double time = waits.get(0);
+      for (int i = 0; i < path; i++) {
+        time += trajectories.get(i).getTotalTimeSeconds() + waits.get(i + 1);
+      }
+      return time;
+    }
+
+    /** Returns the state the routine starts in. */
+    public PathPlannerTrajectoryState start() {
+      return trajectories.get(0).getInitialState();
+    }
+
+    /** Returns the state the routine ends in. */
+    public PathPlannerTrajectoryState end() {
+      return trajectories.get(trajectories.size() - 1).getEndState();
+    }
+  }
+
+  /**
+   * Percentiles of a distribution.
+   *
+   * @param p50 The median.
+   * @param p90 The 90th percentile.
+   * @param p99 The 99th percentile.
+   * @param max The largest value.
+   */
+  public static record Stats(double p50, double p90, double p99, double max) {
+    /**
+     * Computes the nearest-rank percentiles of some values.
+     *
+     * @param values The values, which are sorted in place.
+     * @return The percentiles, or NaN if there are no values.
+     */
+    public static Stats of(double[] values) {
+      if (values.length == 0) {
+        return new Stats(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+      }
+      Arrays.sort(values);
+      return new Stats(
+          percentile(values, 0.5),
+          percentile(values, 0.9),
+          percentile(values, 0.99),
+          values[values.length - 1]);
+    }
+
+    private static double percentile(double[] sorted, double p) {
+      return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+  }
+
+  /**
+   * The outcome of every run of one auto.
+   *
+   * @param auto The name of the auto.
+   * @param runs The number of runs.
+   * @param timeouts The number of runs that didn't settle at the end pose in time.
+   * @param translationError The distance from the true end pose to the goal, in meters.
+   * @param headingError The angle from the true end heading to the goal, in radians.
+   * @param finishTime The time until the robot believed it was at its goal, in seconds, for the
+   *     runs that didn't time out.
+   */
+  public static record Report(
+      String auto,
+      int runs,
+      int timeouts,
+      Stats translationError,
+      Stats headingError,
+      Stats finishTime) {
+    @Override
+    public String toString() {
+      return String.format(
+          "%s: %d runs, %d timed out%n"
+              + "  end error (cm):  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n"
+              + "  heading (deg):   p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n"
+              + "  finish time (s): p50 %.2f  p90 %.2f  p99 %.2f  max %.2f",
+          auto,
+          runs,
+          timeouts,
+          100 * translationError.p50(),
+          100 * translationError.p90(),
+          100 * translationError.p99(),
+          100 * translationError.max(),
+          Math.toDegrees(headingError.p50()),
+          Math.toDegrees(headingError.p90()),
+          Math.toDegrees(headingError.p99()),
+          Math.toDegrees(headingError.max()),
+          finishTime.p50(),
+          finishTime.p90(),
+          finishTime.p99(),
+          finishTime.max());
+    }
+  }
+
+  private AutoSweep() {}
+
+  /**
+   * Runs each routine many times, spread over a pool of workers.
+   *
+   * @param routines The routines to run.
+   * @param runs The number of runs of each routine.
+   * @param seed The seed that every run's errors are drawn from.
+   * @param severity A multiplier on the size of every error; 0 runs the ideal robot every time.
+   * @param threads The number of workers.
+   * @return A report for each routine, in order.
+   */
+  public static List<Report> sweep(
+      List<Routine> routines, int runs, long seed, double severity, int threads) throws Exception {
+    HAL.initialize(500, 0);
+    VisibilityMap visibility =
+        VisibilityMap.read(VisibilityMap.deployPath(), TAG_LAYOUT, cameras())
+            .orElseGet(() -> VisibilityMap.compute(TAG_LAYOUT, cameras()));
+
+    // subsystems register with the global command scheduler, so drives are built on this thread
+    List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(new Worker(new RobotContext("sweep " + i), visibility));
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    List<Report> reports = new ArrayList<>();
+    try {
+      for (int r = 0; r < routines.size(); r++) {
+        Routine routine = routines.get(r);
+        long routineSeed = seed + (long) r * runs;
+        Outcome[] outcomes = new Outcome[runs];
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Worker worker : workers) {
+          tasks.add(
+              pool.submit(
+                  () ->
+                      worker.context.run(
+                          () -> {
+                            for (int i = next.getAndIncrement();
+                                i < runs;
+                                i = next.getAndIncrement()) {
+                              outcomes[i] = worker.run(routine, routineSeed + i, severity);
+                            }
+                          })));
+        }
+        for (Future<?> task : tasks) {
+          task.get();
+        }
+        reports.add(report(routine.name(), outcomes));
+      }
+    } finally {
+      pool.shutdown();
+      for (Worker worker : workers) {
+        CommandScheduler.getInstance().unregisterSubsystem(worker.drive);
+        worker.drive.close();
+      }
+    }
+    return reports;
+  }
+
+  private static CameraConfig[] cameras() {
+    return CAMERAS.toArray(CameraConfig[]::new);
+  }
+
+  private static Report report(String auto, Outcome[] outcomes) {
+    double[] translation = new double[outcomes.length];
+    double[] heading = new double[outcomes.length];
+    double[] finish = new double[outcomes.length];
+    int finished = 0;
+    for (int i = 0; i < outcomes.length; i++) {
+      translation[i] = outcomes[i].translationError();
+      heading[i] = outcomes[i].headingError();
+      if (outcomes[i].finished()) {
+        finish[finished++] = outcomes[i].finishTime();
+      }
+    }
+    return new Report(
+        auto,
+        outcomes.length,
+        outcomes.length - finished,
+        Stats.of(translation),
+        Stats.of(heading),
+        Stats.of(Arrays.copyOf(finish, finished)));
+  }
+
+  /** The true error at the end of a run, and when the robot believed it had finished. */
+  private static record Outcome(
+      double translationError, double headingError, double finishTime, boolean finished) {}
+
+  /** A frame that has been captured, but hasn't reached the robot yet. */
+  private static record Frame(PoseEstimate estimate, double arrival) {}
+
+  /** A robot that runs routines one after another, on whichever thread calls it. */
+  private static final class Worker {
+    private static final double DT = PERIOD.in(Seconds);
+    private static final Comparator<PoseEstimate> BY_TIMESTAMP =
+        Comparator.comparingDouble(e -> e.estimatedPose().timestampSeconds);
+
+    private final RobotContext context;
+    private final VisibilityMap visibility;
+    private final SimModule[] modules = {
+      new SimModule("FL"), new SimModule("FR"), new SimModule("RL"), new SimModule("RR")
+    };
+    private final Drive drive;
+    // every module stopped and facing forward
+    private final SwerveModuleState[] stopped = new SwerveModuleState[modules.length];
+
+    private final PPHolonomicDriveController controller = Autos.followController();
+    private final ChassisSpeeds zero = new ChassisSpeeds();
+
+    // each camera's true mounting, and the error from the mounting it was calibrated with
+    private final Transform2d[] mounts = new Transform2d[CAMERAS.size()];
+    private final Transform2d[] mountErrors = new Transform2d[CAMERAS.size()];
+    private final double[] nextFrame = new double[CAMERAS.size()];
+    private final List<Frame> inFlight = new ArrayList<>();
+    private final List<PoseEstimate> arrived = new ArrayList<>();
+
+    private volatile double time = START_TIME;
+
+    private Worker(RobotContext context, VisibilityMap visibility) {
+      this.context = context;
+      this.visibility = visibility;
+      context.setClock(() -> time);
+      drive =
+          context.call(
+              () -> new Drive(new NoGyro(), modules[0], modules[1], modules[2], modules[3]));
+      Arrays.setAll(stopped, i -> new SwerveModuleState());
+      for (int i = 0; i < mounts.length; i++) {
+        Transform3d robotToCam = CAMERAS.get(i).robotToCam();
+        mounts[i] =
+            new Transform2d(
+                robotToCam.getX(), robotToCam.getY(), robotToCam.getRotation().toRotation2d());
+      }
+    }
+
+    /** Draws a robot from a seed and runs a routine on it. */
+    private Outcome run(Routine routine, long seed, double severity) {
+      var random = new SplittableRandom(seed);
+      for (SimModule module : modules) {
+        module.setDriveErrors(
+            1 + severity * random.nextDouble(-GAIN_ERROR, GAIN_ERROR),
+            severity * random.nextDouble(0, MAX_FRICTION));
+      }
+      double slip = severity * random.nextDouble(0, MAX_SLIP);
+      drive.setSimGyroDrift(severity * GYRO_DRIFT * random.nextGaussian());
+      double latency = MIN_LATENCY + severity * random.nextDouble(0, MAX_LATENCY - MIN_LATENCY);
+      double latencyStdDev = severity * random.nextDouble(0, MAX_LATENCY_STD_DEV);
+      double noise = severity * random.nextDouble(0.5, 2);
+      for (int i = 0; i < mounts.length; i++) {
+        Transform2d calibrated =
+            new Transform2d(
+                mounts[i].getX() + severity * MOUNT_ERROR * random.nextGaussian(),
+                mounts[i].getY() + severity * MOUNT_ERROR * random.nextGaussian(),
+                mounts[i]
+                    .getRotation()
+                    .plus(
+                        Rotation2d.fromRadians(
+                            severity * MOUNT_ANGLE_ERROR * random.nextGaussian())));
+        mountErrors[i] = mounts[i].plus(calibrated.inverse());
+        nextFrame[i] = START_TIME + random.nextDouble(0, 1 / CAMERA_FPS);
+      }
+
+      // start at rest, with nothing left over from the worker's last run, so that a run's outcome
+      // only depends on its seed, and odometry reset to the start of the routine
+      Pose2d start = routine.start().pose;
+      time = START_TIME - DT;
+      drive.setModuleStates(stopped, ControlMode.OPEN_LOOP_VELOCITY);
+      for (SimModule module : modules) {
+        module.reset();
+      }
+      drive.resetSimHeading();
+      drive.periodic();
+      drive.resetOdometry(start);
+      inFlight.clear();
+
+      Pose2d truth = start;
+      Pose2d goal = routine.end().pose;
+      double total = routine.totalTime();
+      double elapsed = 0;
+      boolean finished = false;
+      // the path being followed, the number of paths once holding the end, or -1 while stopped
+      int following = -1;
+      while (elapsed <= total + SETTLE_TIMEOUT) {
+        time = START_TIME + elapsed;
+        drive.periodic();
+        drive.simulationPeriodic();
+
+        // the wheels move the robot a little less than their encoders measured
+        ChassisSpeeds measured = drive.robotRelativeChassisSpeeds();
+        truth =
+            truth.exp(
+                new Twist2d(
+                    (1 - slip) * measured.vxMetersPerSecond * DT,
+                    (1 - slip) * measured.vyMetersPerSecond * DT,
+                    measured.omegaRadiansPerSecond * DT));
+
+        capture(truth, noise, latency, latencyStdDev, random);
+        deliver();
+
+        if (elapsed >= total && drive.atPose(goal)) {
+          finished = true;
+          break;
+        }
+
+        int path = elapsed >= total ? routine.trajectories().size() : routine.pathAt(elapsed);
+        if (path != following) {
+          following = path;
+          controller.reset(drive.pose(), drive.robotRelativeChassisSpeeds());
+        }
+        if (path < 0) {
+          drive.setChassisSpeeds(zero, ControlMode.CLOSED_LOOP_VELOCITY, true);
+        } else if (path == routine.trajectories().size()) {
+          follow(routine.end());
+        } else {
+          follow(routine.trajectories().get(path).sample(elapsed - routine.startOf(path)));
+        }
+        elapsed += DT;
+      }
+
+      return new Outcome(
+          truth.getTranslation().getDistance(goal.getTranslation()),
+          Math.abs(truth.getRotation().minus(goal.getRotation()).getRadians()),
+          elapsed,
+          finished);
+    }
+
+    /** Takes a frame from every camera that is due for one and can see a tag. */
+    private void capture(
+        Pose2d truth, double noise, double latency, double latencyStdDev, SplittableRandom random) {
+      int visible =
+          visibility.visibleCameras(truth.getX(), truth.getY(), truth.getRotation().getRadians());
+      for (int i = 0; i < nextFrame.length; i++) {
+        if (time < nextFrame[i]) {
+          continue;
+        }
+        nextFrame[i] += 1 / CAMERA_FPS;
+        if ((visible & (1 << i)) == 0) {
+          continue;
+        }
+        Pose2d seen = truth.transformBy(mountErrors[i]);
+        Pose2d estimate =
+            new Pose2d(
+                seen.getX() + noise * FRAME_NOISE * random.nextGaussian(),
+                seen.getY() + noise * FRAME_NOISE * random.nextGaussian(),
+                seen.getRotation()
+                    .plus(
+                        Rotation2d.fromRadians(noise * FRAME_ANGLE_NOISE * random.nextGaussian())));
+        double arrival = time + Math.max(0, latency + latencyStdDev * random.nextGaussian());
+        inFlight.add(
+            new Frame(
+                new PoseEstimate(
+                    new EstimatedRobotPose(
+                        new Pose3d(estimate),
+                        time,
+                        List.of(),
+                        PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR),
+                    SINGLE_TAG_STD_DEVS),
+                arrival));
+      }
+    }
+
+    /** Hands every frame that has arrived to the drive, oldest first. */
+    private void deliver() {
+      arrived.clear();
+      for (int i = inFlight.size() - 1; i >= 0; i--) {
+        if (inFlight.get(i).arrival() <= time) {
+          arrived.add(inFlight.remove(i).estimate());
+        }
+      }
+      if (!arrived.isEmpty()) {
+        arrived.sort(BY_TIMESTAMP);
+        drive.updateEstimates(arrived.toArray(PoseEstimate[]::new));
+      }
+    }
+
+    /** Drives towards a target state, as PathPlanner's path following command does. */
+    private void follow(PathPlannerTrajectoryState target) {
+      drive.setChassisSpeeds(
+          controller.calculateRobotRelativeSpeeds(drive.pose(), target),
+          ControlMode.CLOSED_LOOP_VELOCITY,
+          true);
+    }
+  }
+
+  /**
+   * Sweeps autos and prints a report for each. The first argument is the number of runs per auto,
+   * 10000 by default, and any further arguments name the autos to sweep, every deployed auto by
+   * default. If no autos are deployed, {@link Routine#example()} is swept instead.
+   */
+  public static void main(String... args) throws Exception {
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    List<String> names =
+        args.length > 1 ? List.of(args).subList(1, args.length) : AutoBuilder.getAllAutoNames();
+    List<Routine> routines = new ArrayList<>();
+    for (String name : names) {
+      routines.add(Routine.load(name));
+    }
+    if (routines.isEmpty()) {
+      System.out.println("No autos are deployed, sweeping an example path instead");
+      routines.add(Routine.example());
+    }
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    long start = System.nanoTime();
+    List<Report> reports = sweep(routines, runs, 0, 1, threads);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    for (Report report : reports) {
+      System.out.println(report);
+    }
+    System.out.printf(
+        "%d runs on %d threads in %.1f s (%.0f runs / s)%n",
+        runs * routines.size(), threads, seconds, runs * routines.size() / seconds);
+    System.exit(0);
+  }
+}
@@ -41,6 +41,7 @@ public class Constants {
   }
 
   public static final Time PERIOD = Seconds.of(0.02); // roborio tickrate (s)
+  public static final Time SLOW_PERIOD = Seconds.of(0.1); // alerts and dashboards (s)
   public static final double DEADBAND = 0.15;
   public static final double MAX_RATE =
       DriveConstants.MAX_ACCEL.baseUnitMagnitude()
@@ -1,12 +1,14 @@
 package org.sciborgs1155.robot;
 
 import static edu.wpi.first.units.Units.MetersPerSecond;
+import static edu.wpi.first.units.Units.MetersPerSecondPerSecond;
 import static edu.wpi.first.units.Units.RadiansPerSecond;
 import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.wpilibj2.command.button.RobotModeTriggers.*;
 import static org.sciborgs1155.robot.Constants.DEADBAND;
 import static org.sciborgs1155.robot.Constants.PERIOD;
+import static org.sciborgs1155.robot.Constants.SLOW_PERIOD;
 import static org.sciborgs1155.robot.drive.DriveConstants.*;
 
 import edu.wpi.first.wpilibj.DataLogManager;
@@ -14,7 +16,6 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.RobotController;
-import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
@@ -31,9 +32,12 @@ import monologue.Monologue;
 import org.littletonrobotics.urcl.URCL;
 import org.sciborgs1155.lib.CommandRobot;
 import org.sciborgs1155.lib.FaultLogger;
+import org.sciborgs1155.lib.InputPipeline;
 import org.sciborgs1155.lib.InputStream;
 import org.sciborgs1155.lib.Test;
+import org.sciborgs1155.lib.VectorInputStream;
 import org.sciborgs1155.robot.Ports.OI;
+import org.sciborgs1155.robot.commands.AutoChooser;
 import org.sciborgs1155.robot.commands.Autos;
 import org.sciborgs1155.robot.drive.Drive;
 import org.sciborgs1155.robot.shooter.Shooter;
@@ -53,12 +57,12 @@ public class Robot extends CommandRobot implements Logged {
   private final PowerDistribution pdh = new PowerDistribution();
 
   // SUBSYSTEMS
-  private final Drive drive = Drive.create();
+  private final Drive drive = profiled(Drive::create);
   private final Vision vision = Vision.create();
-  private final Shooter shooter = Shooter.create();
+  private final Shooter shooter = profiled(Shooter::create);
 
   // COMMANDS
-  @Log.NT private final SendableChooser<Command> autos = Autos.configureAutos(drive);
+  @Log.NT private final AutoChooser autos = Autos.configureAutos(drive);
 
   @Log.NT private double speedMultiplier = Constants.FULL_SPEED_MULTIPLIER;
 
@@ -75,16 +79,30 @@ public class Robot extends CommandRobot implements Logged {
     // Configure logging with DataLogManager, Monologue, URCL, and FaultLogger
     DataLogManager.start();
     Monologue.setupMonologue(this, "/Robot", false, true);
-    addPeriodic(Monologue::updateAll, PERIOD.in(Seconds));
-    addPeriodic(FaultLogger::update, 2);
+    addPeriodic("Monologue", Monologue::updateAll, PERIOD.in(Seconds));
+    // faults are polled in the background, and merged with alerts on a staggered tick
+    FaultLogger.start();
+    schedulePeriodic("FaultLogger", FaultLogger::update, SLOW_PERIOD.in(Seconds), 0.002);
 
     SmartDashboard.putData(CommandScheduler.getInstance());
     // Log PDH
     SmartDashboard.putData("PDH", pdh);
     FaultLogger.register(pdh);
 
-    // Configure pose estimation updates every tick
-    addPeriodic(() -> drive.updateEstimates(vision.estimatedGlobalPoses()), PERIOD.in(Seconds));
+    // Publish the field widget at a low rate, on a different tick than alerts
+    schedulePeriodic("Drive Dashboard", drive::updateDashboard, SLOW_PERIOD.in(Seconds), 0.002);
+
+    // Build the selected auto while disabled, once it has been loaded in the background
+    schedulePeriodic("Auto Chooser", autos::update, SLOW_PERIOD.in(Seconds), 0.002);
+
+    // Configure pose estimation updates every tick, and skip cameras that can't see any tags
+    addPeriodic(
+        "Pose Estimation",
+        () -> {
+          vision.updateVisibility(drive.pose());
+          drive.updateEstimates(vision.estimatedGlobalPoses());
+        },
+        PERIOD.in(Seconds));
 
     RobotController.setBrownoutVoltage(6.0);
 
@@ -94,49 +112,48 @@ public class Robot extends CommandRobot implements Logged {
       pdh.setSwitchableChannel(true);
     } else {
       DriverStation.silenceJoystickConnectionWarning(true);
-      addPeriodic(() -> vision.simulationPeriodic(drive.pose()), PERIOD.in(Seconds));
+      addPeriodic(
+          "Vision Sim", () -> vision.simulationPeriodic(drive.pose()), PERIOD.in(Seconds));
     }
   }
 
   /** Configures trigger -> command bindings. */
   private void configureBindings() {
-    // x and y are switched: we use joystick Y axis to control field x motion
-    InputStream x = InputStream.of(driver::getLeftY).negate();
-    InputStream y = InputStream.of(driver::getLeftX).negate();
-
     operator.x().onTrue(shooter.runShooter(() -> ShooterConstants.DEFAULT_VELOCITY.in(RadiansPerSecond)));
 
-    // Apply speed multiplier, deadband, square inputs, and scale translation to max speed
-    InputStream r =
-        InputStream.hypot(x, y)
+    // x and y are switched: we use joystick Y axis to control field x motion
+    // Apply speed multiplier, radial deadband, square inputs, and scale translation to max speed
+    VectorInputStream translation =
+        VectorInputStream.of(driver::getLeftY, driver::getLeftX)
+            .negate()
             .log("Robot/raw joystick")
-            .scale(() -> speedMultiplier)
-            .clamp(1.0)
-            .deadband(Constants.DEADBAND, 1.0)
-            .signedPow(2.0)
+            .mapMagnitude(
+                InputPipeline.create()
+                    .scale(() -> speedMultiplier)
+                    .clamp(1.0)
+                    .deadband(Constants.DEADBAND, 1.0)
+                    .signedPow(2.0))
             .log("Robot/processed joystick")
-            .scale(MAX_SPEED.in(MetersPerSecond));
-
-    InputStream theta = InputStream.atan(x, y);
-
-    // Split x and y components of translation input
-    x = r.scale(theta.map(Math::cos)); // .rateLimit(MAX_ACCEL.in(MetersPerSecondPerSecond));
-    y = r.scale(theta.map(Math::sin)); // .rateLimit(MAX_ACCEL.in(MetersPerSecondPerSecond));
+            .scale(MAX_SPEED.in(MetersPerSecond))
+            // limits acceleration in every direction, not per axis
+            .rateLimit(MAX_ACCEL.in(MetersPerSecondPerSecond));
 
     // Apply speed multiplier, deadband, square inputs, and scale rotation to max teleop speed
     InputStream omega =
         InputStream.of(driver::getRightX)
-            .negate()
-            .scale(() -> speedMultiplier)
-            .clamp(1.0)
-            .deadband(DEADBAND, 1.0)
-            .signedPow(2.0)
-            .scale(TELEOP_ANGULAR_SPEED.in(RadiansPerSecond))
+            .map(
+                InputPipeline.create()
+                    .negate()
+                    .scale(() -> speedMultiplier)
+                    .clamp(1.0)
+                    .deadband(DEADBAND, 1.0)
+                    .signedPow(2.0)
+                    .scale(TELEOP_ANGULAR_SPEED.in(RadiansPerSecond)))
             .rateLimit(MAX_ANGULAR_ACCEL.in(RadiansPerSecond.per(Second)));
 
-    drive.setDefaultCommand(drive.drive(x, y, omega));
+    drive.setDefaultCommand(drive.drive(translation, omega));
 
-    autonomous().whileTrue(Commands.defer(autos::getSelected, Set.of(drive)).asProxy());
+    autonomous().whileTrue(Commands.defer(autos::selected, Set.of(drive)).asProxy());
 
     test().whileTrue(systemsCheck());
 
@@ -171,6 +188,11 @@ public class Robot extends CommandRobot implements Logged {
             });
   }
 
+  /** Returns the auto chooser, for scripted runs. */
+  AutoChooser autos() {
+    return autos;
+  }
+
   public Command systemsCheck() {
     return Test.toCommand(drive.systemsCheck()).withName("Test Mechanisms");
   }
@@ -178,6 +200,9 @@ public class Robot extends CommandRobot implements Logged {
   @Override
   public void close() {
     super.close();
+    FaultLogger.stop();
+    autos.close();
+    vision.close();
     try {
       drive.close();
     } catch (Exception e) {
@@ -0,0 +1,165 @@
+package org.sciborgs1155.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.sciborgs1155.robot.Constants.PERIOD;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.List;
+import org.sciborgs1155.robot.commands.AutoChooser;
+
+/**
+ * Runs the robot in simulation without a GUI or driver station, as fast as the CPU allows.
+ *
+ * <p>The robot's main loop runs on its own thread, as it would with {@link Main}, but simulated
+ * time is paused and only advanced by {@link SimHooks#stepTiming(double)}. Stepping waits for every
+ * notifier to finish, so each step runs exactly the loops and callbacks that would have run in that
+ * much real time. The driver station is scripted through a list of {@link Stage}s.
+ *
+ * <p>Each run reports simulated seconds per wall second, for catching regressions in loop time.
+ */
+public final class SimRunner {
+  /** A driver station mode. */
+  public static enum Mode {
+    DISABLED,
+    AUTONOMOUS,
+    TELEOP
+  }
+
+  /**
+   * A period of the script, in one driver station mode.
+   *
+   * @param mode The mode to run in.
+   * @param seconds How long to run for, in simulated seconds.
+   */
+  public static record Stage(Mode mode, double seconds) {}
+
+  /**
+   * The result of a run.
+   *
+   * @param simSeconds The simulated time that was run.
+   * @param wallSeconds The real time it took.
+   * @param loops The number of times the robot's main loop ran.
+   * @param modes The modes the robot entered, in order.
+   */
+  public static record Result(double simSeconds, double wallSeconds, long loops, List<Mode> modes) {
+    /** Returns simulated seconds per wall second. */
+    public double speedup() {
+      return simSeconds / wallSeconds;
+    }
+  }
+
+  /** A fifteen second autonomous period. */
+  public static final List<Stage> AUTO =
+      List.of(new Stage(Mode.DISABLED, 1), new Stage(Mode.AUTONOMOUS, 15));
+
+  /** A full match: autonomous, the pause before teleop, and two minutes and fifteen of teleop. */
+  public static final List<Stage> MATCH =
+      List.of(
+          new Stage(Mode.DISABLED, 1),
+          new Stage(Mode.AUTONOMOUS, 15),
+          new Stage(Mode.DISABLED, 3),
+          new Stage(Mode.TELEOP, 135));
+
+  private SimRunner() {}
+
+  /**
+   * Builds a robot and runs it through a script.
+   *
+   * @param auto The name of the auto to select, or {@link AutoChooser#NONE}.
+   * @param script The driver station modes to run through, in order.
+   * @return The simulated and real time taken.
+   */
+  public static Result run(String auto, List<Stage> script) throws InterruptedException {
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming();
+    DriverStationSim.resetData();
+    DriverStationSim.setDsAttached(true);
+    setMode(Mode.DISABLED);
+
+    long[] loops = {0};
+    List<Mode> modes = new ArrayList<>();
+    Robot robot =
+        new Robot() {
+          @Override
+          public void robotPeriodic() {
+            super.robotPeriodic();
+            loops[0]++;
+          }
+
+          @Override
+          public void disabledInit() {
+            modes.add(Mode.DISABLED);
+          }
+
+          @Override
+          public void autonomousInit() {
+            modes.add(Mode.AUTONOMOUS);
+          }
+
+          @Override
+          public void teleopInit() {
+            modes.add(Mode.TELEOP);
+          }
+        };
+    robot.autos().select(auto);
+    Thread thread = new Thread(robot::startCompetition, "SimRunner");
+    thread.setDaemon(true);
+    thread.start();
+
+    double period = PERIOD.in(Seconds);
+    double simSeconds = 0;
+    long start = System.nanoTime();
+    try {
+      // wait for the robot to start its loop
+      SimHooks.stepTiming(0);
+      for (Stage stage : script) {
+        setMode(stage.mode());
+        long ticks = Math.round(stage.seconds() / period);
+        for (long i = 0; i < ticks; i++) {
+          SimHooks.stepTiming(period);
+        }
+        simSeconds += ticks * period;
+      }
+    } finally {
+      robot.endCompetition();
+      thread.join();
+      robot.close();
+      // so that the next robot built starts from a clean scheduler, without the triggers of this
+      // one; anything bound to the button loop must be bound again after this
+      CommandScheduler.getInstance().unregisterAllSubsystems();
+      CommandScheduler.getInstance().cancelAll();
+      CommandScheduler.getInstance().getDefaultButtonLoop().clear();
+      SimHooks.resumeTiming();
+    }
+
+    Result result =
+        new Result(simSeconds, (System.nanoTime() - start) / 1e9, loops[0], List.copyOf(modes));
+    DataLogManager.log(
+        String.format(
+            "Simulated %.1f s in %.3f s (%.1f sim s / wall s)",
+            result.simSeconds(), result.wallSeconds(), result.speedup()));
+    return result;
+  }
+
+  private static void setMode(Mode mode) {
+    DriverStationSim.setEnabled(mode != Mode.DISABLED);
+    DriverStationSim.setAutonomous(mode == Mode.AUTONOMOUS);
+    DriverStationSim.setTest(false);
+    DriverStationSim.notifyNewData();
+  }
+
+  /**
+   * Runs a full match, or only the autonomous period if the first argument is {@code auto}. The
+   * second argument selects an auto by name.
+   */
+  public static void main(String... args) throws InterruptedException {
+    List<Stage> script = args.length > 0 && args[0].equals("auto") ? AUTO : MATCH;
+    run(args.length > 1 ? args[1] : AutoChooser.NONE, script);
+    System.exit(0);
+  }
+}
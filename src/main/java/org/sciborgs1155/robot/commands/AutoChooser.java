@@ -0,0 +1,209 @@
+package org.sciborgs1155.robot.commands;
+
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import com.pathplanner.lib.config.RobotConfig;
+import com.pathplanner.lib.path.PathPlannerPath;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A chooser for PathPlanner autos that keeps loading them off the critical path.
+ *
+ * <p>Only the names of the autos are listed at startup. When the selection changes, the selected
+ * auto's path files are parsed and its trajectories generated repeatedly on a background thread,
+ * which warms the file cache and the JIT. Once that finishes, and while the robot is disabled,
+ * {@link #update()} builds the auto's command on the main thread (commands must not be composed
+ * concurrently with the scheduler). {@link #selected()} then returns it without any loading.
+ *
+ * <p>The time from {@link #selected()} to the end of the auto's first execute is published as the
+ * first tick latency.
+ */
+public class AutoChooser implements Sendable, AutoCloseable {
+  public static final String NONE = "no auto";
+
+  // trajectory generations per path, enough for the JIT to compile the generator
+  private static final int WARMUP_ITERATIONS = 20;
+
+  private final SendableChooser<String> chooser = new SendableChooser<>();
+  private final Set<String> names = new HashSet<>();
+  private final RobotConfig config;
+  private final ExecutorService loader =
+      Executors.newSingleThreadExecutor(
+          r -> {
+            Thread thread = new Thread(r, "AutoLoader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private String selection = NONE;
+  private Future<?> warmup;
+  private String builtName;
+  private Command built;
+
+  private long requested = 0;
+  private final DoublePublisher latencyPublisher =
+      NetworkTableInstance.getDefault()
+          .getTable("Autos")
+          .getDoubleTopic("first tick latency (ms)")
+          .publish();
+
+  /**
+   * Creates a chooser listing every auto in the deploy directory. {@link AutoBuilder} must be
+   * configured first.
+   *
+   * @param config The robot config used to generate trajectories.
+   */
+  public AutoChooser(RobotConfig config) {
+    this.config = config;
+    chooser.setDefaultOption(NONE, NONE);
+    names.add(NONE);
+    for (String name : AutoBuilder.getAllAutoNames()) {
+      chooser.addOption(name, name);
+      names.add(name);
+    }
+    chooser.onChange(this::select);
+    select(NONE);
+  }
+
+  /**
+   * Selects an auto without the dashboard, for scripted runs, and starts warming it up in the
+   * background. The dashboard will still show its own selection.
+   *
+   * @param name The name of the auto, or {@link #NONE}.
+   * @throws IllegalArgumentException If there is no auto with that name.
+   */
+  public void select(String name) {
+    if (!names.contains(name)) {
+      throw new IllegalArgumentException("No auto named " + name);
+    }
+    selection = name;
+    if (warmup != null) {
+      warmup.cancel(true);
+    }
+    warmup = loader.submit(() -> warm(name));
+  }
+
+  /** Loads an auto's paths and generates their trajectories. Runs on the loader thread. */
+  private void warm(String name) {
+    if (NONE.equals(name)) {
+      return;
+    }
+    try {
+      List<PathPlannerPath> paths = PathPlannerAuto.getPathGroupFromAutoFile(name);
+      for (int i = 0; i < WARMUP_ITERATIONS && !Thread.currentThread().isInterrupted(); i++) {
+        for (PathPlannerPath path : paths) {
+          path.generateTrajectory(new ChassisSpeeds(), Rotation2d.kZero, config);
+        }
+      }
+    } catch (Exception e) {
+      DriverStation.reportWarning("Failed to load auto " + name + ": " + e.getMessage(), false);
+    }
+  }
+
+  /**
+   * Builds the selected auto once it has been warmed up, if the robot is disabled. This should be
+   * called periodically from the main thread.
+   */
+  public void update() {
+    if (DriverStation.isDisabled()
+        && !selection.equals(builtName)
+        && warmup != null
+        && warmup.isDone()) {
+      build(selection);
+    }
+  }
+
+  private void build(String name) {
+    Command auto = NONE.equals(name) ? Commands.none() : new PathPlannerAuto(name);
+    built = new TimedAuto(auto);
+    builtName = name;
+  }
+
+  /**
+   * Returns the command for the selected auto, building it now if it wasn't built in advance.
+   *
+   * @return The selected auto.
+   */
+  public Command selected() {
+    requested = System.nanoTime();
+    if (!selection.equals(builtName)) {
+      DataLogManager.log("Auto " + selection + " was not prebuilt");
+      build(selection);
+    }
+    return built;
+  }
+
+  /**
+   * Returns the name of the selected auto.
+   *
+   * @return The selection.
+   */
+  public String selectedName() {
+    return selection;
+  }
+
+  /**
+   * Returns whether the selected auto has been built, so that starting it won't load anything.
+   *
+   * @return Whether the selected auto is ready.
+   */
+  public boolean isReady() {
+    return selection.equals(builtName);
+  }
+
+  @Override
+  public void initSendable(SendableBuilder builder) {
+    chooser.initSendable(builder);
+  }
+
+  @Override
+  public void close() {
+    loader.shutdownNow();
+    chooser.close();
+    latencyPublisher.close();
+  }
+
+  /** Publishes the time from the auto being requested to the end of its first execute. */
+  private final class TimedAuto extends WrapperCommand {
+    private boolean first = false;
+
+    private TimedAuto(Command auto) {
+      super(auto);
+    }
+
+    @Override
+    public void initialize() {
+      first = true;
+      super.initialize();
+    }
+
+    @Override
+    public void execute() {
+      super.execute();
+      if (first) {
+        first = false;
+        double latency = (System.nanoTime() - requested) / 1e6;
+        latencyPublisher.set(latency);
+        DataLogManager.log(
+            String.format("Auto %s first tick latency: %.2f ms", builtName, latency));
+      }
+    }
+  }
+}
@@ -4,6 +4,9 @@ import static edu.wpi.first.units.Units.KilogramSquareMeters;
 import static edu.wpi.first.units.Units.Kilograms;
 import static org.sciborgs1155.robot.Constants.Robot.*;
 import static org.sciborgs1155.robot.Constants.alliance;
+import static org.sciborgs1155.robot.drive.DriveConstants.MAX_ACCEL;
+import static org.sciborgs1155.robot.drive.DriveConstants.MAX_ANGULAR_ACCEL;
+import static org.sciborgs1155.robot.drive.DriveConstants.MAX_ANGULAR_SPEED;
 import static org.sciborgs1155.robot.drive.DriveConstants.MAX_SPEED;
 import static org.sciborgs1155.robot.drive.DriveConstants.MODULE_OFFSET;
 import static org.sciborgs1155.robot.drive.DriveConstants.WHEEL_COF;
@@ -14,13 +17,20 @@ import com.pathplanner.lib.config.ModuleConfig;
 import com.pathplanner.lib.config.PIDConstants;
 import com.pathplanner.lib.config.RobotConfig;
 import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.pathfinding.LocalADStar;
+import com.pathplanner.lib.pathfinding.Pathfinding;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
-import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.Commands;
-import java.util.Optional;
+import edu.wpi.first.wpilibj2.command.DeferredCommand;
+import java.util.Set;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import org.sciborgs1155.lib.RobotContext;
 import org.sciborgs1155.robot.drive.Drive;
 import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
 import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Driving;
@@ -28,35 +38,130 @@ import org.sciborgs1155.robot.drive.DriveConstants.Rotation;
 import org.sciborgs1155.robot.drive.DriveConstants.Translation;
 
 public class Autos {
-  private static Optional<Rotation2d> rotation = Optional.empty();
+  // key of the rotation override kept by each robot's context
+  private static final Object ROTATION = new Object();
+
+  /** A rotation for paths to face instead of their own, and the feedback that turns to it. */
+  private static final class RotationOverride {
+    private volatile Rotation2d target = Rotation2d.kZero;
+    private volatile DoubleSupplier feedback = () -> 0;
+  }
+
+  // Constraints for paths generated on the fly
+  public static final PathConstraints PATHFINDING_CONSTRAINTS =
+      new PathConstraints(MAX_SPEED, MAX_ACCEL, MAX_ANGULAR_SPEED, MAX_ANGULAR_ACCEL);
+
+  // How far a moving goal can go before the path to it is replanned, in meters
+  private static final double GOAL_TOLERANCE = 0.1;
+
+  public static final RobotConfig CONFIG =
+      new RobotConfig(
+          MASS.in(Kilograms),
+          MOI.in(KilogramSquareMeters),
+          new ModuleConfig(
+              WHEEL_RADIUS,
+              MAX_SPEED,
+              WHEEL_COF,
+              DCMotor.getNEO(1).withReduction(Driving.GEARING),
+              Driving.CURRENT_LIMIT,
+              1),
+          MODULE_OFFSET);
+
+  public static AutoChooser configureAutos(Drive drive) {
+    // plans around deploy/pathplanner/navgrid.json on a background thread, replanning
+    // incrementally as the robot moves, so the main loop only ever reads the latest path
+    Pathfinding.setPathfinder(new LocalADStar());
 
-  public static SendableChooser<Command> configureAutos(Drive drive) {
     AutoBuilder.configure(
         drive::pose,
         drive::resetOdometry,
         drive::robotRelativeChassisSpeeds,
-        s -> drive.setChassisSpeeds(s, ControlMode.CLOSED_LOOP_VELOCITY),
-        new PPHolonomicDriveController(
-            new PIDConstants(Translation.P, Translation.I, Translation.D),
-            new PIDConstants(Rotation.P, Rotation.I, Rotation.D)),
-        new RobotConfig(
-            MASS.in(Kilograms),
-            MOI.in(KilogramSquareMeters),
-            new ModuleConfig(
-                WHEEL_RADIUS,
-                MAX_SPEED,
-                WHEEL_COF,
-                DCMotor.getNEO(1).withReduction(Driving.GEARING),
-                Driving.CURRENT_LIMIT,
-                1),
-            MODULE_OFFSET),
+        s -> drive.setChassisSpeeds(s, ControlMode.CLOSED_LOOP_VELOCITY, true),
+        followController(),
+        CONFIG,
         () -> alliance() == Alliance.Red,
         drive);
 
-    PPHolonomicDriveController.overrideRotationFeedback(() -> rotation.get().getRadians());
+    PIDController rotationFeedback = new PIDController(Rotation.P, Rotation.I, Rotation.D);
+    rotationFeedback.enableContinuousInput(-Math.PI, Math.PI);
+    RotationOverride override = rotation();
+    override.feedback =
+        () ->
+            rotationFeedback.calculate(
+                drive.heading().getRadians(), override.target.getRadians());
+    clearRotationOverride();
+
+    // autos are loaded lazily, in the background, instead of all at startup
+    return new AutoChooser(CONFIG);
+  }
+
+  /**
+   * Creates the controller that PathPlanner follows paths with.
+   *
+   * @return A new controller, with the drive's translation and rotation gains.
+   */
+  public static PPHolonomicDriveController followController() {
+    return new PPHolonomicDriveController(
+        new PIDConstants(Translation.P, Translation.I, Translation.D),
+        new PIDConstants(Rotation.P, Rotation.I, Rotation.D));
+  }
+
+  /** Returns the rotation override of the current robot. */
+  private static RotationOverride rotation() {
+    return RobotContext.current().local(ROTATION, RotationOverride::new);
+  }
+
+  /**
+   * Makes PathPlanner paths face a rotation instead of their own, until {@link
+   * #clearRotationOverride()} is called. {@link #configureAutos(Drive)} must be called first.
+   *
+   * @param target The field-relative rotation to face.
+   */
+  public static void overrideRotation(Rotation2d target) {
+    RotationOverride override = rotation();
+    override.target = target;
+    PPHolonomicDriveController.overrideRotationFeedback(override.feedback);
+  }
+
+  /** Makes PathPlanner paths follow their own rotation again. */
+  public static void clearRotationOverride() {
+    PPHolonomicDriveController.clearRotationFeedbackOverride();
+  }
+
+  /**
+   * Command factory to drive to a pose along a path around the obstacles on the field, planned on
+   * the fly. {@link #configureAutos(Drive)} must be called first.
+   *
+   * @param target The field-relative pose to reach.
+   * @return The command to follow the path until the pose is reached.
+   */
+  public static Command pathfindTo(Pose2d target) {
+    return AutoBuilder.pathfindToPose(target, PATHFINDING_CONSTRAINTS).withName("pathfind to pose");
+  }
 
-    SendableChooser<Command> chooser = AutoBuilder.buildAutoChooser();
-    chooser.addOption("no auto", Commands.none());
-    return chooser;
+  /**
+   * Command factory to drive to a moving pose along a path around the obstacles on the field. The
+   * path is replanned whenever the goal moves by more than a few centimeters. {@link
+   * #configureAutos(Drive)} must be called first.
+   *
+   * @param target A supplier for the field-relative pose to reach.
+   * @param drive The drivetrain.
+   * @return The command to follow the path until the latest pose is reached.
+   */
+  public static Command pathfindTo(Supplier<Pose2d> target, Drive drive) {
+    Pose2d[] goal = {new Pose2d()};
+    return new DeferredCommand(
+            () -> {
+              goal[0] = target.get();
+              return AutoBuilder.pathfindToPose(goal[0], PATHFINDING_CONSTRAINTS);
+            },
+            Set.of(drive))
+        .until(
+            () ->
+                target.get().getTranslation().getDistance(goal[0].getTranslation())
+                    > GOAL_TOLERANCE)
+        .repeatedly()
+        .until(() -> drive.atPose(goal[0]))
+        .withName("pathfind to moving pose");
   }
 }
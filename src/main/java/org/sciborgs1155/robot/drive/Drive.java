@@ -1,9 +1,12 @@
 package org.sciborgs1155.robot.drive;
 
+import static edu.wpi.first.units.Units.Hertz;
 import static edu.wpi.first.units.Units.Meters;
 import static edu.wpi.first.units.Units.MetersPerSecond;
 import static edu.wpi.first.units.Units.MetersPerSecondPerSecond;
 import static edu.wpi.first.units.Units.Radians;
+import static edu.wpi.first.units.Units.RadiansPerSecond;
+import static edu.wpi.first.units.Units.RadiansPerSecondPerSecond;
 import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.units.Units.Volts;
 import static java.lang.Math.atan;
@@ -12,23 +15,25 @@ import static org.sciborgs1155.robot.Constants.allianceRotation;
 import static org.sciborgs1155.robot.Ports.Drive.*;
 import static org.sciborgs1155.robot.drive.DriveConstants.*;
 
-import edu.wpi.first.math.VecBuilder;
-import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.FieldObject2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -50,13 +55,18 @@ import monologue.Logged;
 import org.photonvision.EstimatedRobotPose;
 import org.sciborgs1155.lib.Assertion;
 import org.sciborgs1155.lib.InputStream;
+import org.sciborgs1155.lib.SingleWriterSlot;
 import org.sciborgs1155.lib.Test;
+import org.sciborgs1155.lib.VectorInputStream;
 import org.sciborgs1155.robot.Constants;
 import org.sciborgs1155.robot.Robot;
 import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
+import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Turning;
 import org.sciborgs1155.robot.drive.DriveConstants.Rotation;
 import org.sciborgs1155.robot.drive.DriveConstants.Translation;
 import org.sciborgs1155.robot.vision.Vision.PoseEstimate;
+import org.sciborgs1155.robot.vision.VisionConstants;
+import org.sciborgs1155.robot.vision.VisionFusion;
 
 public class Drive extends SubsystemBase implements Logged, AutoCloseable {
   // Modules
@@ -69,12 +79,69 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
 
   // Gyro, navX2-MXP
   private final GyroIO gyro;
-  private static Rotation2d simRotation = new Rotation2d();
+  private Rotation2d simRotation = new Rotation2d();
+  // rate at which the simulated gyro drifts from the true heading, in radians per second
+  private double simGyroDrift = 0;
 
   public final SwerveDriveKinematics kinematics = new SwerveDriveKinematics(MODULE_OFFSET);
 
+  // Preallocated buffers for the command path, which only allocates a Rotation2d for each module
+  // whose heading changes. Odometry and logging still allocate poses every tick.
+  private static final double DT = Constants.PERIOD.in(Seconds);
+  private final DriveKinematics driveKinematics = new DriveKinematics(MODULE_OFFSET);
+  private final ChassisSpeeds discretizedSpeeds = new ChassisSpeeds();
+  private final ChassisSpeeds fieldDriveSpeeds = new ChassisSpeeds();
+  private final ChassisSpeeds robotRelativeSpeeds = new ChassisSpeeds();
+  private final ChassisSpeeds fieldRelativeSpeeds = new ChassisSpeeds();
+  private final ChassisSpeeds appliedSpeeds = new ChassisSpeeds();
+  private final SwerveSetpointGenerator setpointGenerator =
+      new SwerveSetpointGenerator(
+          MODULE_OFFSET,
+          MAX_SPEED.in(MetersPerSecond),
+          MAX_ACCEL.in(MetersPerSecondPerSecond),
+          Turning.MAX_SPEED.in(RadiansPerSecond));
+  private final SwerveModuleState[] moduleStates;
+  private final SwerveModuleState[] moduleSetpoints;
+  private final SwerveModulePosition[] modulePositions;
+
+  // Real-time control, see DriveConstants.CONTROL_THREAD. Commands on the main thread write their
+  // target into the slot, and only the control notifier drives the modules.
+  private static final int TARGET_SPEEDS = 0;
+  private static final int TARGET_STATES = 1;
+  private static final int TARGET_LIMITED_SPEEDS = 2;
+  private static final ControlMode[] CONTROL_MODES = ControlMode.values();
+  // [kind, control mode, FPGA timestamp, vx, vy, omega] or [..., speed 0, angle 0, speed 1, ...]
+  private final SingleWriterSlot controlTarget;
+  private final double[] targetWrite;
+  private final double[] targetRead;
+  private final SwerveModuleState[] targetStates;
+  private final Notifier controlNotifier;
+  private volatile boolean controlThreadRunning = false;
+  private boolean controlPrioritySet = false;
+  private volatile long controlTicks = 0;
+  // held while reading or actuating the modules, which the notifiers and main thread all do
+  private final Object moduleLock = new Object();
+
+  // Timing of module outputs, written by whichever thread is driving the modules
+  private long lastOutputNanos = 0;
+  private volatile boolean resetControlTiming = false;
+  private volatile double jitterSum = 0;
+  private volatile long jitterCount = 0;
+  private volatile double jitterMax = 0;
+
   // Odometry and pose estimation
-  private final SwerveDrivePoseEstimator odometry;
+  private final SwerveDriveOdometry odometry;
+  private final PoseHistory poseHistory =
+      new PoseHistory((int) Math.ceil(POSE_HISTORY.in(Seconds) * ODOMETRY_FREQUENCY.in(Hertz)));
+  private final double[] historySample = new double[3];
+  // pose of the odometry frame's origin on the field, as corrected by vision
+  private Pose2d odometryOrigin = new Pose2d();
+  private Pose2d estimate;
+  private final OdometryThread odometryThread;
+  private final SwerveModulePosition[] samplePositions;
+  private final OdometryThread.SampleConsumer odometryUpdate = this::updateOdometry;
+  private final VisionFusion visionFusion =
+      new VisionFusion(VisionConstants.FUSION_WINDOW.in(Seconds));
 
   @Log.NT private final Field2d field2d = new Field2d();
   private final FieldObject2d[] modules2d;
@@ -85,13 +152,12 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
 
   // Movement automation
   @Log.NT
-  private final ProfiledPIDController translationController =
-      new ProfiledPIDController(
-          Translation.P,
-          Translation.I,
-          Translation.D,
-          new TrapezoidProfile.Constraints(
-              MAX_SPEED.in(MetersPerSecond), MAX_ACCEL.in(MetersPerSecondPerSecond)));
+  private final PIDController xController =
+      new PIDController(Translation.P, Translation.I, Translation.D);
+
+  @Log.NT
+  private final PIDController yController =
+      new PIDController(Translation.P, Translation.I, Translation.D);
 
   @Log.NT
   private final PIDController rotationController =
@@ -149,6 +215,24 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
     modules = List.of(this.frontLeft, this.frontRight, this.rearLeft, this.rearRight);
     modules2d = new FieldObject2d[modules.size()];
 
+    moduleStates = new SwerveModuleState[modules.size()];
+    moduleSetpoints = new SwerveModuleState[modules.size()];
+    modulePositions = new SwerveModulePosition[modules.size()];
+    samplePositions = new SwerveModulePosition[modules.size()];
+    for (int i = 0; i < samplePositions.length; i++) {
+      samplePositions[i] = new SwerveModulePosition();
+    }
+
+    controlTarget = new SingleWriterSlot(3 + 2 * modules.size());
+    targetWrite = new double[controlTarget.size()];
+    targetRead = new double[controlTarget.size()];
+    targetStates = new SwerveModuleState[modules.size()];
+    for (int i = 0; i < targetStates.length; i++) {
+      targetStates[i] = new SwerveModuleState();
+    }
+    controlNotifier = new Notifier(this::controlTick);
+    controlNotifier.setName("DriveControl");
+
     translationCharacterization =
         new SysIdRoutine(
             new SysIdRoutine.Config(),
@@ -177,12 +261,22 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
                 this,
                 "rotation"));
 
+    modules.forEach(ModuleIO::refresh);
+
     odometry =
-        new SwerveDrivePoseEstimator(
+        new SwerveDriveOdometry(
             kinematics,
             gyro.rotation2d(),
             modulePositions(),
             new Pose2d(new Translation2d(), Rotation2d.fromDegrees(180)));
+    estimate = odometry.getPoseMeters();
+
+    // update our heading in reality / sim
+    odometryThread =
+        new OdometryThread(
+            modules,
+            () -> (Robot.isReal() ? gyro.rotation2d() : simRotation).getRadians(),
+            moduleLock);
 
     for (int i = 0; i < modules.size(); i++) {
       var module = modules.get(i);
@@ -191,7 +285,15 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
 
     gyro.reset();
 
-    translationController.setTolerance(Translation.TOLERANCE.in(Meters));
+    // in simulation, samples are taken synchronously in periodic()
+    if (Robot.isReal()) {
+      odometryThread.start();
+    }
+
+    if (CONTROL_THREAD) {
+      startControlThread();
+    }
+
     rotationController.enableContinuousInput(0, 2 * Math.PI);
     rotationController.setTolerance(Rotation.TOLERANCE.in(Radians));
 
@@ -223,7 +325,24 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
    */
   @Log.NT
   public Pose2d pose() {
-    return odometry.getEstimatedPosition();
+    return estimate;
+  }
+
+  /**
+   * Returns the estimated pose of the robot at a past timestamp, by replaying the odometry history
+   * with the current vision correction applied.
+   *
+   * <p>This is for anything measured relative to the robot in the past, such as a target seen by a
+   * camera, which should be placed on the field from where the robot was when it was captured.
+   *
+   * @param timestamp The FPGA timestamp to look up, in seconds.
+   * @return The pose at that time, or empty if it is older than the history.
+   */
+  public Optional<Pose2d> poseAt(double timestamp) {
+    if (!poseHistory.sample(timestamp, historySample)) {
+      return Optional.empty();
+    }
+    return Optional.of(toField(historyPose()));
   }
 
   /**
@@ -241,7 +360,12 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
    * @param pose The pose to which to set the odometry.
    */
   public void resetOdometry(Pose2d pose) {
-    odometry.resetPosition(gyro.rotation2d(), modulePositions(), pose);
+    // the same yaw that odometry samples are taken with
+    odometry.resetPosition(
+        Robot.isReal() ? gyro.rotation2d() : simRotation, modulePositions(), pose);
+    odometryOrigin = new Pose2d();
+    poseHistory.clear();
+    estimate = pose;
   }
 
   /**
@@ -256,14 +380,45 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
    */
   public Command drive(DoubleSupplier vx, DoubleSupplier vy, DoubleSupplier vOmega) {
     return run(
-        () ->
-            setChassisSpeeds(
-                ChassisSpeeds.fromFieldRelativeSpeeds(
-                    vx.getAsDouble(),
-                    vy.getAsDouble(),
-                    vOmega.getAsDouble(),
-                    heading().plus(allianceRotation())),
-                ControlMode.OPEN_LOOP_VELOCITY));
+        () -> driveFieldRelative(vx.getAsDouble(), vy.getAsDouble(), vOmega.getAsDouble()));
+  }
+
+  /**
+   * Drives the robot based on a {@link VectorInputStream} for field relative translation and an
+   * omega velocity. The translation is sampled once per tick.
+   *
+   * @param velocity A stream of the field relative x and y velocities of the robot, where x is
+   *     perpendicular to the alliance side.
+   * @param vOmega A supplier for the angular velocity of the robot.
+   * @return The driving command.
+   */
+  public Command drive(VectorInputStream velocity, DoubleSupplier vOmega) {
+    double[] translation = new double[2];
+    return run(
+        () -> {
+          velocity.sample(translation);
+          driveFieldRelative(translation[0], translation[1], vOmega.getAsDouble());
+        });
+  }
+
+  /** Rotates alliance relative speeds into the robot's frame and drives with them. */
+  private void driveFieldRelative(double x, double y, double omega) {
+    driveRotated(
+        x,
+        y,
+        omega,
+        heading().getRadians() + allianceRotation().getRadians(),
+        ControlMode.OPEN_LOOP_VELOCITY);
+  }
+
+  /** Rotates speeds by {@code -theta} into the robot's frame and drives with them, limited. */
+  private void driveRotated(double x, double y, double omega, double theta, ControlMode mode) {
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    fieldDriveSpeeds.vxMetersPerSecond = x * cos + y * sin;
+    fieldDriveSpeeds.vyMetersPerSecond = -x * sin + y * cos;
+    fieldDriveSpeeds.omegaRadiansPerSecond = omega;
+    setChassisSpeeds(fieldDriveSpeeds, mode, true);
   }
 
   /**
@@ -287,6 +442,10 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
   /**
    * Drives the robot while facing a target pose.
    *
+   * <p>The target is a point on the field that is known now, so it is aimed at from the current
+   * pose rather than from {@link #poseAt(double)}. A target seen by a camera should be placed on
+   * the field with {@link #poseAt(double)} at its capture time before being passed in.
+   *
    * @param vx A supplier for the absolute x velocity of the robot.
    * @param vy A supplier for the absolute y velocity of the robot.
    * @param translation A supplier for the translation2d to face on the field.
@@ -317,21 +476,55 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
 
   /**
    * Sets the states of each swerve module using target speeds that the drivetrain will work to
-   * reach.
+   * reach, without limiting module acceleration or steering.
    *
    * @param speeds The speeds the drivetrain will run at.
    * @param mode The control loop used to achieve those speeds.
+   * @see #setChassisSpeeds(ChassisSpeeds, ControlMode, boolean)
    */
   public void setChassisSpeeds(ChassisSpeeds speeds, ControlMode mode) {
-    setModuleStates(
-        kinematics.toSwerveModuleStates(
-            ChassisSpeeds.discretize(speeds, Constants.PERIOD.in(Seconds))),
-        mode);
+    setChassisSpeeds(speeds, mode, false);
+  }
+
+  /**
+   * Sets the states of each swerve module using target speeds that the drivetrain will work to
+   * reach.
+   *
+   * <p>If {@code limited}, the speeds are passed through a {@link SwerveSetpointGenerator}, so that
+   * the modules approach them within {@link DriveConstants#MAX_ACCEL} and the steering speed of
+   * their turning motors. Driver and autonomous commands should be limited, while tests that need
+   * the raw response of the modules should not. SysId routines bypass this entirely.
+   *
+   * <p>This reuses preallocated buffers, only allocating a {@link Rotation2d} for each module whose
+   * heading changes, and does not modify {@code speeds}. If the control thread is running, the
+   * speeds are handed to it instead of being applied immediately.
+   *
+   * @param speeds The speeds the drivetrain will run at.
+   * @param mode The control loop used to achieve those speeds.
+   * @param limited Whether to limit module acceleration and steering.
+   */
+  public void setChassisSpeeds(ChassisSpeeds speeds, ControlMode mode, boolean limited) {
+    if (controlThreadRunning) {
+      targetWrite[3] = speeds.vxMetersPerSecond;
+      targetWrite[4] = speeds.vyMetersPerSecond;
+      targetWrite[5] = speeds.omegaRadiansPerSecond;
+      writeTarget(limited ? TARGET_LIMITED_SPEEDS : TARGET_SPEEDS, mode);
+      return;
+    }
+    applyChassisSpeeds(
+        speeds.vxMetersPerSecond,
+        speeds.vyMetersPerSecond,
+        speeds.omegaRadiansPerSecond,
+        mode,
+        limited);
   }
 
   /**
    * Sets the states of each of the swerve modules.
    *
+   * <p>If the control thread is running, the states are handed to it instead of being applied
+   * immediately.
+   *
    * @param desiredStates The desired SwerveModule states.
    * @param mode The method to use when controlling the drive motor.
    */
@@ -340,42 +533,267 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
       throw new IllegalArgumentException("desiredStates must have the same length as modules");
     }
 
+    if (controlThreadRunning) {
+      for (int i = 0; i < desiredStates.length; i++) {
+        targetWrite[3 + 2 * i] = desiredStates[i].speedMetersPerSecond;
+        targetWrite[4 + 2 * i] = desiredStates[i].angle.getRadians();
+      }
+      writeTarget(TARGET_STATES, mode);
+      return;
+    }
+    applyModuleStates(desiredStates, mode);
+  }
+
+  private void applyChassisSpeeds(
+      double vx, double vy, double omega, ControlMode mode, boolean limited) {
+    discretizedSpeeds.vxMetersPerSecond = vx;
+    discretizedSpeeds.vyMetersPerSecond = vy;
+    discretizedSpeeds.omegaRadiansPerSecond = omega;
+    DriveKinematics.discretize(discretizedSpeeds, DT);
+    if (limited) {
+      // the generator's output is already feasible, and becomes its own previous setpoint
+      applyFeasibleStates(
+          setpointGenerator.generate(
+              discretizedSpeeds.vxMetersPerSecond,
+              discretizedSpeeds.vyMetersPerSecond,
+              discretizedSpeeds.omegaRadiansPerSecond,
+              DT),
+          mode);
+      return;
+    }
+    applyModuleStates(
+        driveKinematics.toModuleStates(
+            discretizedSpeeds.vxMetersPerSecond,
+            discretizedSpeeds.vyMetersPerSecond,
+            discretizedSpeeds.omegaRadiansPerSecond),
+        mode);
+  }
+
+  private void applyModuleStates(SwerveModuleState[] desiredStates, ControlMode mode) {
     SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, MAX_SPEED.in(MetersPerSecond));
+    // limited commands that follow start from wherever these states left the modules
+    setpointGenerator.reset(
+        driveKinematics.toChassisSpeeds(desiredStates, appliedSpeeds), desiredStates);
+    applyFeasibleStates(desiredStates, mode);
+  }
 
-    for (int i = 0; i < modules.size(); i++) {
-      modules.get(i).updateSetpoint(desiredStates[i], mode);
+  private void applyFeasibleStates(SwerveModuleState[] desiredStates, ControlMode mode) {
+    synchronized (moduleLock) {
+      for (int i = 0; i < modules.size(); i++) {
+        modules.get(i).updateSetpoint(desiredStates[i], mode);
+      }
+    }
+
+    recordOutputTiming();
+  }
+
+  /**
+   * Starts computing and applying module outputs on a dedicated real-time {@link Notifier}, running
+   * at {@link DriveConstants#CONTROL_PERIOD}.
+   *
+   * <p>While running, {@link #setChassisSpeeds(ChassisSpeeds, ControlMode, boolean)} and {@link
+   * #setModuleStates(SwerveModuleState[], ControlMode)} only hand their target to the notifier
+   * through a lock-free slot, and must only be called from the main thread. A target is applied
+   * until it is replaced, or for up to {@link DriveConstants#CONTROL_TIMEOUT} if it isn't. The
+   * notifier and {@link #periodic()} take turns with the modules, so sensors are never refreshed
+   * while outputs are being computed from them. SysId routines drive the modules directly, and
+   * should not be run while the control thread is running.
+   */
+  public void startControlThread() {
+    if (!controlThreadRunning) {
+      controlThreadRunning = true;
+      resetControlTiming = true;
+      controlNotifier.startPeriodic(CONTROL_PERIOD.in(Seconds));
+    }
+  }
+
+  /**
+   * Stops the control thread, so that module outputs are applied on the main thread again. This
+   * waits for a tick that is already applying outputs to finish, so no output from the control
+   * thread is applied after this returns.
+   */
+  public void stopControlThread() {
+    if (controlThreadRunning) {
+      controlNotifier.stop();
+      synchronized (moduleLock) {
+        controlThreadRunning = false;
+      }
+      resetControlTiming = true;
+    }
+  }
+
+  /**
+   * Returns whether module outputs are being applied by the control thread.
+   *
+   * @return Whether the control thread is running.
+   */
+  @Log.NT
+  public boolean isControlThreadRunning() {
+    return controlThreadRunning;
+  }
+
+  /**
+   * Returns the number of targets the control thread has applied to the modules.
+   *
+   * @return The number of control ticks that drove the modules.
+   */
+  @Log.NT
+  public long controlTicks() {
+    return controlTicks;
+  }
+
+  /**
+   * Returns the mean deviation of the time between module outputs from the control period, since
+   * the control thread was last started or stopped.
+   *
+   * @return The mean jitter, in milliseconds.
+   */
+  @Log.NT
+  public double controlJitter() {
+    long count = jitterCount;
+    return count == 0 ? 0 : jitterSum / count;
+  }
+
+  /**
+   * Returns the largest deviation of the time between module outputs from the control period,
+   * since the control thread was last started or stopped.
+   *
+   * @return The max jitter, in milliseconds.
+   */
+  @Log.NT
+  public double maxControlJitter() {
+    return jitterMax;
+  }
+
+  private void writeTarget(int kind, ControlMode mode) {
+    targetWrite[0] = kind;
+    targetWrite[1] = mode.ordinal();
+    targetWrite[2] = Timer.getFPGATimestamp();
+    controlTarget.write(targetWrite);
+  }
+
+  /** Applies the latest target from the main thread. Runs on the control notifier. */
+  private void controlTick() {
+    if (!controlPrioritySet) {
+      if (Robot.isReal()) {
+        Threads.setCurrentThreadPriority(true, CONTROL_PRIORITY);
+      }
+      controlPrioritySet = true;
+    }
+
+    if (controlTarget.version() == 0) {
+      return;
+    }
+    controlTarget.read(targetRead);
+    if (Timer.getFPGATimestamp() - targetRead[2] > CONTROL_TIMEOUT.in(Seconds)) {
+      return;
+    }
+
+    ControlMode mode = CONTROL_MODES[(int) targetRead[1]];
+    int kind = (int) targetRead[0];
+    synchronized (moduleLock) {
+      // the thread may have been stopped while this tick was waiting for the lock
+      if (!controlThreadRunning) {
+        return;
+      }
+      if (kind == TARGET_SPEEDS || kind == TARGET_LIMITED_SPEEDS) {
+        applyChassisSpeeds(
+            targetRead[3], targetRead[4], targetRead[5], mode, kind == TARGET_LIMITED_SPEEDS);
+      } else {
+        for (int i = 0; i < targetStates.length; i++) {
+          targetStates[i].speedMetersPerSecond = targetRead[3 + 2 * i];
+          DriveKinematics.setAngle(targetStates[i], targetRead[4 + 2 * i]);
+        }
+        applyModuleStates(targetStates, mode);
+      }
+      controlTicks++;
+    }
+  }
+
+  private void recordOutputTiming() {
+    long now = System.nanoTime();
+    if (resetControlTiming) {
+      resetControlTiming = false;
+      lastOutputNanos = 0;
+      jitterSum = 0;
+      jitterCount = 0;
+      jitterMax = 0;
     }
+    if (lastOutputNanos != 0) {
+      double period = controlThreadRunning ? CONTROL_PERIOD.in(Seconds) : DT;
+      double jitter = Math.abs((now - lastOutputNanos) / 1e6 - period * 1e3);
+      jitterSum += jitter;
+      jitterCount++;
+      jitterMax = Math.max(jitterMax, jitter);
+    }
+    lastOutputNanos = now;
   }
 
   /**
    * Command factory that automatically path-follows, in a straight line, to a position on the
    * field.
    *
+   * <p>When the command starts, a {@link HolonomicProfile} is planned from the current pose and
+   * velocity to the target, within {@link DriveConstants#MAX_SPEED}, {@link
+   * DriveConstants#MAX_ACCEL}, {@link DriveConstants#MAX_ANGULAR_SPEED} and {@link
+   * DriveConstants#MAX_ANGULAR_ACCEL}. Every tick, the profile is sampled and followed with
+   * feedforward and PID feedback.
+   *
    * @param target The pose to reach.
-   * @return The command to run the control loop until the pose is reached.
+   * @return The command to follow the profile until the pose is reached.
    */
   public Command driveTo(Pose2d target) {
-    return run(() -> {
-          Transform2d transform = pose().minus(target);
-          Vector<N3> difference =
-              VecBuilder.fill(
-                  transform.getX(),
-                  transform.getY(),
-                  transform.getRotation().getRadians() * RADIUS.in(Meters));
-          double out = translationController.calculate(difference.norm(), 0);
-          Vector<N3> velocities = difference.unit().times(out);
-          setChassisSpeeds(
-              new ChassisSpeeds(
-                  velocities.get(0), velocities.get(1), velocities.get(2) / RADIUS.in(Meters)),
-              ControlMode.CLOSED_LOOP_VELOCITY);
-        })
-        .until(translationController::atGoal)
+    HolonomicProfile profile =
+        new HolonomicProfile(
+            MAX_SPEED.in(MetersPerSecond),
+            MAX_ACCEL.in(MetersPerSecondPerSecond),
+            MAX_ANGULAR_SPEED.in(RadiansPerSecond),
+            MAX_ANGULAR_ACCEL.in(RadiansPerSecondPerSecond));
+    Timer timer = new Timer();
+    return startRun(
+            () -> {
+              profile.plan(pose(), fieldRelativeChassisSpeeds(), target);
+              xController.reset();
+              yController.reset();
+              rotationController.reset();
+              timer.restart();
+            },
+            () -> followProfile(profile, timer.get()))
+        .until(() -> timer.get() >= profile.totalTime() && atPose(target))
         .withName("drive to pose");
   }
 
+  /** Drives along a profile's setpoint at a time, correcting for error from it. */
+  private void followProfile(HolonomicProfile profile, double t) {
+    profile.sample(t);
+    Pose2d pose = pose();
+    double heading = pose.getRotation().getRadians();
+    double vx = profile.vx() + xController.calculate(pose.getX(), profile.x());
+    double vy = profile.vy() + yController.calculate(pose.getY(), profile.y());
+    double omega = profile.omega() + rotationController.calculate(heading, profile.heading());
+    driveRotated(vx, vy, omega, heading, ControlMode.CLOSED_LOOP_VELOCITY);
+  }
+
+  /**
+   * Checks whether the robot is at a pose, within the translation and rotation tolerances.
+   *
+   * @param target The field-relative pose to check.
+   * @return Whether the robot is close enough to the pose.
+   */
+  public boolean atPose(Pose2d target) {
+    Pose2d pose = pose();
+    return pose.getTranslation().getDistance(target.getTranslation())
+            < Translation.TOLERANCE.in(Meters)
+        && Math.abs(pose.getRotation().minus(target.getRotation()).getRadians())
+            < Rotation.TOLERANCE.in(Radians);
+  }
+
   /** Resets all drive encoders to read a position of 0. */
   public void resetEncoders() {
-    modules.forEach(ModuleIO::resetEncoders);
+    synchronized (moduleLock) {
+      modules.forEach(ModuleIO::resetEncoders);
+      modules.forEach(ModuleIO::refresh);
+    }
   }
 
   /** Zeroes the heading of the robot. */
@@ -383,75 +801,197 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
     return runOnce(gyro::reset);
   }
 
-  /** Returns the module states. */
+  /** Returns the module states. The returned array is reused between calls. */
   @Log.NT
   public SwerveModuleState[] moduleStates() {
-    return modules.stream().map(ModuleIO::state).toArray(SwerveModuleState[]::new);
+    for (int i = 0; i < moduleStates.length; i++) {
+      moduleStates[i] = modules.get(i).state();
+    }
+    return moduleStates;
   }
 
-  /** Returns the module states. */
+  /** Returns the module states. The returned array is reused between calls. */
   @Log.NT
   private SwerveModuleState[] moduleSetpoints() {
-    return modules.stream().map(ModuleIO::desiredState).toArray(SwerveModuleState[]::new);
+    for (int i = 0; i < moduleSetpoints.length; i++) {
+      moduleSetpoints[i] = modules.get(i).desiredState();
+    }
+    return moduleSetpoints;
   }
 
-  /** Returns the module positions. */
+  /** Returns the module positions. The returned array is reused between calls. */
   @Log.NT
   public SwerveModulePosition[] modulePositions() {
-    return modules.stream().map(ModuleIO::position).toArray(SwerveModulePosition[]::new);
+    for (int i = 0; i < modulePositions.length; i++) {
+      modulePositions[i] = modules.get(i).position();
+    }
+    return modulePositions;
   }
 
-  /** Returns the robot-relative chassis speeds. */
+  /** Returns the robot-relative chassis speeds. The returned object is reused between calls. */
   @Log.NT
   public ChassisSpeeds robotRelativeChassisSpeeds() {
-    return kinematics.toChassisSpeeds(moduleStates());
+    return driveKinematics.toChassisSpeeds(moduleStates(), robotRelativeSpeeds);
   }
 
-  /** Returns the field-relative chassis speeds. */
+  /** Returns the field-relative chassis speeds. The returned object is reused between calls. */
   @Log.NT
   public ChassisSpeeds fieldRelativeChassisSpeeds() {
-    return ChassisSpeeds.fromRobotRelativeSpeeds(robotRelativeChassisSpeeds(), heading());
+    ChassisSpeeds speeds = robotRelativeChassisSpeeds();
+    Rotation2d heading = heading();
+    fieldRelativeSpeeds.vxMetersPerSecond =
+        speeds.vxMetersPerSecond * heading.getCos() - speeds.vyMetersPerSecond * heading.getSin();
+    fieldRelativeSpeeds.vyMetersPerSecond =
+        speeds.vxMetersPerSecond * heading.getSin() + speeds.vyMetersPerSecond * heading.getCos();
+    fieldRelativeSpeeds.omegaRadiansPerSecond = speeds.omegaRadiansPerSecond;
+    return fieldRelativeSpeeds;
   }
 
   /**
    * Updates pose estimate based on vision-provided {@link EstimatedRobotPose}s.
    *
-   * @param poses The pose estimates based on vision data.
+   * <p>Estimates from every camera are first fused into one measurement per {@link
+   * VisionConstants#FUSION_WINDOW}, so the estimator is corrected about once per tick however many
+   * cameras there are.
+   *
+   * @param poses The pose estimates based on vision data, sorted from oldest to newest.
    */
   public void updateEstimates(PoseEstimate... poses) {
     Pose3d[] loggedEstimates = new Pose3d[poses.length];
     for (int i = 0; i < poses.length; i++) {
       loggedEstimates[i] = poses[i].estimatedPose().estimatedPose;
-      odometry.addVisionMeasurement(
-          poses[i].estimatedPose().estimatedPose.toPose2d(),
-          poses[i].estimatedPose().timestampSeconds,
-          poses[i].standardDev());
       field2d
           .getObject("Cam " + i + " Est Pose")
           .setPose(poses[i].estimatedPose().estimatedPose.toPose2d());
     }
     log("estimated poses", loggedEstimates);
+
+    int fused = visionFusion.fuse(poses);
+    for (int i = 0; i < fused; i++) {
+      addVisionMeasurement(
+          visionFusion.pose(i), visionFusion.timestamp(i), visionFusion.stdDevs(i));
+    }
+    log("fused vision measurements", fused);
+  }
+
+  /**
+   * Fuses a vision measurement with the odometry pose at the time it was taken.
+   *
+   * <p>The estimate at the measurement's timestamp is looked up in the pose history and moved
+   * towards the measurement, weighted by the odometry and vision standard deviations. The odometry
+   * frame is then shifted so that every later odometry sample carries the correction forward.
+   *
+   * @param visionPose The field-relative pose measured by vision.
+   * @param timestamp The FPGA timestamp of the measurement, in seconds.
+   * @param stdDevs The standard deviations of the measurement (x and y in meters, heading in
+   *     radians).
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestamp, Matrix<N3, N1> stdDevs) {
+    if (!poseHistory.sample(timestamp, historySample)) {
+      return;
+    }
+
+    Pose2d odometryPose = historyPose();
+    Pose2d then = toField(odometryPose);
+    Twist2d twist = then.log(visionPose);
+    Pose2d corrected =
+        then.exp(
+            new Twist2d(
+                visionGain(0, stdDevs) * twist.dx,
+                visionGain(1, stdDevs) * twist.dy,
+                visionGain(2, stdDevs) * twist.dtheta));
+
+    odometryOrigin =
+        corrected.transformBy(
+            new Transform2d(odometryPose.getTranslation(), odometryPose.getRotation()).inverse());
+    estimate = toField(odometry.getPoseMeters());
+  }
+
+  /**
+   * Returns the steady-state Kalman gain for one axis of a vision measurement.
+   *
+   * @param row The axis (x, y, or heading).
+   * @param stdDevs The standard deviations of the vision measurement.
+   * @return The fraction of the error between the estimate and measurement to correct.
+   */
+  private static double visionGain(int row, Matrix<N3, N1> stdDevs) {
+    double q = ODOMETRY_STD_DEVS.get(row, 0) * ODOMETRY_STD_DEVS.get(row, 0);
+    double r = stdDevs.get(row, 0) * stdDevs.get(row, 0);
+    return q == 0 ? 0 : q / (q + Math.sqrt(q * r));
+  }
+
+  /** Returns the last odometry pose sampled from the pose history. */
+  private Pose2d historyPose() {
+    return new Pose2d(historySample[0], historySample[1], Rotation2d.fromRadians(historySample[2]));
+  }
+
+  /**
+   * Converts a pose in the odometry frame to a field-relative pose.
+   *
+   * @param odometryPose The pose in the odometry frame.
+   * @return The pose on the field.
+   */
+  private Pose2d toField(Pose2d odometryPose) {
+    return odometryOrigin.transformBy(
+        new Transform2d(odometryPose.getTranslation(), odometryPose.getRotation()));
+  }
+
+  /**
+   * Applies a single sample from the {@link OdometryThread} to the odometry and pose history.
+   *
+   * @param timestamp The FPGA timestamp of the sample, in seconds.
+   * @param yaw The yaw of the robot, in radians.
+   * @param distances The distance traveled by each module, in meters.
+   * @param angles The angle of each module, in radians.
+   */
+  private void updateOdometry(double timestamp, double yaw, double[] distances, double[] angles) {
+    for (int i = 0; i < samplePositions.length; i++) {
+      samplePositions[i].distanceMeters = distances[i];
+      samplePositions[i].angle = Rotation2d.fromRadians(angles[i]);
+    }
+    Pose2d odometryPose = odometry.update(Rotation2d.fromRadians(yaw), samplePositions);
+    poseHistory.add(
+        timestamp,
+        odometryPose.getX(),
+        odometryPose.getY(),
+        odometryPose.getRotation().getRadians());
+    estimate = toField(odometryPose);
   }
 
   @Override
   public void periodic() {
-    // update our heading in reality / sim
-    odometry.update(Robot.isReal() ? gyro.rotation2d() : simRotation, modulePositions());
+    // read every module's sensors once, for a consistent view during this tick, while the control
+    // thread (if running) isn't actuating them
+    synchronized (moduleLock) {
+      for (int i = 0; i < modules.size(); i++) {
+        modules.get(i).refresh();
+      }
 
-    // update our simulated field poses
+      if (!odometryThread.isRunning()) {
+        odometryThread.sample();
+      }
+    }
+    log("odometry samples", odometryThread.drain(odometryUpdate));
+
+    Command command = getCurrentCommand();
+    log("command", command == null ? "none" : command.getName());
+  }
+
+  /**
+   * Publishes the robot and module poses to the field widget, and the heading being turned to. This
+   * doesn't need to run every tick.
+   */
+  public void updateDashboard() {
     field2d.setRobotPose(pose());
+    log(
+        "turning target",
+        new Pose2d(pose().getTranslation(), new Rotation2d(rotationController.getSetpoint())));
 
     for (int i = 0; i < modules2d.length; i++) {
       var module = modules.get(i);
       var transform = new Transform2d(MODULE_OFFSET[i], module.position().angle);
       modules2d[i].setPose(pose().transformBy(transform));
     }
-
-    log(
-        "turning target",
-        new Pose2d(pose().getTranslation(), new Rotation2d(rotationController.getSetpoint())));
-
-    log("command", Optional.ofNullable(getCurrentCommand()).map(Command::getName).orElse("none"));
   }
 
   @Override
@@ -459,7 +999,21 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
     simRotation =
         simRotation.rotateBy(
             Rotation2d.fromRadians(
-                robotRelativeChassisSpeeds().omegaRadiansPerSecond * Constants.PERIOD.in(Seconds)));
+                (robotRelativeChassisSpeeds().omegaRadiansPerSecond + simGyroDrift) * DT));
+  }
+
+  /** Zeroes the simulated gyro, as if the robot had just been turned on. */
+  public void resetSimHeading() {
+    simRotation = Rotation2d.kZero;
+  }
+
+  /**
+   * Makes the simulated gyro drift away from the robot's true heading, as a real gyro does.
+   *
+   * @param radiansPerSecond The rate of drift.
+   */
+  public void setSimGyroDrift(double radiansPerSecond) {
+    simGyroDrift = radiansPerSecond;
   }
 
   /** Stops the drivetrain. */
@@ -471,11 +1025,8 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
   public Command lock() {
     var front = new SwerveModuleState(0, Rotation2d.fromDegrees(45));
     var back = new SwerveModuleState(0, Rotation2d.fromDegrees(-45));
-    return run(
-        () ->
-            setModuleStates(
-                new SwerveModuleState[] {front, back, back, front},
-                ControlMode.OPEN_LOOP_VELOCITY));
+    var states = new SwerveModuleState[] {front, back, back, front};
+    return run(() -> setModuleStates(states, ControlMode.OPEN_LOOP_VELOCITY));
   }
 
   /**
@@ -510,6 +1061,8 @@ public class Drive extends SubsystemBase implements Logged, AutoCloseable {
   }
 
   public void close() throws Exception {
+    controlNotifier.close();
+    odometryThread.close();
     frontLeft.close();
     frontRight.close();
     rearLeft.close();
@@ -2,14 +2,19 @@ package org.sciborgs1155.robot.drive;
 
 import static edu.wpi.first.units.Units.*;
 
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularAcceleration;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.units.measure.Frequency;
 import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.LinearVelocity;
 import edu.wpi.first.units.measure.Time;
@@ -43,6 +48,24 @@ public final class DriveConstants {
   // Rate at which sensors update periodicially
   public static final Time SENSOR_PERIOD = Seconds.of(0.02);
 
+  // Whether module outputs are computed on a dedicated real-time notifier, instead of the main loop
+  public static final boolean CONTROL_THREAD = false;
+  // Rate at which the control notifier runs; simulated modules integrate over the main loop period
+  public static final Time CONTROL_PERIOD = Seconds.of(0.02);
+  // Real-time priority of the control notifier's thread, from 1 to 99
+  public static final int CONTROL_PRIORITY = 40;
+  // How long the control notifier holds a target before stopping, if no command updates it
+  public static final Time CONTROL_TIMEOUT = Seconds.of(0.1);
+
+  // Rate at which the odometry thread samples module positions and gyro yaw (100 - 250 Hz)
+  public static final Frequency ODOMETRY_FREQUENCY = Hertz.of(200);
+
+  // How far back odometry is kept, for latency-compensated vision updates
+  public static final Time POSE_HISTORY = Seconds.of(1.5);
+
+  // Standard deviations of the odometry estimate (x and y in meters, heading in radians)
+  public static final Matrix<N3, N1> ODOMETRY_STD_DEVS = VecBuilder.fill(0.1, 0.1, 0.1);
+
   // Distance between centers of right and left wheels on robot
   public static final Distance TRACK_WIDTH = Meters.of(0.5715);
   // Distance between front and back wheels on robot
@@ -161,6 +184,9 @@ public final class DriveConstants {
 
       public static final Current CURRENT_LIMIT = Amps.of(20);
 
+      // Free speed of the NEO 550 through the turning gearbox, the fastest a module can steer
+      public static final AngularVelocity MAX_SPEED = RPM.of(11000 * MOTOR_GEARING);
+
       public static final class PID {
         public static final double P = 9;
         public static final double I = 0.0;
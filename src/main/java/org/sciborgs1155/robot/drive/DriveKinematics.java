@@ -0,0 +1,147 @@
+package org.sciborgs1155.robot.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * In-place discretization, inverse kinematics, and forward kinematics for a swerve drive with a
+ * fixed module layout, such as {@link DriveConstants#MODULE_OFFSET}.
+ *
+ * <p>This produces the same results as {@link ChassisSpeeds#discretize(ChassisSpeeds, double)} and
+ * {@link SwerveDriveKinematics}, but writes into preallocated buffers instead of creating new
+ * objects every call. {@link Rotation2d} is immutable, so a module state's angle is the one thing
+ * that is still replaced, and only when it changes.
+ */
+public final class DriveKinematics {
+  private final double[] moduleX;
+  private final double[] moduleY;
+
+  // 3 x 2n pseudo-inverse of the inverse kinematics matrix
+  private final double[][] forward;
+
+  private final SwerveModuleState[] states;
+
+  /**
+   * Creates a new kinematics buffer.
+   *
+   * @param offsets The location of each module relative to the center of the robot.
+   */
+  public DriveKinematics(Translation2d... offsets) {
+    int n = offsets.length;
+    moduleX = new double[n];
+    moduleY = new double[n];
+    states = new SwerveModuleState[n];
+
+    SimpleMatrix inverse = new SimpleMatrix(2 * n, 3);
+    for (int i = 0; i < n; i++) {
+      moduleX[i] = offsets[i].getX();
+      moduleY[i] = offsets[i].getY();
+      states[i] = new SwerveModuleState();
+      inverse.setRow(2 * i, 0, 1, 0, -moduleY[i]);
+      inverse.setRow(2 * i + 1, 0, 0, 1, moduleX[i]);
+    }
+
+    SimpleMatrix pseudoInverse = inverse.pseudoInverse();
+    forward = new double[3][2 * n];
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 2 * n; c++) {
+        forward[r][c] = pseudoInverse.get(r, c);
+      }
+    }
+  }
+
+  /**
+   * Discretizes chassis speeds in place, so that moving at them for one period results in the
+   * intended pose change.
+   *
+   * @param speeds The speeds to discretize.
+   * @param dt The duration of the timestep the speeds should be applied for, in seconds.
+   * @see ChassisSpeeds#discretize(ChassisSpeeds, double)
+   */
+  public static void discretize(ChassisSpeeds speeds, double dt) {
+    // closed form of Pose2d.log() for a pose of (vx * dt, vy * dt, omega * dt)
+    double dtheta = speeds.omegaRadiansPerSecond * dt;
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1;
+    double halfThetaByTanOfHalfDtheta =
+        Math.abs(cosMinusOne) < 1e-9
+            ? 1.0 - 1.0 / 12.0 * dtheta * dtheta
+            : -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+
+    double vx = speeds.vxMetersPerSecond;
+    double vy = speeds.vyMetersPerSecond;
+    speeds.vxMetersPerSecond = vx * halfThetaByTanOfHalfDtheta + vy * halfDtheta;
+    speeds.vyMetersPerSecond = vy * halfThetaByTanOfHalfDtheta - vx * halfDtheta;
+  }
+
+  /**
+   * Converts robot-relative chassis speeds into module states, which are written into {@link
+   * #states()}. If a module is not moving, it keeps its previous heading.
+   *
+   * @param vx The robot-relative x velocity, in meters / second.
+   * @param vy The robot-relative y velocity, in meters / second.
+   * @param omega The angular velocity, in radians / second.
+   * @return The module states, which are reused between calls.
+   */
+  public SwerveModuleState[] toModuleStates(double vx, double vy, double omega) {
+    for (int i = 0; i < states.length; i++) {
+      double x = vx - omega * moduleY[i];
+      double y = vy + omega * moduleX[i];
+      double speed = Math.hypot(x, y);
+      states[i].speedMetersPerSecond = speed;
+      if (speed > 1e-6) {
+        setAngle(states[i], Math.atan2(y, x));
+      }
+    }
+    return states;
+  }
+
+  /**
+   * Converts module states into robot-relative chassis speeds with a least squares fit.
+   *
+   * @param states The measured module states.
+   * @param out The chassis speeds to write into.
+   * @return {@code out}, for chaining.
+   */
+  public ChassisSpeeds toChassisSpeeds(SwerveModuleState[] states, ChassisSpeeds out) {
+    double vx = 0;
+    double vy = 0;
+    double omega = 0;
+    for (int i = 0; i < states.length; i++) {
+      double x = states[i].speedMetersPerSecond * states[i].angle.getCos();
+      double y = states[i].speedMetersPerSecond * states[i].angle.getSin();
+      vx += forward[0][2 * i] * x + forward[0][2 * i + 1] * y;
+      vy += forward[1][2 * i] * x + forward[1][2 * i + 1] * y;
+      omega += forward[2][2 * i] * x + forward[2][2 * i + 1] * y;
+    }
+    out.vxMetersPerSecond = vx;
+    out.vyMetersPerSecond = vy;
+    out.omegaRadiansPerSecond = omega;
+    return out;
+  }
+
+  /**
+   * Returns the module states written by {@link #toModuleStates(double, double, double)}.
+   *
+   * @return The module states, which are reused between calls.
+   */
+  public SwerveModuleState[] states() {
+    return states;
+  }
+
+  /**
+   * Sets the angle of a module state, only creating a new {@link Rotation2d} if the angle changed.
+   *
+   * @param state The state to modify.
+   * @param radians The new angle, in radians.
+   */
+  public static void setAngle(SwerveModuleState state, double radians) {
+    if (state.angle.getRadians() != radians) {
+      state.angle = Rotation2d.fromRadians(radians);
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package org.sciborgs1155.robot.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * A time-parameterized motion profile from a moving robot to a target pose, for a holonomic drive.
+ *
+ * <p>The profile is planned along three axes, each with a time-optimal trapezoidal velocity
+ * profile: translation along the straight line to the target, translation across that line (which
+ * only brings any initial sideways velocity back to zero), and heading. A module's speed is at most
+ * the translational speed plus the angular speed times its distance from the center, so the axes
+ * share one budget: each gets a fraction of the max speed and acceleration (of the max angular
+ * speed and acceleration for heading), and the fractions add up to one. An axis keeps at least the
+ * fraction its initial velocity already uses, and the rest is split in proportion to how long each
+ * axis would take alone, so that they all take about as long as the slowest.
+ *
+ * <p>If the robot starts faster than the whole budget, each axis slows down within a share of it
+ * proportional to its initial velocity, while {@link #RESERVE} of the budget is kept to start the
+ * others.
+ *
+ * <p>Planning is closed form, and sampling takes constant time. Neither allocates.
+ */
+public final class HolonomicProfile {
+  /** The fraction of the budget kept for every axis when the robot starts faster than it. */
+  public static final double RESERVE = 0.1;
+
+  /** A trapezoidal profile from a position and velocity to rest at a goal, along one axis. */
+  private static final class Axis {
+    // at most: stop, accelerate, cruise, decelerate
+    private static final int MAX_SEGMENTS = 4;
+
+    private final double fullVelocity;
+    private final double fullAccel;
+
+    private double maxVelocity;
+    private double maxAccel;
+
+    private final double[] startTime = new double[MAX_SEGMENTS];
+    private final double[] startPosition = new double[MAX_SEGMENTS];
+    private final double[] startVelocity = new double[MAX_SEGMENTS];
+    private final double[] accel = new double[MAX_SEGMENTS];
+    private int segments = 0;
+    private double duration = 0;
+    private double goal = 0;
+
+    private double position = 0;
+    private double velocity = 0;
+
+    private Axis(double maxVelocity, double maxAccel) {
+      fullVelocity = maxVelocity;
+      fullAccel = maxAccel;
+      this.maxVelocity = maxVelocity;
+      this.maxAccel = maxAccel;
+    }
+
+    /**
+     * Limits the axis to a fraction of its max velocity and acceleration, for the next plan.
+     *
+     * @param share The fraction, between 0 and 1.
+     */
+    private void limit(double share) {
+      maxVelocity = share * fullVelocity;
+      maxAccel = share * fullAccel;
+    }
+
+    /**
+     * Returns the fraction of the max velocity a velocity uses.
+     *
+     * @param velocity The velocity.
+     */
+    private double usage(double velocity) {
+      return Math.abs(velocity) / fullVelocity;
+    }
+
+    /**
+     * Plans a profile starting at 0.
+     *
+     * @param distance The goal position.
+     * @param initialVelocity The velocity at the start of the profile.
+     */
+    private void plan(double distance, double initialVelocity) {
+      segments = 0;
+      goal = distance;
+      double t = 0;
+      double p = 0;
+      double v = initialVelocity;
+
+      // moving away from the goal, or too fast to stop before it, so stop first
+      if (v * distance < 0 || v * v / (2 * maxAccel) > Math.abs(distance)) {
+        double dt = Math.abs(v) / maxAccel;
+        addSegment(t, p, v, -Math.signum(v) * maxAccel);
+        t += dt;
+        p += v * dt / 2;
+        v = 0;
+      }
+
+      // from here, the velocity is zero or already towards the goal
+      double remaining = distance - p;
+      double direction = Math.signum(remaining);
+      double r = Math.abs(remaining);
+      double u = Math.abs(v);
+      if (r > 0) {
+        double peak = Math.min(maxVelocity, Math.sqrt(maxAccel * r + u * u / 2));
+        double rampTime = Math.abs(peak - u) / maxAccel;
+        double rampDistance = (u + peak) / 2 * rampTime;
+        double stopTime = peak / maxAccel;
+        double stopDistance = peak * stopTime / 2;
+        double cruiseTime = Math.max(0, (r - rampDistance - stopDistance) / peak);
+
+        addSegment(t, p, direction * u, peak >= u ? direction * maxAccel : -direction * maxAccel);
+        t += rampTime;
+        p += direction * rampDistance;
+        addSegment(t, p, direction * peak, 0);
+        t += cruiseTime;
+        p += direction * peak * cruiseTime;
+        addSegment(t, p, direction * peak, -direction * maxAccel);
+        t += stopTime;
+      }
+
+      duration = t;
+    }
+
+    private void addSegment(double time, double position, double velocity, double acceleration) {
+      startTime[segments] = time;
+      startPosition[segments] = position;
+      startVelocity[segments] = velocity;
+      accel[segments] = acceleration;
+      segments++;
+    }
+
+    /**
+     * Samples the profile into {@link #position} and {@link #velocity}.
+     *
+     * @param t The time since the start of the profile, in seconds.
+     */
+    private void sample(double t) {
+      if (t >= duration || segments == 0) {
+        position = goal;
+        velocity = 0;
+        return;
+      }
+      int i = segments - 1;
+      while (i > 0 && t < startTime[i]) {
+        i--;
+      }
+      double dt = Math.max(0, t - startTime[i]);
+      position = startPosition[i] + startVelocity[i] * dt + accel[i] * dt * dt / 2;
+      velocity = startVelocity[i] + accel[i] * dt;
+    }
+  }
+
+  private final Axis along;
+  private final Axis across;
+  private final Axis rotation;
+
+  // the start of the profile, and the unit vector towards the target
+  private double startX = 0;
+  private double startY = 0;
+  private double startHeading = 0;
+  private double directionX = 1;
+  private double directionY = 0;
+
+  private double x = 0;
+  private double y = 0;
+  private double heading = 0;
+  private double vx = 0;
+  private double vy = 0;
+  private double omega = 0;
+
+  /**
+   * Creates a new, empty profile.
+   *
+   * @param maxSpeed The max module speed, in meters / second.
+   * @param maxAccel The max module acceleration, in meters / second².
+   * @param maxAngularSpeed The angular speed at which modules reach the max speed, in radians /
+   *     second.
+   * @param maxAngularAccel The angular acceleration at which modules reach the max acceleration,
+   *     in radians / second².
+   */
+  public HolonomicProfile(
+      double maxSpeed, double maxAccel, double maxAngularSpeed, double maxAngularAccel) {
+    along = new Axis(maxSpeed, maxAccel);
+    across = new Axis(maxSpeed, maxAccel);
+    rotation = new Axis(maxAngularSpeed, maxAngularAccel);
+  }
+
+  /**
+   * Plans the profile from a robot's current state to a target, replacing any previous plan.
+   *
+   * @param start The current field-relative pose of the robot.
+   * @param speeds The current field-relative chassis speeds of the robot.
+   * @param target The pose to reach, at rest.
+   */
+  public void plan(Pose2d start, ChassisSpeeds speeds, Pose2d target) {
+    startX = start.getX();
+    startY = start.getY();
+    startHeading = start.getRotation().getRadians();
+
+    double dx = target.getX() - startX;
+    double dy = target.getY() - startY;
+    double distance = Math.hypot(dx, dy);
+    if (distance > 1e-9) {
+      directionX = dx / distance;
+      directionY = dy / distance;
+    } else {
+      directionX = 1;
+      directionY = 0;
+    }
+
+    double v = speeds.vxMetersPerSecond;
+    double w = speeds.vyMetersPerSecond;
+    double alongVelocity = v * directionX + w * directionY;
+    double acrossVelocity = -v * directionY + w * directionX;
+    double angle = MathUtil.angleModulus(target.getRotation().getRadians() - startHeading);
+    double omega = speeds.omegaRadiansPerSecond;
+
+    // how long each axis takes with the whole budget
+    along.limit(1);
+    across.limit(1);
+    rotation.limit(1);
+    along.plan(distance, alongVelocity);
+    across.plan(0, acrossVelocity);
+    rotation.plan(angle, omega);
+    double alongTime = along.duration;
+    double acrossTime = across.duration;
+    double rotationTime = rotation.duration;
+    double totalTime = alongTime + acrossTime + rotationTime;
+    if (totalTime <= 0) {
+      sample(0);
+      return;
+    }
+
+    // what each axis already uses, and the rest split by how long each takes
+    double alongUsage = along.usage(alongVelocity);
+    double acrossUsage = across.usage(acrossVelocity);
+    double rotationUsage = rotation.usage(omega);
+    double usage = alongUsage + acrossUsage + rotationUsage;
+    double kept = 1;
+    double free = 1 - usage;
+    if (free < RESERVE) {
+      kept = (1 - RESERVE) / usage;
+      free = RESERVE;
+    }
+    along.limit(kept * alongUsage + free * alongTime / totalTime);
+    across.limit(kept * acrossUsage + free * acrossTime / totalTime);
+    rotation.limit(kept * rotationUsage + free * rotationTime / totalTime);
+
+    along.plan(distance, alongVelocity);
+    across.plan(0, acrossVelocity);
+    rotation.plan(angle, omega);
+    sample(0);
+  }
+
+  /**
+   * Samples the profile, so that the state at that time can be read with the getters.
+   *
+   * @param t The time since the profile was planned, in seconds.
+   */
+  public void sample(double t) {
+    along.sample(t);
+    across.sample(t);
+    rotation.sample(t);
+    x = startX + directionX * along.position - directionY * across.position;
+    y = startY + directionY * along.position + directionX * across.position;
+    heading = startHeading + rotation.position;
+    vx = directionX * along.velocity - directionY * across.velocity;
+    vy = directionY * along.velocity + directionX * across.velocity;
+    omega = rotation.velocity;
+  }
+
+  /**
+   * Returns the time it takes to reach the target.
+   *
+   * @return The duration of the profile, in seconds.
+   */
+  public double totalTime() {
+    return Math.max(along.duration, Math.max(across.duration, rotation.duration));
+  }
+
+  /** Returns the sampled field-relative x position, in meters. */
+  public double x() {
+    return x;
+  }
+
+  /** Returns the sampled field-relative y position, in meters. */
+  public double y() {
+    return y;
+  }
+
+  /** Returns the sampled heading, in radians. This is continuous, and not wrapped. */
+  public double heading() {
+    return heading;
+  }
+
+  /** Returns the sampled field-relative x velocity, in meters / second. */
+  public double vx() {
+    return vx;
+  }
+
+  /** Returns the sampled field-relative y velocity, in meters / second. */
+  public double vy() {
+    return vy;
+  }
+
+  /** Returns the sampled angular velocity, in radians / second. */
+  public double omega() {
+    return omega;
+  }
+}
@@ -1,5 +1,6 @@
 package org.sciborgs1155.robot.drive;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -8,6 +9,60 @@ import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
 
 /** Generalized hardware internals for a swerve module */
 public interface ModuleIO extends Logged, AutoCloseable {
+  /**
+   * A mutable snapshot of a module's sensor readings, preallocated once per module and refreshed in
+   * place by {@link ModuleIO#refresh()}.
+   */
+  public static class Inputs {
+    public double drivePosition;
+    public double driveVelocity;
+    public Rotation2d rotation = new Rotation2d();
+    public final SwerveModuleState state = new SwerveModuleState();
+    public final SwerveModulePosition position = new SwerveModulePosition();
+
+    /**
+     * Updates every field of the snapshot.
+     *
+     * @param drivePosition The drive encoder position value, in meters.
+     * @param driveVelocity The drive encoder velocity value, in meters / second.
+     * @param rotation The adjusted turn encoder position.
+     */
+    public void update(double drivePosition, double driveVelocity, Rotation2d rotation) {
+      this.drivePosition = drivePosition;
+      this.driveVelocity = driveVelocity;
+      this.rotation = rotation;
+      state.speedMetersPerSecond = driveVelocity;
+      state.angle = rotation;
+      position.distanceMeters = drivePosition;
+      position.angle = rotation;
+    }
+  }
+
+  /**
+   * Optimizes a desired state against the current angle of a module, writing the result into
+   * {@code out}. Only a changed angle is allocated. The desired state is not modified.
+   *
+   * @param desired The desired state of the module.
+   * @param current The current angle of the module.
+   * @param out The state to write the optimized setpoint into.
+   */
+  static void optimize(SwerveModuleState desired, Rotation2d current, SwerveModuleState out) {
+    double angle = desired.angle.getRadians();
+    double speed = desired.speedMetersPerSecond;
+    double error = MathUtil.angleModulus(angle - current.getRadians());
+
+    // Optimize the reference state to avoid spinning further than 90 degrees
+    if (Math.abs(error) > Math.PI / 2) {
+      speed = -speed;
+      angle = MathUtil.angleModulus(angle + Math.PI);
+      error = MathUtil.angleModulus(error + Math.PI);
+    }
+
+    // Scale setpoint by cos of turning error to reduce tread wear
+    out.speedMetersPerSecond = speed * Math.cos(error);
+    DriveKinematics.setAngle(out, angle);
+  }
+
   /**
    * Returns the name of the swerve module (e.g. "FR" indicating the front right swerve module.)
    *
@@ -29,43 +84,88 @@ public interface ModuleIO extends Logged, AutoCloseable {
    */
   void setTurnVoltage(double voltage);
 
+  /**
+   * Reads every sensor signal of the module once into its {@link Inputs}.
+   *
+   * <p>This should be called once at the start of every tick, before any getters are used.
+   */
+  void refresh();
+
+  /**
+   * Returns the latest snapshot of the module's sensor readings.
+   *
+   * @return The module's inputs, as of the last call to {@link #refresh()}.
+   */
+  Inputs inputs();
+
   /**
    * Returns the distance the wheel traveled.
    *
    * @return The drive encoder position value, in meters.
    */
-  double drivePosition();
+  default double drivePosition() {
+    return inputs().drivePosition;
+  }
 
   /**
    * Returns the current velocity of the wheel.
    *
    * @return The drive encoder velocity value, in meters / second.
    */
-  double driveVelocity();
+  default double driveVelocity() {
+    return inputs().driveVelocity;
+  }
 
   /**
    * Returns the current angular position of the module.
    *
    * @return The adjusted turn encoder position value, in radians.
    */
-  Rotation2d rotation();
+  default Rotation2d rotation() {
+    return inputs().rotation;
+  }
+
+  /**
+   * Reads the distance the wheel traveled directly from the drive encoder, for use by the {@link
+   * OdometryThread}. This may be called off the main thread, so it must not report faults or touch
+   * any other shared state.
+   *
+   * @return The drive encoder position value, in meters.
+   */
+  double odometryDrivePosition();
+
+  /**
+   * Reads the angular position of the module directly from the turn encoder, for use by the {@link
+   * OdometryThread}. This may be called off the main thread, so it must not report faults or touch
+   * any other shared state.
+   *
+   * @return The adjusted turn encoder position value, in radians.
+   */
+  double odometryTurnPosition();
 
   /**
-   * Returns the current state of the module.
+   * Returns the current state of the module. The returned object is part of the snapshot and must
+   * not be modified.
    *
    * @return The current state of the module.
    */
-  SwerveModuleState state();
+  default SwerveModuleState state() {
+    return inputs().state;
+  }
 
   /**
-   * Returns the current position of the module.
+   * Returns the current position of the module. The returned object is part of the snapshot and
+   * must not be modified.
    *
    * @return The current position of the module.
    */
-  SwerveModulePosition position();
+  default SwerveModulePosition position() {
+    return inputs().position;
+  }
 
   /**
-   * Returns the desired position of the module.
+   * Returns the desired position of the module. The returned object is reused between setpoint
+   * updates and must not be modified.
    *
    * @return The desired position of the module.
    */
@@ -91,7 +191,8 @@ public interface ModuleIO extends Logged, AutoCloseable {
   /**
    * Updates controllers based on an optimized desired state and actuates the module accordingly.
    *
-   * <p>This method should be called periodically.
+   * <p>This method should be called periodically. The desired state is not modified, and may be
+   * reused by the caller.
    *
    * @param setpoint The desired state of the module.
    * @param mode The control mode to use when calculating drive voltage.
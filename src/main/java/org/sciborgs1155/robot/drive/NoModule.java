@@ -1,11 +1,13 @@
 package org.sciborgs1155.robot.drive;
 
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
 
 public class NoModule implements ModuleIO {
+  private final Inputs inputs = new Inputs();
+  private final SwerveModuleState setpoint = new SwerveModuleState();
+
   @Override
   public String name() {
     return "NoModule";
@@ -18,33 +20,26 @@ public class NoModule implements ModuleIO {
   public void setTurnVoltage(double voltage) {}
 
   @Override
-  public double drivePosition() {
-    return 0;
-  }
+  public void refresh() {}
 
   @Override
-  public double driveVelocity() {
-    return 0;
+  public Inputs inputs() {
+    return inputs;
   }
 
   @Override
-  public Rotation2d rotation() {
-    return new Rotation2d();
-  }
-
-  @Override
-  public SwerveModuleState state() {
-    return new SwerveModuleState();
+  public double odometryDrivePosition() {
+    return 0;
   }
 
   @Override
-  public SwerveModulePosition position() {
-    return new SwerveModulePosition();
+  public double odometryTurnPosition() {
+    return 0;
   }
 
   @Override
   public SwerveModuleState desiredState() {
-    return new SwerveModuleState();
+    return setpoint;
   }
 
   @Override
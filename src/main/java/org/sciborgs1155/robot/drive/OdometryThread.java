@@ -0,0 +1,165 @@
+package org.sciborgs1155.robot.drive;
+
+import static edu.wpi.first.units.Units.Hertz;
+import static org.sciborgs1155.robot.drive.DriveConstants.ODOMETRY_FREQUENCY;
+
+import edu.wpi.first.wpilibj.Notifier;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import org.sciborgs1155.lib.RobotContext;
+
+/**
+ * Samples the position of every {@link ModuleIO} and the yaw of the gyro on a dedicated {@link
+ * Notifier}, running at {@link DriveConstants#ODOMETRY_FREQUENCY}.
+ *
+ * <p>Samples are timestamped by the clock of the {@link RobotContext} the thread was created in,
+ * and written into a lock-free single-producer single-consumer ring buffer, which is drained on
+ * the main thread with {@link #drain(SampleConsumer)}.
+ */
+public class OdometryThread implements AutoCloseable {
+  /** Receives a single odometry sample. The arrays passed in are reused between samples. */
+  @FunctionalInterface
+  public static interface SampleConsumer {
+    /**
+     * Accepts an odometry sample.
+     *
+     * @param timestamp The FPGA timestamp of the sample, in seconds.
+     * @param yaw The yaw of the robot, in radians.
+     * @param distances The distance traveled by each module, in meters.
+     * @param angles The angle of each module, in radians.
+     */
+    void accept(double timestamp, double yaw, double[] distances, double[] angles);
+  }
+
+  // Enough room for ~5 main loop cycles at the highest supported odometry frequency
+  public static final int CAPACITY = 64;
+
+  private final ModuleIO[] modules;
+  private final DoubleSupplier yaw;
+  // held while reading the modules, since reading a device from two threads at once mixes up
+  // errors reported for it
+  private final Object moduleLock;
+  // the robot whose clock timestamps samples
+  private final RobotContext context = RobotContext.current();
+
+  // [timestamp, yaw, distance 0, angle 0, distance 1, angle 1, ...] per sample
+  private final int stride;
+  private final double[] buffer;
+
+  // written only by the producer
+  private final AtomicLong head = new AtomicLong();
+  // written only by the consumer
+  private final AtomicLong tail = new AtomicLong();
+
+  private final double[] distances;
+  private final double[] angles;
+
+  private final Notifier notifier;
+  private boolean running = false;
+  private volatile long dropped = 0;
+
+  /**
+   * Creates a new odometry thread. The thread does not sample until {@link #start()} is called.
+   *
+   * @param modules The modules to sample, in the order they are passed to the kinematics.
+   * @param yaw A supplier for the yaw of the robot, in radians. Must be thread safe.
+   * @param moduleLock The lock held by every other thread that uses the modules.
+   */
+  public OdometryThread(List<ModuleIO> modules, DoubleSupplier yaw, Object moduleLock) {
+    this.modules = modules.toArray(ModuleIO[]::new);
+    this.yaw = yaw;
+    this.moduleLock = moduleLock;
+
+    stride = 2 + 2 * this.modules.length;
+    buffer = new double[CAPACITY * stride];
+    distances = new double[this.modules.length];
+    angles = new double[this.modules.length];
+
+    notifier = new Notifier(this::sample);
+    notifier.setName("OdometryThread");
+  }
+
+  /** Starts sampling on the notifier at {@link DriveConstants#ODOMETRY_FREQUENCY}. */
+  public void start() {
+    if (!running) {
+      notifier.startPeriodic(1.0 / ODOMETRY_FREQUENCY.in(Hertz));
+      running = true;
+    }
+  }
+
+  /**
+   * Returns whether samples are being taken on the notifier. If not, {@link #sample()} should be
+   * called once per loop on the main thread instead.
+   *
+   * @return Whether the notifier is running.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns the number of samples that were dropped because the buffer was full.
+   *
+   * @return The number of dropped samples.
+   */
+  public long dropped() {
+    return dropped;
+  }
+
+  /**
+   * Samples every module and the gyro into the buffer. If the buffer is full, the sample is
+   * dropped.
+   *
+   * <p>This must only ever be called from a single thread at a time.
+   */
+  public void sample() {
+    long h = head.get();
+    if (h - tail.get() >= CAPACITY) {
+      dropped++;
+      return;
+    }
+
+    int base = (int) (h % CAPACITY) * stride;
+    buffer[base] = context.time();
+    buffer[base + 1] = yaw.getAsDouble();
+    synchronized (moduleLock) {
+      for (int i = 0; i < modules.length; i++) {
+        buffer[base + 2 + 2 * i] = modules[i].odometryDrivePosition();
+        buffer[base + 3 + 2 * i] = modules[i].odometryTurnPosition();
+      }
+    }
+
+    // publishes the sample to the consumer
+    head.lazySet(h + 1);
+  }
+
+  /**
+   * Passes every unread sample, oldest first, to a consumer.
+   *
+   * @param consumer The consumer to receive samples.
+   * @return The number of samples drained.
+   */
+  public int drain(SampleConsumer consumer) {
+    long t = tail.get();
+    long h = head.get();
+    for (long i = t; i < h; i++) {
+      int base = (int) (i % CAPACITY) * stride;
+      for (int m = 0; m < modules.length; m++) {
+        distances[m] = buffer[base + 2 + 2 * m];
+        angles[m] = buffer[base + 3 + 2 * m];
+      }
+      consumer.accept(buffer[base], buffer[base + 1], distances, angles);
+    }
+
+    // frees the drained slots for the producer
+    tail.lazySet(h);
+    return (int) (h - t);
+  }
+
+  @Override
+  public void close() {
+    notifier.close();
+    running = false;
+  }
+}
@@ -0,0 +1,125 @@
+package org.sciborgs1155.robot.drive;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A fixed-size ring buffer of timestamped odometry poses, stored as primitives.
+ *
+ * <p>Since every sample is the integrated odometry pose at its timestamp, the odometry delta
+ * between any two points in time is the transform between their samples. Samples must be added in
+ * increasing timestamp order.
+ */
+public class PoseHistory {
+  private final double[] timestamps;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] thetas;
+
+  // index of the oldest sample
+  private int start = 0;
+  private int size = 0;
+
+  /**
+   * Creates a new, empty pose history.
+   *
+   * @param capacity The maximum number of samples to keep. Older samples are overwritten.
+   */
+  public PoseHistory(int capacity) {
+    timestamps = new double[capacity];
+    xs = new double[capacity];
+    ys = new double[capacity];
+    thetas = new double[capacity];
+  }
+
+  /**
+   * Adds an odometry sample, overwriting the oldest sample if the history is full. Samples that
+   * are not newer than the latest sample are ignored.
+   *
+   * @param timestamp The timestamp of the sample, in seconds.
+   * @param x The odometry x position, in meters.
+   * @param y The odometry y position, in meters.
+   * @param theta The odometry heading (gyro yaw), in radians.
+   */
+  public void add(double timestamp, double x, double y, double theta) {
+    if (size > 0 && timestamp <= timestamps[index(size - 1)]) {
+      return;
+    }
+
+    int i;
+    if (size < timestamps.length) {
+      i = index(size);
+      size++;
+    } else {
+      i = start;
+      start = index(1);
+    }
+
+    timestamps[i] = timestamp;
+    xs[i] = x;
+    ys[i] = y;
+    thetas[i] = theta;
+  }
+
+  /** Removes every sample. */
+  public void clear() {
+    start = 0;
+    size = 0;
+  }
+
+  /**
+   * Returns the number of samples in the history.
+   *
+   * @return The number of samples.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Interpolates the odometry pose at a timestamp. Timestamps newer than the latest sample are
+   * clamped to it, and timestamps older than the oldest sample are rejected.
+   *
+   * @param timestamp The timestamp to sample at, in seconds.
+   * @param out A length 3 array to write x, y, and heading into.
+   * @return Whether a pose was written.
+   */
+  public boolean sample(double timestamp, double[] out) {
+    if (size == 0 || timestamp < timestamps[start]) {
+      return false;
+    }
+
+    // binary search for the first sample at or after the timestamp
+    int lo = 0;
+    int hi = size - 1;
+    if (timestamp >= timestamps[index(hi)]) {
+      lo = hi;
+    }
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (timestamps[index(mid)] < timestamp) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    int after = index(lo);
+    if (lo == 0 || timestamps[after] <= timestamp) {
+      out[0] = xs[after];
+      out[1] = ys[after];
+      out[2] = thetas[after];
+      return true;
+    }
+
+    int before = index(lo - 1);
+    double t = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+    out[0] = MathUtil.interpolate(xs[before], xs[after], t);
+    out[1] = MathUtil.interpolate(ys[before], ys[after], t);
+    out[2] = thetas[before] + t * MathUtil.angleModulus(thetas[after] - thetas[before]);
+    return true;
+  }
+
+  private int index(int offset) {
+    return (start + offset) % timestamps.length;
+  }
+}
@@ -7,7 +7,6 @@ import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.system.plant.LinearSystemId;
@@ -52,10 +51,16 @@ public class SimModule implements ModuleIO {
   private final PIDController turnFeedback =
       new PIDController(Turning.PID.P, Turning.PID.I, Turning.PID.D);
 
-  private SwerveModuleState setpoint = new SwerveModuleState();
+  private final SwerveModuleState setpoint = new SwerveModuleState();
+
+  private final Inputs inputs = new Inputs();
 
   private final String name;
 
+  // how the simulated drive motor differs from the model its controllers were tuned with
+  private double driveGain = 1;
+  private double driveFriction = 0;
+
   public SimModule(String name) {
     this.name = name;
 
@@ -67,9 +72,40 @@ public class SimModule implements ModuleIO {
     return name;
   }
 
+  /**
+   * Makes the drive motor respond differently than the model its controllers were tuned with, for
+   * testing how robust they are.
+   *
+   * @param gain A multiplier on the voltage the motor applies; 1 matches the model.
+   * @param friction A voltage lost to friction, opposing the motor's motion.
+   */
+  public void setDriveErrors(double gain, double friction) {
+    driveGain = gain;
+    driveFriction = friction;
+  }
+
+  /**
+   * Puts the module back at rest with its encoders zeroed and its controllers cleared, as if it had
+   * just been built. Drive errors are kept.
+   */
+  public void reset() {
+    resetEncoders();
+    driveFeedback.reset();
+    turnFeedback.reset();
+    setpoint.speedMetersPerSecond = 0;
+    setpoint.angle = Rotation2d.kZero;
+  }
+
   @Override
   public void setDriveVoltage(double voltage) {
-    drive.setInputVoltage(voltage);
+    double applied = driveGain * voltage;
+    double velocity = drive.getAngularVelocityRadPerSec();
+    // friction opposes motion, and can only hold a stopped wheel still
+    double friction =
+        velocity != 0
+            ? Math.copySign(driveFriction, velocity)
+            : Math.copySign(Math.min(driveFriction, Math.abs(applied)), applied);
+    drive.setInputVoltage(applied - friction);
     drive.update(Constants.PERIOD.in(Seconds));
   }
 
@@ -80,28 +116,26 @@ public class SimModule implements ModuleIO {
   }
 
   @Override
-  public double drivePosition() {
-    return drive.getAngularPositionRad();
+  public void refresh() {
+    inputs.update(
+        drive.getAngularPositionRad(),
+        drive.getAngularVelocityRadPerSec(),
+        Rotation2d.fromRadians(turn.getAngularPositionRad()));
   }
 
   @Override
-  public double driveVelocity() {
-    return drive.getAngularVelocityRadPerSec();
+  public Inputs inputs() {
+    return inputs;
   }
 
   @Override
-  public Rotation2d rotation() {
-    return Rotation2d.fromRadians(turn.getAngularPositionRad());
-  }
-
-  @Override
-  public SwerveModuleState state() {
-    return new SwerveModuleState(driveVelocity(), rotation());
+  public double odometryDrivePosition() {
+    return drive.getAngularPositionRad();
   }
 
   @Override
-  public SwerveModulePosition position() {
-    return new SwerveModulePosition(drivePosition(), rotation());
+  public double odometryTurnPosition() {
+    return turn.getAngularPositionRad();
   }
 
   @Override
@@ -127,11 +161,9 @@ public class SimModule implements ModuleIO {
   }
 
   @Override
-  public void updateSetpoint(SwerveModuleState setpoint, ControlMode mode) {
-    // Optimize the reference state to avoid spinning further than 90 degrees
-    setpoint.optimize(rotation());
-    // Scale setpoint by cos of turning error to reduce tread wear
-    setpoint.cosineScale(rotation());
+  public void updateSetpoint(SwerveModuleState desired, ControlMode mode) {
+    // optimize and cosine scale into the reused setpoint, leaving the desired state untouched
+    ModuleIO.optimize(desired, rotation(), setpoint);
 
     if (mode == ControlMode.OPEN_LOOP_VELOCITY) {
       setDriveVoltage(driveFF.calculate(setpoint.speedMetersPerSecond));
@@ -140,7 +172,6 @@ public class SimModule implements ModuleIO {
     }
 
     setTurnSetpoint(setpoint.angle.getRadians());
-    this.setpoint = setpoint;
   }
 
   @Override
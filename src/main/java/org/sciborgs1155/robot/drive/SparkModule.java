@@ -3,6 +3,7 @@ package org.sciborgs1155.robot.drive;
 import static edu.wpi.first.units.Units.*;
 import static org.sciborgs1155.lib.FaultLogger.*;
 import static org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.COUPLING_RATIO;
+import static org.sciborgs1155.robot.drive.DriveConstants.ODOMETRY_FREQUENCY;
 
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.ClosedLoopSlot;
@@ -20,7 +21,6 @@ import com.revrobotics.spark.config.SparkFlexConfig;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import java.util.Set;
 import monologue.Annotations.Log;
@@ -32,6 +32,9 @@ import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Driving;
 import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Turning;
 
 public class SparkModule implements ModuleIO {
+  private static final int ODOMETRY_PERIOD_MS =
+      (int) Math.round(1000 / ODOMETRY_FREQUENCY.in(Hertz));
+
   private final SparkFlex driveMotor; // NEO Vortex
   private final SparkFlexConfig driveMotorConfig;
   private final SparkMax turnMotor; // NEO 550
@@ -47,11 +50,9 @@ public class SparkModule implements ModuleIO {
 
   private final Rotation2d angularOffset;
 
-  private double lastPosition;
-  private double lastVelocity;
-  private Rotation2d lastRotation;
+  private final Inputs inputs = new Inputs();
 
-  @Log.NT private SwerveModuleState setpoint = new SwerveModuleState();
+  @Log.NT private final SwerveModuleState setpoint = new SwerveModuleState();
 
   private final String name;
 
@@ -96,6 +97,10 @@ public class SparkModule implements ModuleIO {
             Set.of(Sensor.INTEGRATED),
             false));
 
+    // match the odometry thread's sample rate
+    driveMotorConfig.apply(
+        driveMotorConfig.signals.primaryEncoderPositionPeriodMs(ODOMETRY_PERIOD_MS));
+
     check(
         driveMotor,
         driveMotor.configure(
@@ -141,6 +146,10 @@ public class SparkModule implements ModuleIO {
             Set.of(Sensor.ABSOLUTE),
             false));
 
+    // match the odometry thread's sample rate
+    turnMotorConfig.apply(
+        turnMotorConfig.signals.absoluteEncoderPositionPeriodMs(ODOMETRY_PERIOD_MS));
+
     check(
         turnMotor,
         turnMotor.configure(
@@ -174,36 +183,40 @@ public class SparkModule implements ModuleIO {
   }
 
   @Override
-  public double drivePosition() {
-    lastPosition = SparkUtils.wrapCall(driveMotor, driveEncoder.getPosition()).orElse(lastPosition);
+  public void refresh() {
+    double turnPosition = turningEncoder.getPosition();
+    Rotation2d rotation =
+        check(turnMotor)
+            ? Rotation2d.fromRadians(turnPosition).minus(angularOffset)
+            : inputs.rotation;
+
     // account for rotation of turn motor on rotation of drive motor
-    return lastPosition - turningEncoder.getPosition() * COUPLING_RATIO;
-  }
+    double drivePosition = driveEncoder.getPosition() - turnPosition * COUPLING_RATIO;
+    if (!check(driveMotor)) {
+      drivePosition = inputs.drivePosition;
+    }
 
-  @Override
-  public double driveVelocity() {
-    lastVelocity = SparkUtils.wrapCall(driveMotor, driveEncoder.getVelocity()).orElse(lastVelocity);
-    return lastVelocity;
+    double driveVelocity = driveEncoder.getVelocity();
+    if (!check(driveMotor)) {
+      driveVelocity = inputs.driveVelocity;
+    }
+
+    inputs.update(drivePosition, driveVelocity, rotation);
   }
 
   @Override
-  public Rotation2d rotation() {
-    lastRotation =
-        SparkUtils.wrapCall(
-                turnMotor,
-                Rotation2d.fromRadians(turningEncoder.getPosition()).minus(angularOffset))
-            .orElse(lastRotation);
-    return lastRotation;
+  public Inputs inputs() {
+    return inputs;
   }
 
   @Override
-  public SwerveModuleState state() {
-    return new SwerveModuleState(driveVelocity(), rotation());
+  public double odometryDrivePosition() {
+    return driveEncoder.getPosition() - turningEncoder.getPosition() * COUPLING_RATIO;
   }
 
   @Override
-  public SwerveModulePosition position() {
-    return new SwerveModulePosition(drivePosition(), rotation());
+  public double odometryTurnPosition() {
+    return turningEncoder.getPosition() - angularOffset.getRadians();
   }
 
   @Override
@@ -228,11 +241,9 @@ public class SparkModule implements ModuleIO {
   }
 
   @Override
-  public void updateSetpoint(SwerveModuleState setpoint, ControlMode mode) {
-    // Optimize the reference state to avoid spinning further than 90 degrees
-    setpoint.optimize(rotation());
-    // Scale setpoint by cos of turning error to reduce tread wear
-    setpoint.speedMetersPerSecond *= setpoint.angle.minus(rotation()).getCos();
+  public void updateSetpoint(SwerveModuleState desired, ControlMode mode) {
+    // optimize and cosine scale into the reused setpoint, leaving the desired state untouched
+    ModuleIO.optimize(desired, rotation(), setpoint);
 
     if (mode == ControlMode.OPEN_LOOP_VELOCITY) {
       setDriveVoltage(driveFF.calculate(setpoint.speedMetersPerSecond));
@@ -241,7 +252,6 @@ public class SparkModule implements ModuleIO {
     }
 
     setTurnSetpoint(setpoint.angle.getRadians());
-    this.setpoint = setpoint;
   }
 
   @Override
@@ -0,0 +1,257 @@
+package org.sciborgs1155.robot.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Limits robot-relative chassis speeds to a sequence of module states that the modules can
+ * physically follow, given the previous setpoint.
+ *
+ * <p>Every tick, the setpoint moves from the previous chassis speeds towards the desired ones by
+ * the largest fraction that keeps every module within its limits:
+ *
+ * <ul>
+ *   <li>No module's velocity, as a vector, changes by more than the max acceleration times the
+ *       period. This bounds wheel slip on sudden changes of direction.
+ *   <li>No module's heading changes by more than its max steering speed times the period. Headings
+ *       are compared modulo 180 degrees, because a module reverses its drive motor instead of
+ *       steering more than 90 degrees.
+ * </ul>
+ *
+ * <p>Since module velocities are linear in the chassis speeds, every intermediate setpoint is a mix
+ * of two desaturated setpoints and never exceeds the max speed itself. A module that is stopped
+ * steers in place towards the heading it needs before the robot accelerates.
+ *
+ * <p>The returned states are reused between calls, and only a module's angle is allocated, when it
+ * changes.
+ */
+public final class SwerveSetpointGenerator {
+  // speed below which a module's heading is undefined, in meters / second
+  private static final double STOPPED = 1e-6;
+  // bisection steps for the steering limit, enough for a ~0.1% fraction of the change
+  private static final int STEER_ITERATIONS = 10;
+
+  private final double[] moduleX;
+  private final double[] moduleY;
+  private final double maxSpeed;
+  private final double maxAccel;
+  private final double maxSteerSpeed;
+
+  // the previous setpoint
+  private double vx = 0;
+  private double vy = 0;
+  private double omega = 0;
+  private final double[] headings;
+
+  private final SwerveModuleState[] states;
+
+  /**
+   * Creates a new setpoint generator, starting from rest.
+   *
+   * @param offsets The location of each module relative to the center of the robot.
+   * @param maxSpeed The max speed of any module, in meters / second.
+   * @param maxAccel The max change in velocity of any module, in meters / second².
+   * @param maxSteerSpeed The max steering speed of any module, in radians / second.
+   */
+  public SwerveSetpointGenerator(
+      Translation2d[] offsets, double maxSpeed, double maxAccel, double maxSteerSpeed) {
+    int n = offsets.length;
+    moduleX = new double[n];
+    moduleY = new double[n];
+    headings = new double[n];
+    states = new SwerveModuleState[n];
+    for (int i = 0; i < n; i++) {
+      moduleX[i] = offsets[i].getX();
+      moduleY[i] = offsets[i].getY();
+      states[i] = new SwerveModuleState();
+    }
+    this.maxSpeed = maxSpeed;
+    this.maxAccel = maxAccel;
+    this.maxSteerSpeed = maxSteerSpeed;
+  }
+
+  /**
+   * Moves the setpoint towards desired chassis speeds as far as the module limits allow.
+   *
+   * @param desiredVx The desired robot-relative x velocity, in meters / second.
+   * @param desiredVy The desired robot-relative y velocity, in meters / second.
+   * @param desiredOmega The desired angular velocity, in radians / second.
+   * @param dt The time until the next setpoint, in seconds.
+   * @return The module states of the new setpoint, which are reused between calls.
+   */
+  public SwerveModuleState[] generate(
+      double desiredVx, double desiredVy, double desiredOmega, double dt) {
+    // desaturate the whole chassis, so that every mix of two setpoints is within the max speed
+    double peak = 0;
+    for (int i = 0; i < moduleX.length; i++) {
+      double x = moduleVx(desiredVx, desiredOmega, i);
+      double y = moduleVy(desiredVy, desiredOmega, i);
+      peak = Math.max(peak, Math.hypot(x, y));
+    }
+    double scale = peak > maxSpeed ? maxSpeed / peak : 1;
+    double dvx = desiredVx * scale - vx;
+    double dvy = desiredVy * scale - vy;
+    double domega = desiredOmega * scale - omega;
+
+    double fraction = 1;
+
+    double maxDv = maxAccel * dt;
+    for (int i = 0; i < moduleX.length; i++) {
+      double dv = Math.hypot(moduleVx(dvx, domega, i), moduleVy(dvy, domega, i));
+      if (dv > maxDv) {
+        fraction = Math.min(fraction, maxDv / dv);
+      }
+    }
+
+    double maxSteer = maxSteerSpeed * dt;
+    for (int i = 0; i < moduleX.length; i++) {
+      if (Math.hypot(moduleVx(vx, omega, i), moduleVy(vy, omega, i)) < STOPPED) {
+        // a stopped module steers in place, holding the robot until it is close enough
+        double error = steerError(moduleVx(dvx, domega, i), moduleVy(dvy, domega, i), headings[i]);
+        if (Math.abs(error) > maxSteer) {
+          headings[i] = MathUtil.angleModulus(headings[i] + Math.copySign(maxSteer, error));
+          fraction = 0;
+        }
+      }
+    }
+
+    // shrinking the fraction for one module can move another past its limit, if it is reversing
+    boolean changed = fraction > 0;
+    for (int pass = 0; changed; pass++) {
+      if (pass == moduleX.length) {
+        fraction = 0;
+        break;
+      }
+      changed = false;
+      for (int i = 0; i < moduleX.length; i++) {
+        double limited = steerLimit(i, fraction, dvx, dvy, domega, maxSteer);
+        if (limited < fraction) {
+          fraction = limited;
+          changed = true;
+        }
+      }
+    }
+
+    vx += fraction * dvx;
+    vy += fraction * dvy;
+    omega += fraction * domega;
+
+    for (int i = 0; i < states.length; i++) {
+      double x = moduleVx(vx, omega, i);
+      double y = moduleVy(vy, omega, i);
+      double speed = Math.hypot(x, y);
+      states[i].speedMetersPerSecond = speed;
+      if (speed >= STOPPED) {
+        headings[i] = Math.atan2(y, x);
+      }
+      DriveKinematics.setAngle(states[i], headings[i]);
+    }
+    return states;
+  }
+
+  /**
+   * Replaces the previous setpoint, for example after the modules were driven without this
+   * generator. Module headings are kept if their speed is zero.
+   *
+   * @param speeds The robot-relative chassis speeds the modules were last set to.
+   */
+  public void reset(ChassisSpeeds speeds) {
+    vx = speeds.vxMetersPerSecond;
+    vy = speeds.vyMetersPerSecond;
+    omega = speeds.omegaRadiansPerSecond;
+    for (int i = 0; i < headings.length; i++) {
+      double x = moduleVx(vx, omega, i);
+      double y = moduleVy(vy, omega, i);
+      if (Math.hypot(x, y) >= STOPPED) {
+        headings[i] = Math.atan2(y, x);
+      }
+    }
+  }
+
+  /**
+   * Replaces the previous setpoint with module states the modules were driven to without this
+   * generator, including the headings of modules that are stopped.
+   *
+   * @param speeds The robot-relative chassis speeds of the states.
+   * @param states The states the modules were last set to.
+   */
+  public void reset(ChassisSpeeds speeds, SwerveModuleState[] states) {
+    reset(speeds);
+    for (int i = 0; i < headings.length; i++) {
+      if (Math.abs(states[i].speedMetersPerSecond) < STOPPED) {
+        headings[i] = states[i].angle.getRadians();
+      }
+    }
+  }
+
+  /**
+   * Returns the chassis speeds of the previous setpoint.
+   *
+   * @param out The chassis speeds to write into.
+   * @return {@code out}, for chaining.
+   */
+  public ChassisSpeeds setpoint(ChassisSpeeds out) {
+    out.vxMetersPerSecond = vx;
+    out.vyMetersPerSecond = vy;
+    out.omegaRadiansPerSecond = omega;
+    return out;
+  }
+
+  /**
+   * Returns the largest fraction of a change in chassis speeds, up to {@code fraction}, that steers
+   * a moving module by at most {@code maxSteer}.
+   */
+  private double steerLimit(
+      int i, double fraction, double dvx, double dvy, double domega, double maxSteer) {
+    double x = moduleVx(vx, omega, i);
+    double y = moduleVy(vy, omega, i);
+    double dx = moduleVx(dvx, domega, i);
+    double dy = moduleVy(dvy, domega, i);
+    if (Math.hypot(x, y) < STOPPED
+        || Math.abs(steerError(x + fraction * dx, y + fraction * dy, headings[i])) <= maxSteer) {
+      return fraction;
+    }
+
+    // the heading of a module moves monotonically along a straight change in velocity
+    double low = 0;
+    double high = fraction;
+    for (int k = 0; k < STEER_ITERATIONS; k++) {
+      double mid = (low + high) / 2;
+      if (Math.abs(steerError(x + mid * dx, y + mid * dy, headings[i])) > maxSteer) {
+        high = mid;
+      } else {
+        low = mid;
+      }
+    }
+    return low;
+  }
+
+  private double moduleVx(double vx, double omega, int i) {
+    return vx - omega * moduleY[i];
+  }
+
+  private double moduleVy(double vy, double omega, int i) {
+    return vy + omega * moduleX[i];
+  }
+
+  /**
+   * Returns the steering needed to point a module along a velocity, allowing the drive motor to
+   * reverse instead of steering more than 90 degrees.
+   *
+   * @return The heading error, from -π / 2 to π / 2 radians, or 0 if the velocity is zero.
+   */
+  private static double steerError(double x, double y, double heading) {
+    if (Math.hypot(x, y) < STOPPED) {
+      return 0;
+    }
+    double error = MathUtil.angleModulus(Math.atan2(y, x) - heading);
+    if (error > Math.PI / 2) {
+      error -= Math.PI;
+    } else if (error < -Math.PI / 2) {
+      error += Math.PI;
+    }
+    return error;
+  }
+}
@@ -4,6 +4,7 @@ import static edu.wpi.first.units.Units.*;
 import static org.sciborgs1155.lib.FaultLogger.*;
 import static org.sciborgs1155.robot.drive.DriveConstants.*;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.controls.VelocityVoltage;
@@ -21,7 +22,6 @@ import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
@@ -36,12 +36,17 @@ import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Driving;
 import org.sciborgs1155.robot.drive.DriveConstants.ModuleConstants.Turning;
 
 public class TalonModule implements ModuleIO {
+  private static final int ODOMETRY_PERIOD_MS =
+      (int) Math.round(1000 / ODOMETRY_FREQUENCY.in(Hertz));
+
   private final TalonFX driveMotor; // Kraken X60
   private final SparkMax turnMotor; // NEO 550
   private final SparkMaxConfig turnMotorConfig;
 
   private final StatusSignal<Angle> drivePos;
   private final StatusSignal<AngularVelocity> driveVelocity;
+  // separate copy refreshed only by the odometry thread
+  private final StatusSignal<Angle> odometryDrivePos;
   private final SparkAbsoluteEncoder turningEncoder;
 
   private final VelocityVoltage velocityOut = new VelocityVoltage(0);
@@ -51,9 +56,9 @@ public class TalonModule implements ModuleIO {
 
   private final Rotation2d angularOffset;
 
-  @Log.NT private SwerveModuleState setpoint = new SwerveModuleState();
+  @Log.NT private final SwerveModuleState setpoint = new SwerveModuleState();
 
-  private Rotation2d lastRotation;
+  private final Inputs inputs = new Inputs();
 
   private final String name;
 
@@ -67,7 +72,9 @@ public class TalonModule implements ModuleIO {
     driveFF =
         new SimpleMotorFeedforward(Driving.FF.TALON.S, Driving.FF.TALON.V, Driving.FF.TALON.A);
 
-    drivePos.setUpdateFrequency(1 / SENSOR_PERIOD.in(Seconds));
+    odometryDrivePos = drivePos.clone();
+
+    drivePos.setUpdateFrequency(ODOMETRY_FREQUENCY.in(Hertz));
     driveVelocity.setUpdateFrequency(1 / SENSOR_PERIOD.in(Seconds));
 
     TalonFXConfiguration talonConfig = new TalonFXConfiguration();
@@ -85,6 +92,8 @@ public class TalonModule implements ModuleIO {
     driveMotor.getConfigurator().apply(talonConfig);
 
     TalonUtils.addMotor(driveMotor);
+    TalonUtils.registerSignals(drivePos, driveVelocity);
+    register(driveMotor);
 
     // Turn Motor
 
@@ -126,6 +135,10 @@ public class TalonModule implements ModuleIO {
             Set.of(Sensor.ABSOLUTE),
             false));
 
+    // match the odometry thread's sample rate
+    turnMotorConfig.apply(
+        turnMotorConfig.signals.absoluteEncoderPositionPeriodMs(ODOMETRY_PERIOD_MS));
+
     check(
         turnMotor,
         turnMotor.configure(
@@ -155,33 +168,33 @@ public class TalonModule implements ModuleIO {
   }
 
   @Override
-  public double drivePosition() {
-    return drivePos.getValueAsDouble();
-  }
+  public void refresh() {
+    // drive signals are refreshed in a batch by TalonUtils.refreshSignals()
+    double turnPosition = turningEncoder.getPosition();
+    Rotation2d rotation =
+        check(turnMotor)
+            ? Rotation2d.fromRadians(turnPosition).minus(angularOffset)
+            : inputs.rotation;
 
-  @Override
-  public double driveVelocity() {
-    return driveVelocity.getValueAsDouble();
+    inputs.update(
+        BaseStatusSignal.getLatencyCompensatedValueAsDouble(drivePos, driveVelocity),
+        driveVelocity.getValueAsDouble(),
+        rotation);
   }
 
   @Override
-  public Rotation2d rotation() {
-    lastRotation =
-        SparkUtils.wrapCall(
-                turnMotor,
-                Rotation2d.fromRadians(turningEncoder.getPosition()).minus(angularOffset))
-            .orElse(lastRotation);
-    return lastRotation;
+  public Inputs inputs() {
+    return inputs;
   }
 
   @Override
-  public SwerveModuleState state() {
-    return new SwerveModuleState(driveVelocity(), rotation());
+  public double odometryDrivePosition() {
+    return odometryDrivePos.refresh().getValueAsDouble();
   }
 
   @Override
-  public SwerveModulePosition position() {
-    return new SwerveModulePosition(drivePosition(), rotation());
+  public double odometryTurnPosition() {
+    return turningEncoder.getPosition() - angularOffset.getRadians();
   }
 
   @Override
@@ -206,10 +219,9 @@ public class TalonModule implements ModuleIO {
   }
 
   @Override
-  public void updateSetpoint(SwerveModuleState setpoint, ControlMode mode) {
-    setpoint.optimize(rotation());
-    // Scale setpoint by cos of turning error to reduce tread wear
-    setpoint.speedMetersPerSecond *= setpoint.angle.minus(rotation()).getCos();
+  public void updateSetpoint(SwerveModuleState desired, ControlMode mode) {
+    // optimize and cosine scale into the reused setpoint, leaving the desired state untouched
+    ModuleIO.optimize(desired, rotation(), setpoint);
 
     if (mode == ControlMode.OPEN_LOOP_VELOCITY) {
       setDriveVoltage(driveFF.calculate(setpoint.speedMetersPerSecond));
@@ -218,7 +230,6 @@ public class TalonModule implements ModuleIO {
     }
 
     setTurnSetpoint(setpoint.angle.getRadians());
-    this.setpoint = setpoint;
   }
 
   @Override
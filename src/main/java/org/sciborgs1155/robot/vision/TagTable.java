@@ -0,0 +1,95 @@
+package org.sciborgs1155.robot.vision;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose3d;
+
+/**
+ * The poses of every tag in an {@link AprilTagFieldLayout}, in primitive arrays indexed by tag ID.
+ *
+ * <p>Looking up a tag is an array access, instead of a search of the layout that returns a boxed
+ * {@link java.util.Optional}. IDs that aren't in the layout, including any above the highest ID,
+ * are reported as missing.
+ */
+public final class TagTable {
+  private final boolean[] present;
+  private final double[] x;
+  private final double[] y;
+  private final double[] z;
+  private final double[] yaw;
+  private final Pose3d[] poses;
+
+  /**
+   * Builds a table from a layout.
+   *
+   * @param layout The layout to copy tag poses from.
+   */
+  public TagTable(AprilTagFieldLayout layout) {
+    int size = 0;
+    for (AprilTag tag : layout.getTags()) {
+      size = Math.max(size, tag.ID + 1);
+    }
+
+    present = new boolean[size];
+    x = new double[size];
+    y = new double[size];
+    z = new double[size];
+    yaw = new double[size];
+    poses = new Pose3d[size];
+    for (AprilTag tag : layout.getTags()) {
+      if (tag.ID < 0) {
+        continue;
+      }
+      present[tag.ID] = true;
+      x[tag.ID] = tag.pose.getX();
+      y[tag.ID] = tag.pose.getY();
+      z[tag.ID] = tag.pose.getZ();
+      yaw[tag.ID] = tag.pose.getRotation().getZ();
+      poses[tag.ID] = tag.pose;
+    }
+  }
+
+  /**
+   * Returns the number of entries in the table, one more than the highest tag ID.
+   *
+   * @return The size of the table.
+   */
+  public int size() {
+    return present.length;
+  }
+
+  /**
+   * Returns whether a tag is in the layout.
+   *
+   * @param id The tag's ID.
+   * @return Whether the tag exists.
+   */
+  public boolean has(int id) {
+    return id >= 0 && id < present.length && present[id];
+  }
+
+  /** Returns the field-relative x position of a tag, in meters. The tag must exist. */
+  public double x(int id) {
+    return x[id];
+  }
+
+  /** Returns the field-relative y position of a tag, in meters. The tag must exist. */
+  public double y(int id) {
+    return y[id];
+  }
+
+  /** Returns the height of a tag, in meters. The tag must exist. */
+  public double z(int id) {
+    return z[id];
+  }
+
+  /** Returns the field-relative yaw of a tag, in radians. The tag must exist. */
+  public double yaw(int id) {
+    return yaw[id];
+  }
+
+  /** Returns the pose of a tag. The tag must exist. */
+  public Pose3d pose(int id) {
+    return poses[id];
+  }
+}
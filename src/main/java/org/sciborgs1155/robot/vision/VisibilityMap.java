@@ -0,0 +1,293 @@
+package org.sciborgs1155.robot.vision;
+
+import static edu.wpi.first.units.Units.Meters;
+import static org.sciborgs1155.robot.vision.VisionConstants.*;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.sciborgs1155.robot.Constants.Field;
+import org.sciborgs1155.robot.vision.Vision.CameraConfig;
+
+/**
+ * Which cameras could possibly see a tag, for every cell of a grid over the field and every
+ * heading.
+ *
+ * <p>The map is conservative: a camera is marked as able to see tags from a cell and heading bin if
+ * a tag is in range, in front of the camera, within its field of view, and facing it from anywhere
+ * within the cell and bin. Each entry is a bitmask of cameras, one byte per cell and heading.
+ *
+ * <p>Computing the map takes a while, so it is generated offline with {@code ./gradlew
+ * generateVisibilityMap}, which every deploy runs first, and deployed as {@link
+ * VisionConstants#VISIBILITY_MAP}. The file stores a fingerprint of the layout, cameras, and grid
+ * it was generated from, and is ignored if any of them changed.
+ */
+public final class VisibilityMap {
+  private static final int MAGIC = 0x564D4150; // "VMAP"
+  private static final int VERSION = 1;
+  // cameras that fit in a byte mask
+  public static final int MAX_CAMERAS = 8;
+
+  private final long fingerprint;
+  private final int cols;
+  private final int rows;
+  private final int headings;
+  private final int all;
+  // [row][col][heading]
+  private final byte[] masks;
+
+  private VisibilityMap(
+      long fingerprint, int cols, int rows, int headings, int cameras, byte[] masks) {
+    this.fingerprint = fingerprint;
+    this.cols = cols;
+    this.rows = rows;
+    this.headings = headings;
+    this.all = (1 << cameras) - 1;
+    this.masks = masks;
+  }
+
+  /**
+   * Returns a bitmask of the cameras that could see a tag from a pose. Bit {@code i} is set if
+   * camera {@code i} could. Poses outside of the field may see anything.
+   *
+   * @param x The field-relative x of the robot, in meters.
+   * @param y The field-relative y of the robot, in meters.
+   * @param heading The heading of the robot, in radians.
+   * @return The mask of cameras that could see tags.
+   */
+  public int visibleCameras(double x, double y, double heading) {
+    int col = (int) Math.floor(x / VISIBILITY_CELL);
+    int row = (int) Math.floor(y / VISIBILITY_CELL);
+    if (col < 0 || col >= cols || row < 0 || row >= rows) {
+      return all;
+    }
+    double turns = heading / (2 * Math.PI);
+    int bin = (int) Math.round((turns - Math.floor(turns)) * headings) % headings;
+    return masks[(row * cols + col) * headings + bin] & 0xFF;
+  }
+
+  /**
+   * Computes the map for a layout and set of cameras.
+   *
+   * @param layout The layout of tags on the field.
+   * @param cameras The cameras on the robot.
+   * @return The map.
+   */
+  public static VisibilityMap compute(AprilTagFieldLayout layout, CameraConfig... cameras) {
+    if (cameras.length > MAX_CAMERAS) {
+      throw new IllegalArgumentException("at most " + MAX_CAMERAS + " cameras are supported");
+    }
+    int cols = (int) Math.ceil(Field.LENGTH.in(Meters) / VISIBILITY_CELL);
+    int rows = (int) Math.ceil(Field.WIDTH.in(Meters) / VISIBILITY_CELL);
+    int headings = VISIBILITY_HEADINGS;
+    byte[] masks = new byte[rows * cols * headings];
+
+    double diagonal = Math.hypot(WIDTH, HEIGHT);
+    double tanHalfFov = Math.tan(FOV.getRadians() / 2);
+    double halfHorizontal = Math.atan(tanHalfFov * WIDTH / diagonal);
+    double halfVertical = Math.atan(tanHalfFov * HEIGHT / diagonal);
+    double halfBin = Math.PI / headings;
+    double halfCell = VISIBILITY_CELL * Math.sqrt(2) / 2;
+
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        for (int bin = 0; bin < headings; bin++) {
+          Pose3d robot =
+              new Pose3d(
+                  new Pose2d(
+                      (col + 0.5) * VISIBILITY_CELL,
+                      (row + 0.5) * VISIBILITY_CELL,
+                      Rotation2d.fromRadians(bin * 2 * halfBin)));
+          int mask = 0;
+          for (int c = 0; c < cameras.length; c++) {
+            var robotToCam = cameras[c].robotToCam();
+            // how far the camera can be from where it is assumed to be, within this cell and bin
+            double slack = halfCell + Math.hypot(robotToCam.getX(), robotToCam.getY()) * halfBin;
+            Pose3d camera = robot.transformBy(robotToCam);
+            for (AprilTag tag : layout.getTags()) {
+              if (canSee(camera, tag.pose, slack, halfBin, halfHorizontal, halfVertical)) {
+                mask |= 1 << c;
+                break;
+              }
+            }
+          }
+          masks[(row * cols + col) * headings + bin] = (byte) mask;
+        }
+      }
+    }
+    return new VisibilityMap(
+        fingerprint(layout, cameras), cols, rows, headings, cameras.length, masks);
+  }
+
+  /** Returns whether a camera could see a tag, with some slack in its position and heading. */
+  private static boolean canSee(
+      Pose3d camera,
+      Pose3d tag,
+      double slack,
+      double headingSlack,
+      double halfHorizontal,
+      double halfVertical) {
+    Translation3d relative = tag.relativeTo(camera).getTranslation();
+    double distance = relative.getNorm();
+    if (distance > MAX_SIGHT_RANGE.in(Meters) + slack) {
+      return false;
+    }
+    if (distance <= slack) {
+      return true;
+    }
+    double angleSlack = Math.asin(slack / distance);
+
+    // in front of the camera, and within its field of view
+    double horizontal = Math.abs(Math.atan2(relative.getY(), relative.getX()));
+    if (horizontal > halfHorizontal + headingSlack + angleSlack) {
+      return false;
+    }
+    double vertical =
+        Math.abs(Math.atan2(relative.getZ(), Math.hypot(relative.getX(), relative.getY())));
+    if (vertical > halfVertical + angleSlack) {
+      return false;
+    }
+
+    // the tag's face points towards the camera
+    Translation3d normal = new Translation3d(1, 0, 0).rotateBy(tag.getRotation());
+    Translation3d toCamera = camera.getTranslation().minus(tag.getTranslation());
+    double facing =
+        (normal.getX() * toCamera.getX()
+                + normal.getY() * toCamera.getY()
+                + normal.getZ() * toCamera.getZ())
+            / distance;
+    return facing > -Math.sin(angleSlack);
+  }
+
+  /**
+   * Returns a fingerprint of everything a map depends on, so that a stale map file can be detected.
+   *
+   * @param layout The layout of tags on the field.
+   * @param cameras The cameras on the robot.
+   * @return The fingerprint.
+   */
+  public static long fingerprint(AprilTagFieldLayout layout, CameraConfig... cameras) {
+    long hash = VERSION;
+    hash = mix(hash, VISIBILITY_CELL);
+    hash = mix(hash, VISIBILITY_HEADINGS);
+    hash = mix(hash, Field.LENGTH.in(Meters));
+    hash = mix(hash, Field.WIDTH.in(Meters));
+    hash = mix(hash, FOV.getRadians());
+    hash = mix(hash, WIDTH);
+    hash = mix(hash, HEIGHT);
+    hash = mix(hash, MAX_SIGHT_RANGE.in(Meters));
+    for (AprilTag tag : layout.getTags()) {
+      hash = mix(hash, tag.ID);
+      hash = mix(hash, tag.pose.getX());
+      hash = mix(hash, tag.pose.getY());
+      hash = mix(hash, tag.pose.getZ());
+      hash = mix(hash, tag.pose.getRotation().getX());
+      hash = mix(hash, tag.pose.getRotation().getY());
+      hash = mix(hash, tag.pose.getRotation().getZ());
+    }
+    for (CameraConfig camera : cameras) {
+      var transform = camera.robotToCam();
+      hash = mix(hash, transform.getX());
+      hash = mix(hash, transform.getY());
+      hash = mix(hash, transform.getZ());
+      hash = mix(hash, transform.getRotation().getX());
+      hash = mix(hash, transform.getRotation().getY());
+      hash = mix(hash, transform.getRotation().getZ());
+    }
+    return hash;
+  }
+
+  private static long mix(long hash, double value) {
+    return hash * 31 + Double.doubleToLongBits(value);
+  }
+
+  /**
+   * Writes the map to a file.
+   *
+   * @param path The file to write.
+   * @throws IOException If the file couldn't be written.
+   */
+  public void write(Path path) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      out.writeInt(cols);
+      out.writeInt(rows);
+      out.writeInt(headings);
+      out.writeInt(Integer.bitCount(all));
+      out.write(masks);
+    }
+  }
+
+  /**
+   * Reads a map from a file, if it exists and was generated for the same layout and cameras.
+   *
+   * @param path The file to read.
+   * @param layout The layout of tags on the field.
+   * @param cameras The cameras on the robot.
+   * @return The map, or empty if the file is missing, invalid, or stale.
+   */
+  public static Optional<VisibilityMap> read(
+      Path path, AprilTagFieldLayout layout, CameraConfig... cameras) {
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return Optional.empty();
+      }
+      long fingerprint = in.readLong();
+      int cols = in.readInt();
+      int rows = in.readInt();
+      int headings = in.readInt();
+      int count = in.readInt();
+      if (fingerprint != fingerprint(layout, cameras) || count != cameras.length) {
+        return Optional.empty();
+      }
+      byte[] masks = new byte[rows * cols * headings];
+      in.readFully(masks);
+      return Optional.of(new VisibilityMap(fingerprint, cols, rows, headings, count, masks));
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns the path of the deployed map.
+   *
+   * @return The path in the deploy directory.
+   */
+  public static Path deployPath() {
+    return Filesystem.getDeployDirectory().toPath().resolve(VISIBILITY_MAP);
+  }
+
+  /**
+   * Generates the map for {@link VisionConstants#TAG_LAYOUT} and {@link VisionConstants#CAMERAS},
+   * and writes it to the path given as the first argument, or the deploy directory by default.
+   */
+  public static void main(String[] args) throws IOException {
+    Path path = args.length > 0 ? Path.of(args[0]) : deployPath();
+    long start = System.nanoTime();
+    VisibilityMap map = compute(TAG_LAYOUT, CAMERAS.toArray(CameraConfig[]::new));
+    map.write(path);
+    System.out.printf(
+        "Wrote %d entries to %s in %.1f s%n",
+        map.masks.length, path, (System.nanoTime() - start) / 1e9);
+  }
+}
@@ -1,19 +1,29 @@
 package org.sciborgs1155.robot.vision;
 
+import static edu.wpi.first.units.Units.Meters;
+import static edu.wpi.first.units.Units.Seconds;
 import static org.sciborgs1155.robot.Constants.*;
 import static org.sciborgs1155.robot.vision.VisionConstants.*;
 
 import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.networktables.BooleanEntry;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.Notifier;
+import java.awt.GraphicsEnvironment;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import monologue.Annotations.Log;
 import monologue.Logged;
 import org.photonvision.EstimatedRobotPose;
@@ -26,9 +36,25 @@ import org.photonvision.simulation.VisionSystemSim;
 import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 import org.sciborgs1155.lib.FaultLogger;
+import org.sciborgs1155.lib.SingleProducerQueue;
+import org.sciborgs1155.lib.Tuning;
 import org.sciborgs1155.robot.Robot;
 
-public class Vision implements Logged {
+/**
+ * Estimates the pose of the robot from AprilTags seen by each camera.
+ *
+ * <p>Every camera is handled by its own worker {@link Notifier}, which decodes results, runs pose
+ * estimation, and filters estimates off the main thread. Finished estimates are handed to the main
+ * loop through a {@link SingleProducerQueue} per camera, so workers never log or touch robot state.
+ *
+ * <p>Cameras that can't see any tags from the robot's current pose, according to the {@link
+ * VisibilityMap}, are only polled once every {@link VisionConstants#HIDDEN_POLL_DIVISOR} polls.
+ *
+ * <p>In simulation, the vision system is updated on its own thread from snapshots of the robot's
+ * pose, so rendering camera streams never slows down the main loop. Rendering is toggled per camera
+ * with a tuning entry, and is off by default when running headless or in CI.
+ */
+public class Vision implements Logged, AutoCloseable {
   public static record CameraConfig(String name, Transform3d robotToCam) {}
 
   public static record PoseEstimate(EstimatedRobotPose estimatedPose, Matrix<N3, N1> standardDev) {}
@@ -36,20 +62,57 @@ public class Vision implements Logged {
   private final PhotonCamera[] cameras;
   private final PhotonPoseEstimator[] estimators;
   private final PhotonCameraSim[] simCameras;
-  private final PhotonPipelineResult[] lastResults;
+  private final AtomicReferenceArray<PhotonPipelineResult> lastResults;
+  private final List<SingleProducerQueue<PoseEstimate>> queues = new ArrayList<>();
+  private final Notifier[] workers;
+
+  // std devs handed to the main loop are reused from a ring per camera. A matrix is only taken for
+  // an estimate that fits in the queue, and each ring holds a full queue plus the estimates drained
+  // last, so a matrix isn't rewritten while an estimate holding it may still be read.
+  private final List<List<Matrix<N3, N1>>> stdDevPools = new ArrayList<>();
+  private final int[] stdDevCursors;
+
+  // the map is loaded or computed in the background; until then every camera is polled
+  private volatile VisibilityMap visibility;
+  // bit i is set if camera i may see tags from the last pose, written by the main loop
+  private volatile int visibleCameras = -1;
+  // polls since each hidden camera was last processed, only touched by its worker
+  private final int[] hiddenPolls;
+
+  private final AtomicLong skippedPolls = new AtomicLong();
+
+  // arrays of seen tag poses, reused by length
+  private Pose3d[][] seenTags = new Pose3d[1][0];
 
   private VisionSystemSim visionSim;
+  private Notifier simThread;
+  // the latest pose from the main loop, simulated by the sim thread
+  private final AtomicReference<Pose2d> simPose = new AtomicReference<>();
+  private BooleanEntry[] renderEntries;
+  // whether each camera is rendering, only touched by the sim thread
+  private boolean[] rendering;
+  // the sim updates per second the sim thread could run, from the mean cost of an update, with and
+  // without any camera rendering, only touched by the sim thread
+  private DoublePublisher renderingRate;
+  private DoublePublisher notRenderingRate;
+  private long rateWindowStart = 0;
+  // time spent in updates and the number of updates this window, indexed by whether any rendered
+  private final long[] updateNanos = new long[2];
+  private final int[] updates = new int[2];
 
-  /** A factory to create new vision classes with our two configured cameras. */
+  /** A factory to create new vision classes with our configured cameras. */
   public static Vision create() {
-    return new Vision(BACK_LEFT_CAMERA, BACK_RIGHT_CAMERA, FRONT_LEFT_CAMERA, FRONT_RIGHT_CAMERA);
+    return new Vision(CAMERAS.toArray(CameraConfig[]::new));
   }
 
   public Vision(CameraConfig... configs) {
     cameras = new PhotonCamera[configs.length];
     estimators = new PhotonPoseEstimator[configs.length];
     simCameras = new PhotonCameraSim[configs.length];
-    lastResults = new PhotonPipelineResult[configs.length];
+    lastResults = new AtomicReferenceArray<>(configs.length);
+    workers = new Notifier[configs.length];
+    stdDevCursors = new int[configs.length];
+    hiddenPolls = new int[configs.length];
 
     for (int i = 0; i < configs.length; i++) {
       PhotonCamera camera = new PhotonCamera(configs[i].name());
@@ -62,7 +125,13 @@ public class Vision implements Logged {
       estimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
       cameras[i] = camera;
       estimators[i] = estimator;
-      lastResults[i] = new PhotonPipelineResult();
+      lastResults.set(i, new PhotonPipelineResult());
+      queues.add(new SingleProducerQueue<>(ESTIMATE_QUEUE_CAPACITY));
+      List<Matrix<N3, N1>> pool = new ArrayList<>();
+      for (int j = 0; j < 2 * ESTIMATE_QUEUE_CAPACITY; j++) {
+        pool.add(new Matrix<>(N3.instance, N1.instance));
+      }
+      stdDevPools.add(pool);
 
       FaultLogger.register(camera);
     }
@@ -70,6 +139,9 @@ public class Vision implements Logged {
     if (Robot.isSimulation()) {
       visionSim = new VisionSystemSim("main");
       visionSim.addAprilTags(VisionConstants.TAG_LAYOUT);
+      renderEntries = new BooleanEntry[cameras.length];
+      rendering = new boolean[cameras.length];
+      boolean render = !GraphicsEnvironment.isHeadless() && System.getenv("CI") == null;
 
       for (int i = 0; i < cameras.length; i++) {
         var prop = new SimCameraProperties();
@@ -80,51 +152,111 @@ public class Vision implements Logged {
         prop.setLatencyStdDevMs(3.5);
 
         PhotonCameraSim cameraSim = new PhotonCameraSim(cameras[i], prop);
-        cameraSim.setMaxSightRange(5);
-        cameraSim.enableRawStream(true);
-        cameraSim.enableProcessedStream(true);
-        cameraSim.enableDrawWireframe(true);
+        cameraSim.setMaxSightRange(MAX_SIGHT_RANGE.in(Meters));
+        setRendering(cameraSim, render);
+        rendering[i] = render;
+        renderEntries[i] =
+            Tuning.entry("/Robot/vision/" + configs[i].name() + "/render streams", render);
 
         visionSim.addCamera(cameraSim, configs[i].robotToCam());
         simCameras[i] = cameraSim;
       }
+
+      var table = NetworkTableInstance.getDefault().getTable("Robot/vision");
+      renderingRate = table.getDoubleTopic("max sim updates per second (rendering)").publish();
+      notRenderingRate =
+          table.getDoubleTopic("max sim updates per second (not rendering)").publish();
+      simThread = new Notifier(this::updateSim);
+      simThread.setName("Vision Sim");
+      simThread.startPeriodic(PERIOD.in(Seconds));
+    }
+
+    if (configs.length <= VisibilityMap.MAX_CAMERAS) {
+      Thread loader = new Thread(() -> loadVisibility(configs), "VisibilityMap");
+      loader.setDaemon(true);
+      loader.start();
     }
+
+    for (int i = 0; i < configs.length; i++) {
+      int camera = i;
+      workers[i] = new Notifier(() -> process(camera));
+      workers[i].setName("Vision " + configs[i].name());
+      workers[i].startPeriodic(POLL_PERIOD.in(Seconds));
+    }
+  }
+
+  /** Reads the deployed visibility map, or computes it if it is missing or stale. */
+  private void loadVisibility(CameraConfig[] configs) {
+    visibility =
+        VisibilityMap.read(VisibilityMap.deployPath(), TAG_LAYOUT, configs)
+            .orElseGet(
+                () -> {
+                  DataLogManager.log(
+                      "Visibility map is missing or stale, run ./gradlew generateVisibilityMap");
+                  return VisibilityMap.compute(TAG_LAYOUT, configs);
+                });
+  }
+
+  /**
+   * Updates which cameras may see tags, from the robot's estimated pose. This should be called
+   * periodically from the main thread.
+   *
+   * @param pose The field-relative pose of the robot.
+   */
+  public void updateVisibility(Pose2d pose) {
+    VisibilityMap map = visibility;
+    visibleCameras =
+        map == null
+            ? -1
+            : map.visibleCameras(pose.getX(), pose.getY(), pose.getRotation().getRadians());
+  }
+
+  /**
+   * Returns the number of polls skipped because a camera couldn't see any tags.
+   *
+   * @return The total number of skipped polls.
+   */
+  @Log.NT
+  public long skippedPolls() {
+    return skippedPolls.get();
   }
 
   /**
-   * Returns a list of all currently visible pose estimates and their standard deviation vectors.
+   * Returns pose estimates and their standard deviation vectors for every result from every camera
+   * that finished processing since the last call, sorted from oldest to newest so that they can be
+   * fused in order.
+   *
+   * <p>The standard deviation matrices are pooled, and are only valid until the next call.
    *
    * @return An {@link EstimatedRobotPose} with an estimated pose, estimate timestamp, and targets
    *     used for estimation.
    */
   public PoseEstimate[] estimatedGlobalPoses() {
     List<PoseEstimate> estimates = new ArrayList<>();
-    for (int i = 0; i < estimators.length; i++) {
-      var unread = cameras[i].getAllUnreadResults();
-      PhotonPipelineResult result;
-      if (unread.size() > 1) {
-        // gets the latest result if there are multiple unread results
-        int maxIndex = 0;
-        double max = 0;
-        int unreadLength = unread.size();
-        for (int ie = 0; ie < unreadLength; ie++) {
-          double temp = unread.get(ie).getTimestampSeconds();
-          if (temp > max) {
-            max = temp;
-            maxIndex = ie;
-          }
-        }
-        result = unread.get(maxIndex);
-        lastResults[i] = result;
-      } else if (unread.size() == 1) {
-        result = unread.get(0);
-        lastResults[i] = result;
-      } else {
-        result = lastResults[i];
-      }
-      var estimate = estimators[i].update(result);
-      log("estimates present " + i, estimate.isPresent());
-      estimate
+    for (int i = 0; i < queues.size(); i++) {
+      log("estimates present " + i, queues.get(i).drain(estimates::add) > 0);
+    }
+    estimates.sort(Comparator.comparingDouble(e -> e.estimatedPose().timestampSeconds));
+    return estimates.toArray(PoseEstimate[]::new);
+  }
+
+  /**
+   * Decodes and estimates every unread result from a camera, publishing accepted estimates to its
+   * queue. This runs on the camera's worker thread.
+   *
+   * @param camera The index of the camera.
+   */
+  private void process(int camera) {
+    if ((visibleCameras & (1 << camera)) == 0 && ++hiddenPolls[camera] < HIDDEN_POLL_DIVISOR) {
+      skippedPolls.incrementAndGet();
+      return;
+    }
+    hiddenPolls[camera] = 0;
+    for (var result : cameras[camera].getAllUnreadResults()) {
+      // results are queued oldest first, so this leaves the newest
+      lastResults.set(camera, result);
+      estimators[camera]
+          .update(result)
           .filter(
               f ->
                   Field.inField(f.estimatedPose)
@@ -133,71 +265,189 @@ public class Vision implements Logged {
                       && Math.abs(f.estimatedPose.getRotation().getY()) < MAX_ANGLE)
           .ifPresent(
               e ->
-                  estimates.add(
-                      new PoseEstimate(e, estimationStdDevs(e.estimatedPose.toPose2d(), result))));
+                  queues
+                      .get(camera)
+                      .offerWith(
+                          () ->
+                              new PoseEstimate(
+                                  e,
+                                  estimationStdDevs(
+                                      e.estimatedPose.getX(),
+                                      e.estimatedPose.getY(),
+                                      result.targets,
+                                      nextStdDevs(camera)))));
     }
-    return estimates.toArray(PoseEstimate[]::new);
+  }
+
+  /** Returns the next std dev matrix from a camera's ring. This runs on the camera's worker. */
+  private Matrix<N3, N1> nextStdDevs(int camera) {
+    List<Matrix<N3, N1>> pool = stdDevPools.get(camera);
+    int cursor = stdDevCursors[camera];
+    stdDevCursors[camera] = (cursor + 1) % pool.size();
+    return pool.get(cursor);
   }
 
   /**
    * Returns the poses of all currently visible tags.
    *
-   * @return An array of Pose3ds.
+   * @return An array of Pose3ds, which is reused between calls that see the same number of tags.
    */
   @Log.NT
   public Pose3d[] getSeenTags() {
-    return Arrays.stream(lastResults)
-        .flatMap(c -> c.targets.stream())
-        .map(PhotonTrackedTarget::getFiducialId)
-        .map(TAG_LAYOUT::getTagPose)
-        .map(Optional::get)
-        .toArray(Pose3d[]::new);
+    int count = 0;
+    for (int i = 0; i < lastResults.length(); i++) {
+      List<PhotonTrackedTarget> targets = lastResults.get(i).targets;
+      for (int j = 0; j < targets.size(); j++) {
+        if (TAGS.has(targets.get(j).getFiducialId())) {
+          count++;
+        }
+      }
+    }
+
+    if (count >= seenTags.length) {
+      seenTags = Arrays.copyOf(seenTags, count + 1);
+    }
+    if (seenTags[count] == null) {
+      seenTags[count] = new Pose3d[count];
+    }
+    Pose3d[] poses = seenTags[count];
+
+    // results may be replaced by the workers while counting, so never write past the end
+    int n = 0;
+    for (int i = 0; i < lastResults.length() && n < count; i++) {
+      List<PhotonTrackedTarget> targets = lastResults.get(i).targets;
+      for (int j = 0; j < targets.size() && n < count; j++) {
+        int id = targets.get(j).getFiducialId();
+        if (TAGS.has(id)) {
+          poses[n++] = TAGS.pose(id);
+        }
+      }
+    }
+    Arrays.fill(poses, n, count, Pose3d.kZero);
+    return poses;
   }
 
   /**
-   * The standard deviations of the estimated pose from {@link #getEstimatedGlobalPose()}, for use
-   * with {@link edu.wpi.first.math.estimator.SwerveDrivePoseEstimator SwerveDrivePoseEstimator}.
-   * This should only be used when there are targets visible.
+   * The standard deviations of a pose estimate, for use with {@link
+   * org.sciborgs1155.robot.drive.Drive#addVisionMeasurement Drive}, written into {@code out}.
    *
-   * @param estimatedPose The estimated pose to guess standard deviations for.
+   * <p>This looks tags up in {@link VisionConstants#TAGS} and doesn't allocate. Tags that aren't in
+   * the layout are ignored.
+   *
+   * @param x The field-relative x of the estimated pose, in meters.
+   * @param y The field-relative y of the estimated pose, in meters.
+   * @param targets The targets used for the estimate.
+   * @param out The matrix to write the standard deviations into.
+   * @return {@code out}, for chaining.
    */
-  public Matrix<N3, N1> estimationStdDevs(
-      Pose2d estimatedPose, PhotonPipelineResult pipelineResult) {
-    var estStdDevs = VisionConstants.SINGLE_TAG_STD_DEVS;
-    var targets = pipelineResult.getTargets();
+  public static Matrix<N3, N1> estimationStdDevs(
+      double x, double y, List<PhotonTrackedTarget> targets, Matrix<N3, N1> out) {
     int numTags = 0;
     double avgDist = 0;
     double avgWeight = 0;
-    for (var tgt : targets) {
-      var tagPose = TAG_LAYOUT.getTagPose(tgt.getFiducialId());
-      if (tagPose.isEmpty()) continue;
+    for (int i = 0; i < targets.size(); i++) {
+      int id = targets.get(i).getFiducialId();
+      if (!TAGS.has(id)) continue;
       numTags++;
-      avgDist +=
-          tagPose.get().toPose2d().getTranslation().getDistance(estimatedPose.getTranslation());
-      avgWeight += TAG_WEIGHTS[tgt.getFiducialId() - 1];
+      avgDist += Math.hypot(TAGS.x(id) - x, TAGS.y(id) - y);
+      avgWeight += TAG_WEIGHTS[id];
+    }
+
+    if (numTags == 0) {
+      for (int i = 0; i < 3; i++) {
+        out.set(i, 0, SINGLE_TAG_STD_DEVS.get(i, 0));
+      }
+      return out;
     }
-    if (numTags == 0) return estStdDevs;
 
     avgDist /= numTags;
     avgWeight /= numTags;
 
-    // Decrease std devs if multiple targets are visibleX
-    if (numTags > 1) estStdDevs = VisionConstants.MULTIPLE_TAG_STD_DEVS;
-    // Increase std devs based on (average) distance
-    if (numTags == 1 && avgDist > 4)
-      estStdDevs = VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-    else estStdDevs = estStdDevs.times(1 + (avgDist * avgDist / 30));
-
-    estStdDevs = estStdDevs.times(avgWeight);
+    // A single tag far away is not trusted at all
+    if (numTags == 1 && avgDist > 4) {
+      for (int i = 0; i < 3; i++) {
+        out.set(i, 0, Double.MAX_VALUE);
+      }
+      return out;
+    }
 
-    return estStdDevs;
+    // Decrease std devs if multiple targets are visible, and increase them with (average) distance
+    Matrix<N3, N1> base = numTags > 1 ? MULTIPLE_TAG_STD_DEVS : SINGLE_TAG_STD_DEVS;
+    double scale = (1 + (avgDist * avgDist / 30)) * avgWeight;
+    for (int i = 0; i < 3; i++) {
+      out.set(i, 0, base.get(i, 0) * scale);
+    }
+    return out;
   }
 
   /**
-   * Updates the vision field simulation. This method should not be called when code is running on
-   * the robot.
+   * Hands the robot's pose to the vision simulation, which is updated on its own thread. This
+   * method should not be called when code is running on the robot.
    */
   public void simulationPeriodic(Pose2d robotSimPose) {
-    visionSim.update(robotSimPose);
+    simPose.set(robotSimPose);
+  }
+
+  /** Updates the vision simulation from the latest pose. This runs on the sim thread. */
+  private void updateSim() {
+    boolean anyRendering = false;
+    for (int i = 0; i < simCameras.length; i++) {
+      boolean render = renderEntries[i].get();
+      if (render != rendering[i]) {
+        setRendering(simCameras[i], render);
+        rendering[i] = render;
+      }
+      anyRendering |= render;
+    }
+
+    Pose2d pose = simPose.get();
+    if (pose == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    visionSim.update(pose);
+    long now = System.nanoTime();
+
+    int state = anyRendering ? 1 : 0;
+    updateNanos[state] += now - start;
+    updates[state]++;
+
+    // publish the achievable rate of each state once a second, if it was updated in that state
+    if (rateWindowStart == 0) {
+      rateWindowStart = now;
+    }
+    if (now - rateWindowStart >= 1_000_000_000L) {
+      if (updates[1] > 0) {
+        renderingRate.set(updates[1] / (updateNanos[1] / 1e9));
+      }
+      if (updates[0] > 0) {
+        notRenderingRate.set(updates[0] / (updateNanos[0] / 1e9));
+      }
+      Arrays.fill(updateNanos, 0);
+      Arrays.fill(updates, 0);
+      rateWindowStart = now;
+    }
+  }
+
+  private static void setRendering(PhotonCameraSim camera, boolean render) {
+    camera.enableRawStream(render);
+    camera.enableProcessedStream(render);
+    camera.enableDrawWireframe(render);
+  }
+
+  @Override
+  public void close() {
+    if (simThread != null) {
+      simThread.close();
+      renderingRate.close();
+      notRenderingRate.close();
+      for (BooleanEntry entry : renderEntries) {
+        entry.close();
+      }
+    }
+    for (int i = 0; i < cameras.length; i++) {
+      workers[i].close();
+      cameras[i].close();
+    }
   }
 }
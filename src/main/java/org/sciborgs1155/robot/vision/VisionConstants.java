@@ -1,5 +1,8 @@
 package org.sciborgs1155.robot.vision;
 
+import static edu.wpi.first.units.Units.Meters;
+import static edu.wpi.first.units.Units.Seconds;
+
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.Matrix;
@@ -9,13 +12,19 @@ import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.units.measure.Distance;
+import edu.wpi.first.units.measure.Time;
+import java.util.Arrays;
+import java.util.List;
 import org.sciborgs1155.robot.vision.Vision.CameraConfig;
 
 public class VisionConstants {
   public static final AprilTagFieldLayout TAG_LAYOUT =
       AprilTagFieldLayout.loadField(AprilTagFields.kDefaultField);
+  // The poses of every tag in the layout, indexed by ID
+  public static final TagTable TAGS = new TagTable(TAG_LAYOUT);
 
-  /** TODO: Create cameras with updated constants; be sure to add in {@link Vision#create} */
+  /** TODO: Create cameras with updated constants; be sure to add in {@link #CAMERAS} */
   // WARNING: EMPTY TRANSFORMS WILL CRASH SIMULATION UPON TAG DETECTION
   public static final CameraConfig BACK_LEFT_CAMERA =
       new CameraConfig("back left", new Transform3d(1, 1, 1, new Rotation3d()));
@@ -27,14 +36,36 @@ public class VisionConstants {
   public static final CameraConfig FRONT_RIGHT_CAMERA =
       new CameraConfig("front right", new Transform3d(1, 1, 1, new Rotation3d()));
 
+  // Every camera on the robot, in the order of bits in visibility masks
+  public static final List<CameraConfig> CAMERAS =
+      List.of(BACK_LEFT_CAMERA, BACK_RIGHT_CAMERA, FRONT_LEFT_CAMERA, FRONT_RIGHT_CAMERA);
+
   // OV9281 constants for our configuration
   public static final int WIDTH = 1280;
   public static final int HEIGHT = 800;
   public static final Rotation2d FOV = Rotation2d.fromDegrees(70);
+  // Farthest distance a tag can be detected from
+  public static final Distance MAX_SIGHT_RANGE = Meters.of(5);
 
   public static final Matrix<N3, N1> SINGLE_TAG_STD_DEVS = VecBuilder.fill(1.5, 1.5, 7);
   public static final Matrix<N3, N1> MULTIPLE_TAG_STD_DEVS = VecBuilder.fill(0.3, 0.3, 4);
 
+  // How often each camera's worker checks for new results, faster than any camera's frame rate
+  public static final Time POLL_PERIOD = Seconds.of(0.005);
+  // Finished estimates that can wait for the main loop per camera before new ones are dropped
+  public static final int ESTIMATE_QUEUE_CAPACITY = 32;
+  // Estimates from all cameras taken within this long of each other are fused into one measurement
+  public static final Time FUSION_WINDOW = Seconds.of(0.02);
+
+  // Precomputed cameras that can see tags from each pose, in the deploy directory
+  public static final String VISIBILITY_MAP = "vision/visibility.bin";
+  // Side length of a cell in the visibility map, in meters
+  public static final double VISIBILITY_CELL = 0.5;
+  // Headings per full turn in the visibility map
+  public static final int VISIBILITY_HEADINGS = 16;
+  // Cameras that can't see any tags are still polled once every this many polls
+  public static final int HIDDEN_POLL_DIVISOR = 10;
+
   public static final double MAX_HEIGHT = 0.305;
   public static final double MAX_ANGLE = 0.3;
 
@@ -43,5 +74,11 @@ public class VisionConstants {
   // Reference:
   // Tag Locations (1-n) | Description...
 
-  public static final double[] TAG_WEIGHTS = {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+  // Multipliers on the std devs of estimates using each tag, indexed by ID, for every tag in the
+  // layout. Set a weight above 1 to trust a tag less.
+  public static final double[] TAG_WEIGHTS = new double[TAGS.size()];
+
+  static {
+    Arrays.fill(TAG_WEIGHTS, 1);
+  }
 }
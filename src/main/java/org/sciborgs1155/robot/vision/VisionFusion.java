@@ -0,0 +1,178 @@
+package org.sciborgs1155.robot.vision;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.sciborgs1155.robot.vision.Vision.PoseEstimate;
+
+/**
+ * Merges pose estimates from every camera into one measurement per window of time.
+ *
+ * <p>Estimates whose timestamps are within the window of the first estimate in a group are fused
+ * into a single pose by inverse-variance weighting each axis with the estimates' standard
+ * deviations. Heading is averaged on the unit circle. The fused standard deviation of each axis is
+ * that of the weighted mean, assuming the cameras' errors are independent. This bounds the number
+ * of measurements the pose estimator handles each tick, however many cameras there are.
+ *
+ * <p>Fused measurements are kept in arrays that are reused between calls, and are only valid until
+ * the next call to {@link #fuse}.
+ */
+public final class VisionFusion {
+  // standard deviation below which an estimate is treated as exact, to avoid infinite weights
+  private static final double MIN_STD_DEV = 1e-6;
+
+  private final double window;
+
+  private int count = 0;
+  private double[] x = new double[4];
+  private double[] y = new double[4];
+  private double[] heading = new double[4];
+  private double[] timestamps = new double[4];
+  private final List<Matrix<N3, N1>> stdDevs = new ArrayList<>();
+
+  /**
+   * Creates a new fusion stage.
+   *
+   * @param window The longest time between the first and last estimate fused together, in seconds.
+   */
+  public VisionFusion(double window) {
+    this.window = window;
+  }
+
+  /**
+   * Fuses estimates into measurements, replacing any fused by the previous call.
+   *
+   * @param estimates The estimates to fuse, sorted from oldest to newest, as returned by {@link
+   *     Vision#estimatedGlobalPoses()}.
+   * @return The number of fused measurements, also sorted from oldest to newest.
+   */
+  public int fuse(PoseEstimate... estimates) {
+    count = 0;
+    int start = 0;
+    while (start < estimates.length) {
+      double first = estimates[start].estimatedPose().timestampSeconds;
+      int end = start + 1;
+      while (end < estimates.length
+          && estimates[end].estimatedPose().timestampSeconds - first <= window) {
+        end++;
+      }
+      merge(estimates, start, end);
+      start = end;
+    }
+    return count;
+  }
+
+  /** Merges a group of estimates into the next measurement, unless none of them carry weight. */
+  private void merge(PoseEstimate[] estimates, int start, int end) {
+    // total weights of each axis, and weighted sums of each axis and the timestamp
+    double wx = 0;
+    double wy = 0;
+    double wh = 0;
+    double sx = 0;
+    double sy = 0;
+    double sin = 0;
+    double cos = 0;
+    double st = 0;
+    for (int i = start; i < end; i++) {
+      Pose3d pose = estimates[i].estimatedPose().estimatedPose;
+      Matrix<N3, N1> std = estimates[i].standardDev();
+      double h = pose.getRotation().getZ();
+      double ix = inverseVariance(std.get(0, 0));
+      double iy = inverseVariance(std.get(1, 0));
+      double ih = inverseVariance(std.get(2, 0));
+      wx += ix;
+      wy += iy;
+      wh += ih;
+      sx += ix * pose.getX();
+      sy += iy * pose.getY();
+      sin += ih * Math.sin(h);
+      cos += ih * Math.cos(h);
+      st += (ix + iy) * estimates[i].estimatedPose().timestampSeconds;
+    }
+    if (wx == 0 && wy == 0 && wh == 0) {
+      return;
+    }
+
+    // an axis without weight can't be corrected anyway, so any estimate will do for it
+    Pose3d first = estimates[start].estimatedPose().estimatedPose;
+    ensureCapacity(count + 1);
+    x[count] = wx > 0 ? sx / wx : first.getX();
+    y[count] = wy > 0 ? sy / wy : first.getY();
+    heading[count] = wh > 0 ? Math.atan2(sin, cos) : first.getRotation().getZ();
+    timestamps[count] =
+        wx + wy > 0 ? st / (wx + wy) : estimates[start].estimatedPose().timestampSeconds;
+    Matrix<N3, N1> out = stdDevs.get(count);
+    out.set(0, 0, standardDeviation(wx));
+    out.set(1, 0, standardDeviation(wy));
+    out.set(2, 0, standardDeviation(wh));
+    count++;
+  }
+
+  private static double inverseVariance(double std) {
+    double clamped = Math.max(std, MIN_STD_DEV);
+    return 1 / (clamped * clamped);
+  }
+
+  private static double standardDeviation(double weight) {
+    return weight > 0 ? 1 / Math.sqrt(weight) : Double.MAX_VALUE;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > x.length) {
+      int length = Math.max(capacity, 2 * x.length);
+      x = Arrays.copyOf(x, length);
+      y = Arrays.copyOf(y, length);
+      heading = Arrays.copyOf(heading, length);
+      timestamps = Arrays.copyOf(timestamps, length);
+    }
+    while (stdDevs.size() < capacity) {
+      stdDevs.add(new Matrix<>(N3.instance, N1.instance));
+    }
+  }
+
+  /**
+   * Returns the number of measurements fused by the last call to {@link #fuse}.
+   *
+   * @return The number of measurements.
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns a fused pose.
+   *
+   * @param i The index of the measurement.
+   * @return The field-relative pose.
+   */
+  public Pose2d pose(int i) {
+    return new Pose2d(x[i], y[i], Rotation2d.fromRadians(heading[i]));
+  }
+
+  /**
+   * Returns the timestamp of a fused measurement, the mean of its estimates' timestamps weighted by
+   * their translational weights.
+   *
+   * @param i The index of the measurement.
+   * @return The FPGA timestamp, in seconds.
+   */
+  public double timestamp(int i) {
+    return timestamps[i];
+  }
+
+  /**
+   * Returns the standard deviations of a fused measurement.
+   *
+   * @param i The index of the measurement.
+   * @return The standard deviations, which are reused between calls.
+   */
+  public Matrix<N3, N1> stdDevs(int i) {
+    return stdDevs.get(i);
+  }
+}
@@ -1,19 +1,57 @@
 package org.sciborgs1155.lib;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.sciborgs1155.lib.UnitTestingUtil.setupTests;
 
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.revrobotics.spark.SparkFlex;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
+import edu.wpi.first.hal.PowerDistributionFaults;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.PowerDistribution;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.sciborgs1155.lib.FaultLogger.Fault;
+import org.sciborgs1155.lib.FaultLogger.FaultSource;
 import org.sciborgs1155.lib.FaultLogger.FaultType;
 
 public class FaultLoggerTest {
+  /** The most an update of a full robot's faults may take, in microseconds. */
+  private static final double UPDATE_BUDGET = 2000;
+
+  private static final List<Function<TalonFX, StatusSignal<Boolean>>> TALON_FAULTS =
+      List.of(
+          TalonFX::getFault_Hardware,
+          TalonFX::getFault_ProcTemp,
+          TalonFX::getFault_DeviceTemp,
+          TalonFX::getFault_Undervoltage,
+          TalonFX::getFault_BootDuringEnable,
+          TalonFX::getFault_UnlicensedFeatureInUse,
+          TalonFX::getFault_BridgeBrownout,
+          TalonFX::getFault_RemoteSensorReset,
+          TalonFX::getFault_MissingDifferentialFX,
+          TalonFX::getFault_RemoteSensorPosOverflow,
+          TalonFX::getFault_OverSupplyV,
+          TalonFX::getFault_UnstableSupplyV,
+          TalonFX::getFault_ReverseHardLimit,
+          TalonFX::getFault_ForwardHardLimit,
+          TalonFX::getFault_ReverseSoftLimit,
+          TalonFX::getFault_ForwardSoftLimit,
+          TalonFX::getFault_RemoteSensorDataInvalid,
+          TalonFX::getFault_FusedSensorOutOfSync,
+          TalonFX::getFault_StatorCurrLimit,
+          TalonFX::getFault_SupplyCurrLimit,
+          TalonFX::getFault_UsingFusedCANcoderWhileUnlicensed);
 
   @BeforeAll
   public static void reset() {
@@ -80,6 +118,42 @@ public class FaultLoggerTest {
     assertEquals(1, totalErrors.get().length);
   }
 
+  @Test
+  void reportFromOtherThreads() throws InterruptedException {
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      String name = "Thread " + i;
+      threads[i] =
+          new Thread(
+              () -> {
+                for (int j = 0; j < 1000; j++) {
+                  FaultLogger.report(name, "fault " + j % 10, FaultType.ERROR);
+                }
+              });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    FaultLogger.update();
+    assertEquals(40, FaultLogger.totalFaults().size());
+  }
+
+  @Test
+  void failingSource() {
+    Fault fault = new Fault("Broken", "never read", FaultType.WARNING);
+    FaultLogger.register(
+        new FaultSource(
+            new Fault[] {fault},
+            () -> {
+              throw new IllegalStateException("disconnected");
+            }));
+    FaultLogger.update();
+    assertEquals(
+        Set.of(new Fault("Broken", "failed to poll faults", FaultType.ERROR)),
+        FaultLogger.activeFaults());
+  }
+
   @Test
   void registerSpark() {
     SparkFlex spark = new SparkFlex(10, MotorType.kBrushless);
@@ -93,4 +167,124 @@ public class FaultLoggerTest {
     FaultLogger.register(talon);
     talon.close();
   }
+
+  @Test
+  void registerPowerDistribution() {
+    PowerDistribution pdh = new PowerDistribution();
+    FaultLogger.register(pdh);
+    FaultLogger.update();
+    assertEquals(0, FaultLogger.activeFaults().size());
+    pdh.close();
+  }
+
+  @Test
+  void benchmark() {
+    SparkFlex[] sparks = new SparkFlex[8];
+    for (int i = 0; i < sparks.length; i++) {
+      sparks[i] = new SparkFlex(20 + i, MotorType.kBrushless);
+    }
+    TalonFX[] talons = new TalonFX[4];
+    for (int i = 0; i < talons.length; i++) {
+      talons[i] = new TalonFX(30 + i);
+    }
+    PowerDistribution pdh = new PowerDistribution();
+    // a NavX can't be created in tests, but it only ever registered a single condition
+    BooleanSupplier navxDisconnected = () -> false;
+
+    // before: one supplier per fault, each taking its own snapshot
+    FaultLogger.unregisterAll();
+    for (SparkFlex spark : sparks) {
+      legacyRegister(spark);
+    }
+    for (TalonFX talon : talons) {
+      for (var signal : TALON_FAULTS) {
+        var fault = signal.apply(talon);
+        legacyRegister(fault::getValue, "Talon ID: " + talon.getDeviceID(), fault.getName());
+      }
+    }
+    legacyRegister(navxDisconnected, "NavX", "disconnected");
+    legacyRegister(pdh);
+    double before = timeUpdate();
+
+    // after: one snapshot per device, decoded into a bitmask
+    FaultLogger.unregisterAll();
+    for (SparkFlex spark : sparks) {
+      FaultLogger.register(spark);
+    }
+    for (TalonFX talon : talons) {
+      FaultLogger.register(talon);
+    }
+    FaultLogger.register(navxDisconnected, "NavX", "disconnected", FaultType.ERROR);
+    FaultLogger.register(pdh);
+    double after = timeUpdate();
+
+    FaultLogger.unregisterAll();
+    for (SparkFlex spark : sparks) {
+      spark.close();
+    }
+    for (TalonFX talon : talons) {
+      talon.close();
+    }
+    pdh.close();
+
+    assertTrue(
+        after <= before,
+        String.format("update took %.1f us, but %.1f us without snapshots", after, before));
+    assertTrue(
+        after <= UPDATE_BUDGET,
+        String.format("update took %.1f us, over its %.0f us budget", after, UPDATE_BUDGET));
+  }
+
+  /** Returns the average time of an update, in microseconds. */
+  private static double timeUpdate() {
+    for (int i = 0; i < 200; i++) {
+      FaultLogger.update();
+    }
+    int iterations = 1000;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      FaultLogger.update();
+    }
+    return (System.nanoTime() - start) / 1e3 / iterations;
+  }
+
+  /** Registers a condition the way FaultLogger used to, allocating a fault on every poll. */
+  private static void legacyRegister(BooleanSupplier condition, String name, String description) {
+    FaultLogger.register(
+        () ->
+            condition.getAsBoolean()
+                ? Optional.of(new Fault(name, description, FaultType.ERROR))
+                : Optional.empty());
+  }
+
+  /** Registers a spark the way FaultLogger used to, with one snapshot per fault. */
+  private static void legacyRegister(SparkFlex spark) {
+    String name = SparkUtils.name(spark);
+    legacyRegister(() -> spark.getFaults().other, name, "other strange error");
+    legacyRegister(() -> spark.getFaults().motorType, name, "motor type error");
+    legacyRegister(() -> spark.getFaults().sensor, name, "sensor error");
+    legacyRegister(() -> spark.getFaults().can, name, "CAN error");
+    legacyRegister(() -> spark.getFaults().temperature, name, "temperature error");
+    legacyRegister(() -> spark.getFaults().gateDriver, name, "gate driver error");
+    legacyRegister(() -> spark.getFaults().escEeprom, name, "escEeprom? error");
+    legacyRegister(() -> spark.getFaults().firmware, name, "firmware error");
+    legacyRegister(() -> spark.getMotorTemperature() > 100, name, "motor above 100°C");
+  }
+
+  /** Registers a power distribution the way FaultLogger used to, reflecting on every poll. */
+  private static void legacyRegister(PowerDistribution pdh) {
+    for (Field field : PowerDistributionFaults.class.getFields()) {
+      FaultLogger.register(
+          () -> {
+            try {
+              if (field.getBoolean(pdh.getFaults())) {
+                return Optional.of(
+                    new Fault("Power Distribution", field.getName(), FaultType.ERROR));
+              }
+            } catch (Exception e) {
+            }
+            return Optional.empty();
+          });
+    }
+  }
 }
@@ -2,13 +2,16 @@ package org.sciborgs1155.lib;
 
 import static edu.wpi.first.units.Units.Seconds;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.sciborgs1155.lib.InputStream.*;
 
 import edu.wpi.first.math.MathSharedStore;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
 import org.junit.jupiter.api.Test;
 
 public class InputStreamTest {
-
   private InputStream stream(double n) {
     return of(() -> n);
   }
@@ -78,4 +81,121 @@ public class InputStreamTest {
     assertEquals(4, stream.get() - initial, 0.1);
     assertEquals(2, limited.get() - initial, 0.1);
   }
+
+  @Test
+  void memoize() {
+    int[] polls = {0};
+    InputStream memoized = of(() -> ++polls[0]).memoize(new SchedulerCycle());
+    InputStream sum = memoized.add(memoized).add(memoized.scale(2));
+    assertEquals(4, sum.get());
+    assertEquals(1, polls[0]);
+
+    CommandScheduler.getInstance().run();
+    assertEquals(8, sum.get());
+    assertEquals(2, polls[0]);
+  }
+
+  @Test
+  void pipeline() {
+    double[] multiplier = {0.5};
+    InputPipeline pipeline =
+        InputPipeline.create()
+            .negate()
+            .scale(() -> multiplier[0])
+            .add(0.1)
+            .clamp(1.0)
+            .deadband(0.1, 1.0)
+            .signedPow(2.0)
+            .pow(1.0)
+            .scale(4)
+            .scale(0.5)
+            .map(Math::sin);
+    var fused = pipeline.compile();
+    for (double n = -3; n <= 3; n += 0.01) {
+      double expected =
+          stream(n)
+              .negate()
+              .scale(() -> multiplier[0])
+              .add(0.1)
+              .clamp(1.0)
+              .deadband(0.1, 1.0)
+              .signedPow(2.0)
+              .pow(1.0)
+              .scale(4)
+              .scale(0.5)
+              .map(Math::sin)
+              .get();
+      assertEquals(expected, fused.applyAsDouble(n), 1e-12);
+      assertEquals(expected, stream(n).map(pipeline).get(), 1e-12);
+    }
+  }
+
+  /** Compares the teleop translation input path, before and after memoizing and fusing it. */
+  @Test
+  void memoizedInputPath() {
+    Random random = new Random(1155);
+    double[] samples = random.doubles(1024, -1, 1).toArray();
+    int[] tick = {0};
+    int[] polls = {0};
+    DoubleSupplier leftX =
+        () -> {
+          polls[0]++;
+          return samples[tick[0] & 1023];
+        };
+    DoubleSupplier leftY = () -> samples[(tick[0] + 512) & 1023];
+    double speedMultiplier = 0.5;
+
+    // before: a lambda per stage, with hypot and atan each re-polling the raw axes
+    InputStream bx = of(leftY).negate();
+    InputStream by = of(leftX).negate();
+    InputStream br =
+        hypot(bx, by)
+            .scale(() -> speedMultiplier)
+            .clamp(1.0)
+            .deadband(0.15, 1.0)
+            .signedPow(2.0)
+            .scale(4);
+    InputStream btheta = atan(bx, by);
+    InputStream[] before = {br.scale(btheta.map(Math::cos)), br.scale(btheta.map(Math::sin))};
+
+    // after: memoized raw axes and fused stages
+    var cycles = new SchedulerCycle();
+    InputStream ax = of(leftY).negate().memoize(cycles);
+    InputStream ay = of(leftX).negate().memoize(cycles);
+    InputStream ar =
+        hypot(ax, ay)
+            .map(
+                InputPipeline.create()
+                    .scale(() -> speedMultiplier)
+                    .clamp(1.0)
+                    .deadband(0.15, 1.0)
+                    .signedPow(2.0)
+                    .scale(4))
+            .memoize(cycles);
+    InputStream atheta = atan(ax, ay).memoize(cycles);
+    InputStream[] after = {ar.scale(atheta.map(Math::cos)), ar.scale(atheta.map(Math::sin))};
+
+    // both paths produce the same outputs, but only the memoized one polls each axis once a tick
+    int beforePolls = 0;
+    int afterPolls = 0;
+    for (int i = 0; i < 1024; i++) {
+      tick[0] = i;
+      advanceCycle();
+      polls[0] = 0;
+      double x = before[0].get();
+      double y = before[1].get();
+      beforePolls += polls[0];
+      polls[0] = 0;
+      assertEquals(x, after[0].get(), 1e-12);
+      assertEquals(y, after[1].get(), 1e-12);
+      afterPolls += polls[0];
+    }
+    assertEquals(1024, afterPolls);
+    assertTrue(beforePolls > afterPolls);
+  }
+
+  /** Advances the scheduler cycle without running any commands. */
+  private static void advanceCycle() {
+    CommandScheduler.getInstance().getDefaultButtonLoop().poll();
+  }
 }
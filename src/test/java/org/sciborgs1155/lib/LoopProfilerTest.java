@@ -0,0 +1,114 @@
+package org.sciborgs1155.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class LoopProfilerTest {
+  private long now = 0;
+
+  private final LoopProfiler profiler = new LoopProfiler("Test Profiler", 0.02, () -> now);
+
+  private Runnable sleep(long millis) {
+    return () -> now += millis * 1_000_000;
+  }
+
+  @Test
+  void stages() {
+    assertSame(profiler.stage("a"), profiler.stage("a"));
+    assertEquals("a", profiler.stage("a").name());
+    assertEquals(0, profiler.stage("a").percentile(0.5));
+  }
+
+  @Test
+  void percentiles() {
+    long[] duration = {0};
+    Runnable callback = profiler.wrap("callback", () -> sleep(duration[0]).run());
+    for (int i = 1; i <= 100; i++) {
+      profiler.beginTick();
+      duration[0] = i;
+      callback.run();
+    }
+    var stage = profiler.stage("callback");
+    assertEquals(50, stage.percentile(0.5), 1e-9);
+    assertEquals(99, stage.percentile(0.99), 1e-9);
+    assertEquals(100, stage.percentile(1), 1e-9);
+  }
+
+  @Test
+  void laps() {
+    var first = profiler.stage("first");
+    var second = profiler.stage("second");
+    profiler.beginTick();
+    sleep(3).run();
+    profiler.lap(first);
+    sleep(4).run();
+    profiler.lap(second);
+    assertEquals(3, first.percentile(0.5), 1e-9);
+    assertEquals(4, second.percentile(0.5), 1e-9);
+
+    profiler.mark();
+    sleep(1).run();
+    profiler.lap(first);
+    assertEquals(3, first.percentile(1), 1e-9);
+    assertEquals(1, first.percentile(0), 1e-9);
+  }
+
+  @Test
+  void overruns() {
+    Runnable fast = profiler.wrap("fast", sleep(5));
+    Runnable slow = profiler.wrap("slow", sleep(18));
+
+    profiler.beginTick();
+    fast.run();
+    profiler.beginTick();
+    assertEquals(0, profiler.overruns());
+
+    fast.run();
+    slow.run();
+    profiler.beginTick();
+    assertEquals(1, profiler.overruns());
+
+    // the window keeps rolling without allocating per sample
+    for (int i = 0; i < LoopProfiler.WINDOW * 2; i++) {
+      profiler.beginTick();
+      fast.run();
+    }
+    assertEquals(1, profiler.overruns());
+    assertEquals(5, profiler.stage("fast").percentile(1), 1e-9);
+  }
+
+  @Test
+  void idleTime() {
+    Runnable callback = profiler.wrap("callback", sleep(5));
+
+    // the wait for the next loop, then a callback that runs just before the tick starts
+    profiler.beginTick();
+    callback.run();
+    sleep(18).run();
+    callback.run();
+    profiler.beginTick();
+    assertEquals(0, profiler.overruns());
+  }
+
+  @Test
+  void nestedStages() {
+    var inner = profiler.stage("inner");
+    Runnable outer =
+        profiler.wrap(
+            "outer",
+            () -> {
+              profiler.mark();
+              sleep(12).run();
+              profiler.lap(inner);
+            });
+
+    profiler.beginTick();
+    outer.run();
+    profiler.beginTick();
+    assertEquals(0, profiler.overruns());
+    assertEquals(12, inner.percentile(1), 1e-9);
+    assertEquals(12, profiler.stage("outer").percentile(1), 1e-9);
+  }
+}
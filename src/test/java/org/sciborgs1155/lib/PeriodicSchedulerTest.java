@@ -0,0 +1,97 @@
+package org.sciborgs1155.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class PeriodicSchedulerTest {
+  private static final double PERIOD = 0.02;
+  private static final int TICKS = 1000;
+
+  // simulated task costs, in ms, and periods, in ticks
+  private static final long[] COSTS = {4, 3, 2, 1};
+  private static final int[] PERIODS = {5, 5, 10, 1};
+
+  private long now = 0;
+
+  private Runnable work(long millis) {
+    return () -> now += millis * 1_000_000;
+  }
+
+  @Test
+  void staggersSamePeriod() {
+    var scheduler = new PeriodicScheduler("Test Tasks", PERIOD, () -> now);
+    var faults = scheduler.add("faults", () -> {}, 0.1, 0.002);
+    var dashboard = scheduler.add("dashboard", () -> {}, 0.1, 0.002);
+    assertEquals(5, faults.periodTicks());
+    assertNotEquals(faults.phase(), dashboard.phase());
+
+    int[] together = {0};
+    int[] ran = {0};
+    var a = scheduler.add("a", () -> ran[0]++, 0.1, 0.001);
+    var b = scheduler.add("b", () -> together[0] += ran[0], 0.1, 0.001);
+    for (int i = 0; i < 50; i++) {
+      ran[0] = 0;
+      scheduler.run();
+    }
+    assertEquals(10, a.runs());
+    assertEquals(10, b.runs());
+    assertEquals(0, together[0]);
+  }
+
+  @Test
+  void deadlineMisses() {
+    var scheduler = new PeriodicScheduler("Test Tasks", PERIOD, () -> now);
+    var fast = scheduler.add("fast", work(1), PERIOD, 0.002);
+    var slow = scheduler.add("slow", work(3), PERIOD, 0.002);
+    for (int i = 0; i < 10; i++) {
+      scheduler.run();
+    }
+    assertEquals(0, fast.misses());
+    assertEquals(10, slow.misses());
+    assertEquals(3, slow.lastCost(), 1e-9);
+    assertEquals(3, slow.maxCost(), 1e-9);
+  }
+
+  @Test
+  void flattensTickTime() {
+    // before: every callback runs on the first tick of its period, like TimedRobot.addPeriodic
+    double[] naive = new double[TICKS];
+    for (int tick = 0; tick < TICKS; tick++) {
+      long start = now;
+      for (int i = 0; i < COSTS.length; i++) {
+        if (tick % PERIODS[i] == 0) {
+          work(COSTS[i]).run();
+        }
+      }
+      naive[tick] = (now - start) / 1e6;
+    }
+
+    // after: the same callbacks, staggered
+    var scheduler = new PeriodicScheduler("Test Tasks", PERIOD, () -> now);
+    for (int i = 0; i < COSTS.length; i++) {
+      scheduler.add("task " + i, work(COSTS[i]), PERIODS[i] * PERIOD, COSTS[i] / 1e3);
+    }
+    double[] staggered = new double[TICKS];
+    for (int tick = 0; tick < TICKS; tick++) {
+      long start = now;
+      scheduler.run();
+      staggered[tick] = (now - start) / 1e6;
+    }
+
+    // the same work is done either way
+    assertEquals(Arrays.stream(naive).sum(), Arrays.stream(staggered).sum(), 1e-6);
+    double naivePeak = Arrays.stream(naive).max().orElseThrow();
+    double staggeredPeak = Arrays.stream(staggered).max().orElseThrow();
+    assertTrue(variance(staggered) < variance(naive));
+    assertTrue(staggeredPeak < naivePeak);
+  }
+
+  private static double variance(double[] samples) {
+    double mean = Arrays.stream(samples).average().orElseThrow();
+    return Arrays.stream(samples).map(x -> (x - mean) * (x - mean)).average().orElseThrow();
+  }
+}
@@ -0,0 +1,72 @@
+package org.sciborgs1155.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class SingleProducerQueueTest {
+  @Test
+  void order() {
+    var queue = new SingleProducerQueue<Integer>(4);
+    queue.offer(1);
+    queue.offer(2);
+    assertEquals(1, queue.poll());
+    queue.offer(3);
+
+    List<Integer> drained = new ArrayList<>();
+    assertEquals(2, queue.drain(drained::add));
+    assertEquals(List.of(2, 3), drained);
+    assertNull(queue.poll());
+  }
+
+  @Test
+  void dropsWhenFull() {
+    var queue = new SingleProducerQueue<Integer>(2);
+    assertTrue(queue.offer(1));
+    assertTrue(queue.offer(2));
+    assertFalse(queue.offer(3));
+    assertEquals(1, queue.dropped());
+    assertEquals(1, queue.poll());
+    assertTrue(queue.offer(4));
+  }
+
+  @Test
+  void createsOnlyWhenRoom() {
+    var queue = new SingleProducerQueue<Integer>(1);
+    int[] created = {0};
+    assertTrue(queue.offerWith(() -> ++created[0]));
+    assertFalse(queue.offerWith(() -> ++created[0]));
+    assertEquals(1, created[0]);
+    assertEquals(1, queue.dropped());
+    assertEquals(1, queue.poll());
+  }
+
+  @Test
+  void crossThread() throws InterruptedException {
+    int count = 100_000;
+    var queue = new SingleProducerQueue<Integer>(64);
+    Thread producer =
+        new Thread(
+            () -> {
+              for (int i = 0; i < count; ) {
+                if (queue.offer(i)) {
+                  i++;
+                }
+              }
+            });
+    producer.start();
+
+    // every element arrives exactly once and in order, even with the producer racing ahead
+    int[] expected = {0};
+    while (expected[0] < count) {
+      queue.drain(n -> assertEquals(expected[0]++, n));
+    }
+    producer.join();
+    assertNull(queue.poll());
+  }
+}
@@ -0,0 +1,54 @@
+package org.sciborgs1155.lib;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SingleWriterSlotTest {
+  @Test
+  void readWrite() {
+    var slot = new SingleWriterSlot(3);
+    double[] out = new double[3];
+    assertEquals(0, slot.read(out));
+    assertArrayEquals(new double[3], out);
+
+    slot.write(new double[] {1, -2.5, Double.NaN});
+    assertEquals(1, slot.version());
+    assertEquals(1, slot.read(out));
+    assertArrayEquals(new double[] {1, -2.5, Double.NaN}, out);
+  }
+
+  @Test
+  void consistentAcrossThreads() throws InterruptedException {
+    int writes = 200_000;
+    var slot = new SingleWriterSlot(4);
+    Thread writer =
+        new Thread(
+            () -> {
+              double[] data = new double[4];
+              for (int i = 1; i <= writes; i++) {
+                for (int j = 0; j < data.length; j++) {
+                  data[j] = i;
+                }
+                slot.write(data);
+              }
+            });
+    writer.start();
+
+    // every read sees all doubles from the same write, and never goes backwards
+    double[] out = new double[4];
+    double last = 0;
+    while (last < writes) {
+      slot.read(out);
+      for (double value : out) {
+        assertEquals(out[0], value);
+      }
+      assertTrue(out[0] >= last);
+      last = out[0];
+    }
+    writer.join();
+    assertEquals(writes, slot.version());
+  }
+}
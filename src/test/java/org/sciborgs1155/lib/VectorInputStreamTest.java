@@ -0,0 +1,115 @@
+package org.sciborgs1155.lib;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import org.junit.jupiter.api.Test;
+
+public class VectorInputStreamTest {
+  private final double[] out = new double[2];
+
+  private VectorInputStream stream(double x, double y) {
+    return VectorInputStream.of(() -> x, () -> y);
+  }
+
+  private double[] sample(VectorInputStream stream) {
+    stream.sample(out);
+    return out;
+  }
+
+  @Test
+  void components() {
+    var stream = stream(3, 4);
+    assertEquals(3, stream.x().get());
+    assertEquals(4, stream.y().get());
+    assertEquals(5, stream.magnitude().get());
+  }
+
+  @Test
+  void samplesOnce() {
+    int[] polls = {0, 0};
+    var stream =
+        VectorInputStream.of(() -> ++polls[0], () -> ++polls[1]).deadband(0.1, 1).clamp(2);
+    stream.sample(out);
+    assertArrayEquals(new int[] {1, 1}, polls);
+  }
+
+  @Test
+  void scale() {
+    assertArrayEquals(new double[] {-6, 8}, sample(stream(3, -4).scale(-2)), 1e-12);
+    assertArrayEquals(new double[] {-3, 4}, sample(stream(3, -4).negate()), 1e-12);
+  }
+
+  @Test
+  void deadband() {
+    // each axis is inside a per-axis deadband, but the vector is outside the radial one
+    assertArrayEquals(new double[] {0, 0}, sample(stream(0.05, 0.05).deadband(0.1, 1)));
+    double[] result = sample(stream(0.09, 0.09).deadband(0.1, 1));
+    double expected = (Math.hypot(0.09, 0.09) - 0.1) / 0.9;
+    assertEquals(expected, Math.hypot(result[0], result[1]), 1e-12);
+    assertEquals(result[0], result[1], 1e-12);
+  }
+
+  @Test
+  void clamp() {
+    assertArrayEquals(new double[] {0.6, -0.8}, sample(stream(3, -4).clamp(1)), 1e-12);
+    assertArrayEquals(new double[] {0.3, 0.4}, sample(stream(0.3, 0.4).clamp(1)), 1e-12);
+  }
+
+  @Test
+  void signedPow() {
+    double[] result = sample(stream(-0.3, 0.4).signedPow(2));
+    assertEquals(0.25, Math.hypot(result[0], result[1]), 1e-12);
+    assertEquals(Math.atan2(0.4, -0.3), Math.atan2(result[1], result[0]), 1e-12);
+  }
+
+  @Test
+  void mapMagnitude() {
+    var pipeline = InputPipeline.create().clamp(1).deadband(0.1, 1).signedPow(2);
+    var chained = stream(0.5, -0.7).clamp(1).deadband(0.1, 1).signedPow(2);
+    assertArrayEquals(
+        sample(chained).clone(), sample(stream(0.5, -0.7).mapMagnitude(pipeline)), 1e-12);
+  }
+
+  @Test
+  void rateLimit() {
+    UnitTestingUtil.setupTests();
+    double[] target = {3, 4};
+    int[] polls = {0};
+    var limited =
+        VectorInputStream.of(
+                () -> {
+                  polls[0]++;
+                  return target[0];
+                },
+                () -> target[1])
+            .rateLimit(1);
+    // nothing is polled until the stream is sampled
+    UnitTestingUtil.fastForward(Seconds.of(1));
+    assertEquals(0, polls[0]);
+
+    // and it starts from zero, regardless of how long ago it was created
+    limited.sample(out);
+    assertEquals(0, out[0]);
+    assertEquals(0, out[1]);
+
+    UnitTestingUtil.fastForward(Seconds.of(1));
+    limited.sample(out);
+    // the step is limited along the direction of travel, not per axis
+    assertEquals(1, Math.hypot(out[0], out[1]), 0.05);
+    assertEquals(out[0] / 3, out[1] / 4, 1e-9);
+  }
+
+  @Test
+  void memoize() {
+    int[] polls = {0};
+    var stream = VectorInputStream.of(() -> ++polls[0], () -> 0).memoize(new SchedulerCycle());
+    stream.sample(out);
+    stream.x().get();
+    assertEquals(1, polls[0]);
+    CommandScheduler.getInstance().run();
+    assertEquals(2, stream.x().get());
+  }
+}
@@ -0,0 +1,83 @@
+package org.sciborgs1155.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.sciborgs1155.lib.UnitTestingUtil.setupTests;
+
+import com.pathplanner.lib.auto.AutoBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.sciborgs1155.robot.AutoSweep.Report;
+import org.sciborgs1155.robot.AutoSweep.Routine;
+import org.sciborgs1155.robot.AutoSweep.Stats;
+
+public class AutoSweepTest {
+  private static final String DEPLOYED = "Subwoofer to Notes";
+
+  @BeforeEach
+  public void setup() {
+    setupTests();
+  }
+
+  @Test
+  void percentiles() {
+    Stats stats = Stats.of(IntStream.rangeClosed(1, 100).mapToDouble(i -> 101 - i).toArray());
+    assertEquals(new Stats(50, 90, 99, 100), stats);
+  }
+
+  @Test
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  void idealRobotFinishes() throws Exception {
+    Report report = AutoSweep.sweep(List.of(Routine.example()), 4, 0, 0, 2).get(0);
+    assertEquals(0, report.timeouts());
+    assertTrue(report.translationError().max() < 0.1, report.toString());
+  }
+
+  @Test
+  void loadsDeployedAuto() {
+    assertTrue(AutoBuilder.getAllAutoNames().contains(DEPLOYED));
+    Routine routine = Routine.load(DEPLOYED);
+    assertEquals(2, routine.trajectories().size());
+    assertEquals(List.of(0.0, 0.5, 0.0), routine.waits());
+
+    // stopped for the wait between the paths
+    double secondStart = routine.startOf(1);
+    assertEquals(0, routine.pathAt(0.1));
+    assertEquals(-1, routine.pathAt(secondStart - 0.25));
+    assertEquals(1, routine.pathAt(secondStart + 0.1));
+    assertEquals(-1, routine.pathAt(routine.totalTime() + 0.1));
+  }
+
+  @Test
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  void idealRobotFinishesDeployedAuto() throws Exception {
+    Report report = AutoSweep.sweep(List.of(Routine.load(DEPLOYED)), 4, 0, 0, 2).get(0);
+    assertEquals(0, report.timeouts());
+    assertTrue(report.translationError().max() < 0.1, report.toString());
+  }
+
+  @Test
+  @Timeout(value = 120, unit = TimeUnit.SECONDS)
+  void sweepsRandomizedRobots() throws Exception {
+    int threads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    Report report = AutoSweep.sweep(List.of(Routine.example()), 64, 1155, 1, threads).get(0);
+    assertEquals(64, report.runs());
+    // most robots still finish near their goal, but not all in the same place
+    assertTrue(report.timeouts() < report.runs() / 2, report.toString());
+    assertTrue(report.translationError().p50() < 0.25, report.toString());
+    assertTrue(report.translationError().p50() < report.translationError().max());
+  }
+
+  @Test
+  @Timeout(value = 120, unit = TimeUnit.SECONDS)
+  void reproducibleAcrossWorkers() throws Exception {
+    List<Routine> routines = List.of(Routine.example());
+    List<Report> sequential = AutoSweep.sweep(routines, 12, 254, 1, 1);
+    List<Report> parallel = AutoSweep.sweep(routines, 12, 254, 1, 3);
+    assertEquals(sequential, parallel);
+  }
+}
@@ -0,0 +1,136 @@
+package org.sciborgs1155.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.sciborgs1155.lib.UnitTestingUtil.*;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sciborgs1155.lib.RobotContext;
+import org.sciborgs1155.robot.drive.Drive;
+import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
+import org.sciborgs1155.robot.drive.NoGyro;
+import org.sciborgs1155.robot.drive.SimModule;
+
+public class ParallelSimTest {
+  private static final int TICKS = 3000;
+  private static final int MAX_SIMS = 8;
+  // the least fraction of a linear speedup expected when every sim has a core to itself
+  private static final double MIN_EFFICIENCY = 0.4;
+
+  private final List<Drive> drives = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    setupTests();
+  }
+
+  @AfterEach
+  public void destroy() throws Exception {
+    reset(drives.toArray(Drive[]::new));
+  }
+
+  /**
+   * Builds a drive in a new context. Subsystems register with the global command scheduler, so
+   * drives are built on the test thread.
+   */
+  private Sim create(int i) {
+    RobotContext context = new RobotContext("sim " + i);
+    Drive drive =
+        context.call(
+            () ->
+                new Drive(
+                    new NoGyro(),
+                    new SimModule("FL"),
+                    new SimModule("FR"),
+                    new SimModule("RL"),
+                    new SimModule("RR")));
+    drives.add(drive);
+    return new Sim(context, drive);
+  }
+
+  private static record Sim(RobotContext context, Drive drive) {
+    /** Drives in an arc, without the command scheduler, returning the final pose. */
+    Pose2d run() {
+      return context.call(
+          () -> {
+            var speeds = new ChassisSpeeds(2, 0.5, 1);
+            for (int i = 0; i < TICKS; i++) {
+              drive.setChassisSpeeds(speeds, ControlMode.CLOSED_LOOP_VELOCITY, true);
+              drive.periodic();
+              drive.simulationPeriodic();
+            }
+            return drive.pose();
+          });
+    }
+  }
+
+  @Test
+  void scalesAcrossCores() throws Exception {
+    int n = Math.min(Runtime.getRuntime().availableProcessors(), MAX_SIMS);
+    assumeTrue(n >= 2, "needs more than one core");
+
+    // warm up the JIT, so that neither run below pays for compilation
+    for (int i = 0; i < 3; i++) {
+      create(-1 - i).run();
+    }
+
+    List<Sim> sequential = new ArrayList<>();
+    List<Sim> parallel = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      sequential.add(create(i));
+      parallel.add(create(n + i));
+    }
+
+    long start = System.nanoTime();
+    List<Pose2d> expected = new ArrayList<>();
+    for (Sim sim : sequential) {
+      expected.add(sim.run());
+    }
+    double sequentialTime = (System.nanoTime() - start) / 1e9;
+
+    ForkJoinPool pool = new ForkJoinPool(n);
+    List<Future<Pose2d>> results = new ArrayList<>();
+    start = System.nanoTime();
+    for (Sim sim : parallel) {
+      results.add(pool.submit(sim::run));
+    }
+    List<Pose2d> actual = new ArrayList<>();
+    for (Future<Pose2d> result : results) {
+      actual.add(result.get());
+    }
+    double parallelTime = (System.nanoTime() - start) / 1e9;
+    pool.shutdown();
+
+    // identical sims that share no state end up in the same place, however they are scheduled
+    for (int i = 0; i < n; i++) {
+      assertEquals(expected.get(0).getX(), actual.get(i).getX(), 1e-9);
+      assertEquals(expected.get(0).getY(), actual.get(i).getY(), 1e-9);
+      assertEquals(
+          expected.get(0).getRotation().getRadians(),
+          actual.get(i).getRotation().getRadians(),
+          1e-9);
+      assertEquals(expected.get(0), expected.get(i));
+    }
+
+    // the speedup depends on how busy the machine running the tests is
+    double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+    double idle = Runtime.getRuntime().availableProcessors() - load;
+    assumeTrue(load >= 0 && idle >= n, "needs an idle core for each sim");
+    double efficiency = sequentialTime / parallelTime / n;
+    assertTrue(
+        efficiency >= MIN_EFFICIENCY,
+        String.format(
+            "%d drive sims ran in %.3f s sequentially, but %.3f s in parallel (%.0f%% efficiency)",
+            n, sequentialTime, parallelTime, 100 * efficiency));
+  }
+}
@@ -0,0 +1,118 @@
+package org.sciborgs1155.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.sciborgs1155.lib.UnitTestingUtil.TICK_RATE;
+import static org.sciborgs1155.lib.UnitTestingUtil.reset;
+import static org.sciborgs1155.lib.UnitTestingUtil.setupTests;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.pathfinding.LocalADStar;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+import org.sciborgs1155.robot.commands.AutoChooser;
+import org.sciborgs1155.robot.commands.Autos;
+import org.sciborgs1155.robot.drive.Drive;
+
+public class PathfindingTest {
+  private static final long TIMEOUT = 2_000_000_000L;
+  /** The longest the pathfinder may take to publish a path after a change, in seconds. */
+  private static final double MAX_LATENCY = 0.5;
+
+  /** Waits for the pathfinder to publish a path requested at a time, within the latency bound. */
+  private static void awaitPath(LocalADStar pathfinder, long requested) {
+    while (!pathfinder.isNewPathAvailable()) {
+      assertTrue(System.nanoTime() - requested < TIMEOUT, "pathfinder timed out");
+      LockSupport.parkNanos(100_000);
+    }
+    double latency = (System.nanoTime() - requested) / 1e9;
+    assertTrue(
+        latency < MAX_LATENCY,
+        String.format("pathfinder took %.3f s, over %.3f s", latency, MAX_LATENCY));
+  }
+
+  /** Returns whether a position is within the triangle formed by the legs of the blue stage. */
+  private static boolean underBlueStage(Translation2d p) {
+    double[] x = {3.38, 5.62, 5.62};
+    double[] y = {4.10, 5.42, 2.78};
+    boolean positive = false;
+    boolean negative = false;
+    for (int i = 0; i < 3; i++) {
+      int j = (i + 1) % 3;
+      double cross = (x[j] - x[i]) * (p.getY() - y[i]) - (y[j] - y[i]) * (p.getX() - x[i]);
+      positive |= cross > 0;
+      negative |= cross < 0;
+    }
+    return !(positive && negative);
+  }
+
+  @Test
+  void plansAroundStage() {
+    // loads deploy/pathplanner/navgrid.json, and starts planning in the background
+    var pathfinder = new LocalADStar();
+
+    // straight through the blue stage
+    pathfinder.setStartPosition(new Translation2d(2, 4.1));
+    long requested = System.nanoTime();
+    pathfinder.setGoalPosition(new Translation2d(7.5, 4.1));
+    awaitPath(pathfinder, requested);
+
+    PathPlannerPath path =
+        pathfinder.getCurrentPath(
+            Autos.PATHFINDING_CONSTRAINTS, new GoalEndState(0, Rotation2d.kZero));
+    assertNotNull(path);
+    // the path goes around the stage, not under it
+    assertTrue(path.getAllPathPoints().stream().noneMatch(p -> underBlueStage(p.position)));
+
+    // the robot moved along the path
+    requested = System.nanoTime();
+    pathfinder.setStartPosition(new Translation2d(2.6, 5.5));
+    awaitPath(pathfinder, requested);
+
+    // the goal moved to the other side of the field, which replans the most
+    requested = System.nanoTime();
+    pathfinder.setGoalPosition(new Translation2d(14, 2));
+    awaitPath(pathfinder, requested);
+  }
+
+  @Test
+  void pathfindsToPose() throws Exception {
+    setupTests();
+    DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+    DriverStationSim.notifyNewData();
+    Drive drive = Drive.create();
+    AutoChooser autos = Autos.configureAutos(drive);
+    try {
+      drive.resetOdometry(new Pose2d(2, 1.5, Rotation2d.kZero));
+      Pose2d target = new Pose2d(4, 1.5, Rotation2d.kCCW_90deg);
+      Command pathfind = Autos.pathfindTo(target);
+      pathfind.schedule();
+
+      long start = System.nanoTime();
+      while (pathfind.isScheduled()) {
+        assertTrue(System.nanoTime() - start < 5 * TIMEOUT, "pathfinding timed out");
+        CommandScheduler.getInstance().run();
+        SimHooks.stepTiming(TICK_RATE.in(Seconds));
+        // gives the background pathfinder a chance to publish its path
+        LockSupport.parkNanos(1_000_000);
+      }
+
+      Pose2d pose = drive.pose();
+      assertEquals(0, pose.getTranslation().getDistance(target.getTranslation()), 0.15);
+      assertEquals(0, pose.getRotation().minus(target.getRotation()).getDegrees(), 10);
+    } finally {
+      reset(drive, autos);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.sciborgs1155.robot;
+
+import static edu.wpi.first.units.Units.Seconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.sciborgs1155.robot.Constants.PERIOD;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.sciborgs1155.robot.SimRunner.Mode;
+import org.sciborgs1155.robot.SimRunner.Result;
+import org.sciborgs1155.robot.commands.AutoChooser;
+
+public class SimRunnerTest {
+  @Test
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  void auto() throws Exception {
+    Result result = SimRunner.run(AutoChooser.NONE, SimRunner.AUTO);
+    assertEquals(16, result.simSeconds(), 1e-6);
+    // the robot looped once a period, and saw every mode of the script
+    assertEquals(16 / PERIOD.in(Seconds), result.loops(), 1);
+    assertEquals(List.of(Mode.DISABLED, Mode.AUTONOMOUS), result.modes());
+  }
+
+  @Test
+  @Timeout(value = 120, unit = TimeUnit.SECONDS)
+  void match() throws Exception {
+    Result result = SimRunner.run(AutoChooser.NONE, SimRunner.MATCH);
+    assertEquals(154, result.simSeconds(), 1e-6);
+    assertEquals(154 / PERIOD.in(Seconds), result.loops(), 1);
+    assertEquals(
+        List.of(Mode.DISABLED, Mode.AUTONOMOUS, Mode.DISABLED, Mode.TELEOP), result.modes());
+  }
+
+  @Test
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  void runsBackToBack() throws Exception {
+    // a second robot built in the same process runs as the first did
+    Result first = SimRunner.run(AutoChooser.NONE, SimRunner.AUTO);
+    Result second = SimRunner.run(AutoChooser.NONE, SimRunner.AUTO);
+    assertEquals(first.loops(), second.loops());
+    assertEquals(first.modes(), second.modes());
+  }
+}
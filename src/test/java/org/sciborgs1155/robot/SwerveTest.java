@@ -1,20 +1,37 @@
 package org.sciborgs1155.robot;
 
+import static edu.wpi.first.units.Units.MetersPerSecond;
+import static edu.wpi.first.units.Units.MetersPerSecondPerSecond;
 import static edu.wpi.first.units.Units.Seconds;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.sciborgs1155.lib.Test.runUnitTest;
 import static org.sciborgs1155.lib.UnitTestingUtil.*;
 
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.LockSupport;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.sciborgs1155.robot.drive.Drive;
+import org.sciborgs1155.robot.drive.DriveConstants;
 import org.sciborgs1155.robot.drive.DriveConstants.ControlMode;
+import org.sciborgs1155.robot.drive.DriveKinematics;
+import org.sciborgs1155.robot.drive.HolonomicProfile;
 import org.sciborgs1155.robot.drive.NoGyro;
 import org.sciborgs1155.robot.drive.SimModule;
+import org.sciborgs1155.robot.drive.SwerveSetpointGenerator;
 
 /** Swerve test. Currently incomplete and does nothing. */
 public class SwerveTest {
@@ -106,4 +123,283 @@ public class SwerveTest {
     assertEquals(deltaX, pose.getX(), DELTA * 2);
     assertEquals(deltaY, pose.getY(), DELTA * 2);
   }
+
+  @Test
+  public void poseHistory() {
+    double start = Timer.getFPGATimestamp();
+    run(
+        drive.run(
+            () ->
+                drive.setChassisSpeeds(
+                    new ChassisSpeeds(1, 0, 0), ControlMode.CLOSED_LOOP_VELOCITY)));
+    fastForward(50);
+    double middle = Timer.getFPGATimestamp();
+    Pose2d then = drive.pose();
+    fastForward(50);
+
+    assertTrue(drive.poseAt(start - 10).isEmpty());
+    assertEquals(then.getX(), drive.poseAt(middle).orElseThrow().getX(), DELTA);
+    assertEquals(
+        drive.pose().getX(), drive.poseAt(Timer.getFPGATimestamp()).orElseThrow().getX(), 1e-9);
+
+    // a vision measurement in the past shifts the current pose as well
+    double before = drive.pose().getX();
+    drive.addVisionMeasurement(
+        new Pose2d(then.getX() + 1, then.getY(), then.getRotation()),
+        middle,
+        VecBuilder.fill(0.1, 0.1, 0.1));
+    assertEquals(before + 0.5, drive.pose().getX(), 1e-6);
+  }
+
+  @RepeatedTest(5)
+  public void holonomicProfile() {
+    double maxSpeed = DriveConstants.MAX_SPEED.in(MetersPerSecond);
+    double maxAccel = DriveConstants.MAX_ACCEL.in(MetersPerSecondPerSecond);
+    double maxAngularSpeed = 6;
+    double maxAngularAccel = 20;
+    var profile = new HolonomicProfile(maxSpeed, maxAccel, maxAngularSpeed, maxAngularAccel);
+
+    Pose2d start = new Pose2d(Math.random() * 4, Math.random() * 4, Rotation2d.fromRadians(3));
+    Pose2d target = new Pose2d(Math.random() * 4, Math.random() * 4, Rotation2d.fromRadians(-3));
+    // often moving away from the target
+    ChassisSpeeds speeds =
+        new ChassisSpeeds(Math.random() * 6 - 3, Math.random() * 6 - 3, Math.random() * 4 - 2);
+    profile.plan(start, speeds, target);
+
+    assertEquals(start.getX(), profile.x(), 1e-9);
+    assertEquals(start.getY(), profile.y(), 1e-9);
+    assertEquals(speeds.vxMetersPerSecond, profile.vx(), 1e-9);
+    assertEquals(speeds.vyMetersPerSecond, profile.vy(), 1e-9);
+    assertEquals(speeds.omegaRadiansPerSecond, profile.omega(), 1e-9);
+
+    // translation and rotation share the limits of the modules, where the initial velocity is
+    // counted along and across the line to the target
+    double initialUsage =
+        Math.sqrt(2) * Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond) / maxSpeed
+            + Math.abs(speeds.omegaRadiansPerSecond) / maxAngularSpeed;
+    double speedLimit = Math.max(1, initialUsage + HolonomicProfile.RESERVE);
+    double dt = 0.001;
+    double lastVx = profile.vx();
+    double lastVy = profile.vy();
+    double lastOmega = profile.omega();
+    for (double t = dt; t < profile.totalTime() + 0.1; t += dt) {
+      profile.sample(t);
+      double accel =
+          Math.hypot(profile.vx() - lastVx, profile.vy() - lastVy) / dt / maxAccel
+              + Math.abs(profile.omega() - lastOmega) / dt / maxAngularAccel;
+      double speed =
+          Math.hypot(profile.vx(), profile.vy()) / maxSpeed
+              + Math.abs(profile.omega()) / maxAngularSpeed;
+      assertTrue(accel <= 1 + 1e-6);
+      assertTrue(speed <= speedLimit + 1e-6);
+      lastVx = profile.vx();
+      lastVy = profile.vy();
+      lastOmega = profile.omega();
+    }
+
+    // the short way around, and at rest
+    profile.sample(profile.totalTime());
+    assertEquals(target.getX(), profile.x(), 1e-9);
+    assertEquals(target.getY(), profile.y(), 1e-9);
+    assertEquals(3 + 2 * Math.PI - 6, profile.heading(), 1e-9);
+    assertEquals(0, Math.hypot(profile.vx(), profile.vy()), 1e-9);
+  }
+
+  @Test
+  public void driveTo() {
+    Pose2d target = new Pose2d(2, 1, Rotation2d.fromDegrees(90));
+    drive.resetOdometry(new Pose2d());
+    run(drive.driveTo(target));
+    fastForward(Seconds.of(4));
+
+    assertEquals(target.getX(), drive.pose().getX(), DELTA);
+    assertEquals(target.getY(), drive.pose().getY(), DELTA);
+    assertEquals(target.getRotation().getRadians(), drive.heading().getRadians(), DELTA);
+  }
+
+  @RepeatedTest(5)
+  public void kinematicsMatchesWpilib() {
+    DriveKinematics kinematics = new DriveKinematics(DriveConstants.MODULE_OFFSET);
+    ChassisSpeeds speeds =
+        new ChassisSpeeds(Math.random() * 4 - 2, Math.random() * 4 - 2, Math.random() * 6 - 3);
+
+    SwerveModuleState[] expected =
+        drive.kinematics.toSwerveModuleStates(ChassisSpeeds.discretize(speeds, 0.02));
+
+    DriveKinematics.discretize(speeds, 0.02);
+    SwerveModuleState[] actual =
+        kinematics.toModuleStates(
+            speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, speeds.omegaRadiansPerSecond);
+
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].speedMetersPerSecond, actual[i].speedMetersPerSecond, 1e-9);
+      assertEquals(expected[i].angle.getRadians(), actual[i].angle.getRadians(), 1e-9);
+    }
+
+    ChassisSpeeds forward = kinematics.toChassisSpeeds(actual, new ChassisSpeeds());
+    assertEquals(speeds.vxMetersPerSecond, forward.vxMetersPerSecond, 1e-9);
+    assertEquals(speeds.vyMetersPerSecond, forward.vyMetersPerSecond, 1e-9);
+    assertEquals(speeds.omegaRadiansPerSecond, forward.omegaRadiansPerSecond, 1e-9);
+  }
+
+  @RepeatedTest(5)
+  public void setpointsAreFeasible() {
+    double dt = 0.02;
+    double maxSpeed = DriveConstants.MAX_SPEED.in(MetersPerSecond);
+    double maxAccel = DriveConstants.MAX_ACCEL.in(MetersPerSecondPerSecond);
+    double maxSteer = 20;
+    var generator =
+        new SwerveSetpointGenerator(DriveConstants.MODULE_OFFSET, maxSpeed, maxAccel, maxSteer);
+
+    int n = DriveConstants.MODULE_OFFSET.length;
+    double[] lastX = new double[n];
+    double[] lastY = new double[n];
+    double[] lastAngle = new double[n];
+    double vx = 0;
+    double vy = 0;
+    double omega = 0;
+    for (int tick = 0; tick < 500; tick++) {
+      // jump to new speeds, often reversing, every half second
+      if (tick % 25 == 0) {
+        vx = Math.random() * 12 - 6;
+        vy = Math.random() * 12 - 6;
+        omega = Math.random() * 12 - 6;
+      }
+      SwerveModuleState[] states = generator.generate(vx, vy, omega, dt);
+      for (int i = 0; i < n; i++) {
+        double speed = states[i].speedMetersPerSecond;
+        double x = speed * states[i].angle.getCos();
+        double y = speed * states[i].angle.getSin();
+        assertTrue(speed <= maxSpeed + 1e-9);
+        assertTrue(Math.hypot(x - lastX[i], y - lastY[i]) <= maxAccel * dt + 1e-9);
+        // reversing the drive motor doesn't count as steering
+        double steer = MathUtil.angleModulus(states[i].angle.getRadians() - lastAngle[i]);
+        steer = Math.min(Math.abs(steer), Math.PI - Math.abs(steer));
+        assertTrue(steer <= maxSteer * dt + 1e-3);
+        lastX[i] = x;
+        lastY[i] = y;
+        lastAngle[i] = states[i].angle.getRadians();
+      }
+    }
+
+    // a reachable target is reached exactly
+    for (int tick = 0; tick < 100; tick++) {
+      generator.generate(1, -1, 0.5, dt);
+    }
+    ChassisSpeeds setpoint = generator.setpoint(new ChassisSpeeds());
+    assertEquals(1, setpoint.vxMetersPerSecond, 1e-9);
+    assertEquals(-1, setpoint.vyMetersPerSecond, 1e-9);
+    assertEquals(0.5, setpoint.omegaRadiansPerSecond, 1e-9);
+  }
+
+  /**
+   * Checks that Drive's command path (discretization, kinematics, setpoint generation and the
+   * module state getters) reuses its buffers. Modules are left out, since simulated motors
+   * allocate, and so is {@link Drive#periodic()}, since odometry and logging allocate poses. Module
+   * headings are replaced when they change, so speeds vary in magnitude along a fixed direction.
+   */
+  @Test
+  public void commandPathAllocationFree() throws Exception {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    Drive none = Drive.none();
+    ChassisSpeeds speeds = new ChassisSpeeds();
+    int[] tick = {0};
+    Runnable step =
+        () -> {
+          double scale = 0.5 + 0.5 * (tick[0]++ % 10) / 10.0;
+          speeds.vxMetersPerSecond = 1.5 * scale;
+          speeds.vyMetersPerSecond = -0.8 * scale;
+          none.setChassisSpeeds(speeds, ControlMode.CLOSED_LOOP_VELOCITY);
+          none.setChassisSpeeds(speeds, ControlMode.CLOSED_LOOP_VELOCITY, true);
+          none.moduleStates();
+          none.modulePositions();
+          none.robotRelativeChassisSpeeds();
+          none.fieldRelativeChassisSpeeds();
+        };
+
+    // warm up, so that the measured ticks are JIT compiled
+    for (int i = 0; i < 20_000; i++) {
+      step.run();
+    }
+
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < 1000; i++) {
+      step.run();
+    }
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+    none.close();
+
+    assertEquals(0, allocated, "bytes allocated by the drive command path");
+  }
+
+  @Test
+  public void controlThread() throws InterruptedException {
+    // zero the modules, so that only the notifier can set them moving
+    drive.setChassisSpeeds(new ChassisSpeeds(), ControlMode.CLOSED_LOOP_VELOCITY);
+    assertEquals(0, frontLeft.desiredState().speedMetersPerSecond);
+    assertEquals(0, drive.controlTicks());
+
+    drive.startControlThread();
+    assertTrue(drive.isControlThreadRunning());
+    ChassisSpeeds speeds = new ChassisSpeeds(1, 0, 0);
+    for (int i = 0; i < 10; i++) {
+      drive.periodic();
+      drive.setChassisSpeeds(speeds, ControlMode.CLOSED_LOOP_VELOCITY);
+      Thread.sleep((long) (DriveConstants.CONTROL_PERIOD.in(Seconds) * 1000));
+    }
+    drive.stopControlThread();
+    assertFalse(drive.isControlThreadRunning());
+
+    // the notifier applied the speeds handed to it through the slot
+    long ticks = drive.controlTicks();
+    assertTrue(ticks > 0);
+    assertEquals(1, frontLeft.desiredState().speedMetersPerSecond, 1e-9);
+
+    // and nothing is applied once it has stopped
+    Thread.sleep((long) (5 * DriveConstants.CONTROL_PERIOD.in(Seconds) * 1000));
+    assertEquals(ticks, drive.controlTicks());
+  }
+
+  @Test
+  public void controlThreadJitter() {
+    ChassisSpeeds speeds = new ChassisSpeeds(1, 0, 0);
+
+    double[] mainLoop = runLoadedLoop(speeds);
+    drive.startControlThread();
+    double[] notifier = runLoadedLoop(speeds);
+    drive.stopControlThread();
+
+    // the notifier times its outputs on its own, regardless of how long the main loop takes
+    assertTrue(
+        notifier[0] <= mainLoop[0],
+        String.format(
+            "jitter with the control thread was %.2f ms (max %.2f ms), but %.2f ms (max %.2f ms)"
+                + " on the main loop",
+            notifier[0], notifier[1], mainLoop[0], mainLoop[1]));
+  }
+
+  /**
+   * Runs the drive in real time for a second, from a main loop whose work varies between 0 and 4
+   * ms each tick.
+   *
+   * @return The mean and max jitter of the module outputs, in milliseconds.
+   */
+  private double[] runLoadedLoop(ChassisSpeeds speeds) {
+    long period = (long) (TICK_RATE.in(Seconds) * 1e9);
+    long next = System.nanoTime();
+    for (int i = 0; i < 50; i++) {
+      next += period;
+      LockSupport.parkNanos(next - System.nanoTime());
+      long work = System.nanoTime() + (i % 5) * 1_000_000L;
+      while (System.nanoTime() < work) {
+        Thread.onSpinWait();
+      }
+      drive.periodic();
+      drive.setChassisSpeeds(speeds, ControlMode.CLOSED_LOOP_VELOCITY);
+    }
+    return new double[] {drive.controlJitter(), drive.maxControlJitter()};
+  }
 }
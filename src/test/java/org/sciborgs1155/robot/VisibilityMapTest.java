@@ -0,0 +1,79 @@
+package org.sciborgs1155.robot;
+
+import static edu.wpi.first.units.Units.Meters;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sciborgs1155.robot.Constants.Field;
+import org.sciborgs1155.robot.vision.Vision.CameraConfig;
+import org.sciborgs1155.robot.vision.VisibilityMap;
+
+public class VisibilityMapTest {
+  // a single tag near the blue wall, facing down the field
+  private static final AprilTagFieldLayout LAYOUT =
+      new AprilTagFieldLayout(
+          List.of(new AprilTag(1, new Pose3d(1, 4, 0.5, Rotation3d.kZero))),
+          Field.LENGTH.in(Meters),
+          Field.WIDTH.in(Meters));
+  // a camera at the center of the robot, facing forward
+  private static final CameraConfig CAMERA =
+      new CameraConfig("front", new Transform3d(0, 0, 0.5, Rotation3d.kZero));
+
+  private final VisibilityMap map = VisibilityMap.compute(LAYOUT, CAMERA);
+
+  @Test
+  void knownPoses() {
+    // facing the tag from 2 m away
+    assertEquals(1, map.visibleCameras(3, 4, Math.PI));
+    // facing away from it
+    assertEquals(0, map.visibleCameras(3, 4, 0));
+    // facing it from well out of range
+    assertEquals(0, map.visibleCameras(12, 4, Math.PI));
+    // behind the tag
+    assertEquals(0, map.visibleCameras(0.3, 4, 0));
+    // off the field, where anything goes
+    assertEquals(1, map.visibleCameras(-1, 4, 0));
+  }
+
+  @Test
+  void roundTrip(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("vision/visibility.bin");
+    map.write(file);
+    VisibilityMap read = VisibilityMap.read(file, LAYOUT, CAMERA).orElseThrow();
+    for (double x = 0; x < Field.LENGTH.in(Meters); x += 0.7) {
+      for (double y = 0; y < Field.WIDTH.in(Meters); y += 0.7) {
+        for (double heading = -Math.PI; heading < Math.PI; heading += 0.3) {
+          assertEquals(map.visibleCameras(x, y, heading), read.visibleCameras(x, y, heading));
+        }
+      }
+    }
+  }
+
+  @Test
+  void staleFingerprint(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("visibility.bin");
+    map.write(file);
+
+    // the camera was moved after the map was generated
+    CameraConfig moved = new CameraConfig("front", new Transform3d(0.2, 0, 0.5, Rotation3d.kZero));
+    assertTrue(VisibilityMap.read(file, LAYOUT, moved).isEmpty());
+    // so was a tag
+    AprilTagFieldLayout layout =
+        new AprilTagFieldLayout(
+            List.of(new AprilTag(1, new Pose3d(1, 5, 0.5, Rotation3d.kZero))),
+            Field.LENGTH.in(Meters),
+            Field.WIDTH.in(Meters));
+    assertTrue(VisibilityMap.read(file, layout, CAMERA).isEmpty());
+    // and a missing file is treated the same way
+    assertTrue(VisibilityMap.read(dir.resolve("missing.bin"), LAYOUT, CAMERA).isEmpty());
+  }
+}
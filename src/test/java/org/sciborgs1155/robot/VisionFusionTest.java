@@ -0,0 +1,70 @@
+package org.sciborgs1155.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.sciborgs1155.robot.vision.Vision.PoseEstimate;
+import org.sciborgs1155.robot.vision.VisionFusion;
+
+public class VisionFusionTest {
+  private static PoseEstimate estimate(
+      double x, double y, double heading, double time, double std) {
+    return new PoseEstimate(
+        new EstimatedRobotPose(
+            new Pose3d(x, y, 0, new Rotation3d(0, 0, heading)),
+            time,
+            List.of(),
+            PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR),
+        VecBuilder.fill(std, std, std));
+  }
+
+  @Test
+  void weightsByInverseVariance() {
+    var fusion = new VisionFusion(0.02);
+    int count =
+        fusion.fuse(
+            estimate(1, 2, 0.1, 1.000, 1),
+            estimate(2, 4, 0.4, 1.010, 2),
+            estimate(9, 9, 0, 1.015, Double.MAX_VALUE));
+    assertEquals(1, count);
+    // weights of 1 and 1/4, and none for the last estimate
+    assertEquals(1.2, fusion.pose(0).getX(), 1e-9);
+    assertEquals(2.4, fusion.pose(0).getY(), 1e-9);
+    assertEquals(1.002, fusion.timestamp(0), 1e-9);
+    assertEquals(Math.sqrt(1 / 1.25), fusion.stdDevs(0).get(0, 0), 1e-9);
+    assertEquals(
+        Math.atan2(Math.sin(0.1) + Math.sin(0.4) / 4, Math.cos(0.1) + Math.cos(0.4) / 4),
+        fusion.pose(0).getRotation().getRadians(),
+        1e-9);
+  }
+
+  @Test
+  void bucketsByTime() {
+    var fusion = new VisionFusion(0.02);
+    int count =
+        fusion.fuse(
+            estimate(1, 1, 0, 1.00, 1),
+            estimate(1, 1, 0, 1.01, 1),
+            estimate(2, 2, 0, 1.05, 1),
+            estimate(3, 3, 0, 1.10, Double.MAX_VALUE));
+    // the last bucket carries no weight, so it is dropped
+    assertEquals(2, count);
+    assertEquals(1, fusion.pose(0).getX(), 1e-9);
+    assertEquals(2, fusion.pose(1).getX(), 1e-9);
+    assertEquals(Math.sqrt(0.5), fusion.stdDevs(0).get(0, 0), 1e-9);
+    assertEquals(0, fusion.fuse(), "nothing to fuse");
+  }
+
+  @Test
+  void averagesHeadingAcrossWrap() {
+    var fusion = new VisionFusion(0.02);
+    fusion.fuse(estimate(0, 0, Math.PI - 0.1, 1, 1), estimate(0, 0, -Math.PI + 0.1, 1, 1));
+    assertEquals(Math.PI, Math.abs(fusion.pose(0).getRotation().getRadians()), 1e-9);
+  }
+}